@@ -0,0 +1,98 @@
+-- сравнение истории транзакций на обычной и помесячно партиционированной таблице
+-- запуск (на отдельной БД, скрипт создает ~2 x 12M строк, займет несколько минут и ~4 ГБ):
+--   docker exec -i bankcards-postgres-dev psql -U bankcards -d bankcards < dev-scripts/benchmark-transactions-partitioning.sql
+-- смотреть на "Execution Time" и количество просканированных партиций в планах
+
+\timing on
+SET client_min_messages = warning;
+
+DROP SCHEMA IF EXISTS bench CASCADE;
+CREATE SCHEMA bench;
+
+-- 24 месяца истории, 12M строк, 20000 карт
+\set rows 12000000
+\set cards 20000
+
+CREATE TABLE bench.tx_heap (
+    id BIGINT NOT NULL,
+    from_card_id BIGINT NOT NULL,
+    to_card_id BIGINT NOT NULL,
+    amount DECIMAL(19,2) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    description VARCHAR(500),
+    created_at TIMESTAMP NOT NULL,
+    processed_at TIMESTAMP,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE bench.tx_part (LIKE bench.tx_heap INCLUDING DEFAULTS, PRIMARY KEY (id, created_at))
+    PARTITION BY RANGE (created_at);
+
+DO $$
+DECLARE
+    m DATE := (date_trunc('month', now()) - interval '23 months')::date;
+BEGIN
+    WHILE m <= date_trunc('month', now())::date LOOP
+        EXECUTE format('CREATE TABLE bench.%I PARTITION OF bench.tx_part FOR VALUES FROM (%L) TO (%L)',
+                       'tx_part_' || to_char(m, '"y"YYYY"m"MM'), m, (m + interval '1 month')::date);
+        m := (m + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO bench.tx_heap
+SELECT g,
+       1 + (random() * (:cards - 1))::bigint,
+       1 + (random() * (:cards - 1))::bigint,
+       round((random() * 1000)::numeric, 2),
+       'COMPLETED',
+       NULL,
+       now() - interval '730 days' + (g::double precision / :rows) * interval '730 days',
+       NULL
+FROM generate_series(1, :rows) g;
+
+INSERT INTO bench.tx_part SELECT * FROM bench.tx_heap;
+
+CREATE INDEX ON bench.tx_heap (from_card_id);
+CREATE INDEX ON bench.tx_heap (to_card_id);
+CREATE INDEX ON bench.tx_part (from_card_id, created_at);
+CREATE INDEX ON bench.tx_part (to_card_id, created_at);
+
+VACUUM ANALYZE bench.tx_heap;
+VACUUM ANALYZE bench.tx_part;
+
+-- история карты как до партиционирования (без ограничения по дате)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench.tx_heap
+WHERE from_card_id = 4242 OR to_card_id = 4242
+ORDER BY created_at DESC;
+
+-- история карты за 90 дней (окно по умолчанию, app.transactions.history-window-days)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench.tx_heap
+WHERE (from_card_id = 4242 OR to_card_id = 4242)
+  AND created_at >= now() - interval '90 days' AND created_at < now()
+ORDER BY created_at DESC;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench.tx_part
+WHERE (from_card_id = 4242 OR to_card_id = 4242)
+  AND created_at >= now() - interval '90 days' AND created_at < now()
+ORDER BY created_at DESC;
+
+-- то же через prepared statement, как его выполняет JDBC (pruning во время выполнения)
+PREPARE card_history(bigint, timestamp, timestamp) AS
+SELECT * FROM bench.tx_part
+WHERE (from_card_id = $1 OR to_card_id = $1) AND created_at >= $2 AND created_at < $3
+ORDER BY created_at DESC;
+SET plan_cache_mode = force_generic_plan;
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE card_history(4242, (now() - interval '90 days')::timestamp, now()::timestamp);
+RESET plan_cache_mode;
+
+-- размеры индексов: на партиционированной таблице горячие индексы последних месяцев помещаются в память
+SELECT relname, pg_size_pretty(pg_relation_size(oid)) AS size
+FROM pg_class
+WHERE relnamespace = 'bench'::regnamespace AND relkind = 'i'
+ORDER BY pg_relation_size(oid) DESC
+LIMIT 10;
+
+-- DROP SCHEMA bench CASCADE;
@@ -0,0 +1,97 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.dto.GenericErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caps concurrent /api/admin/** requests and routes them to the admin connection pool.
+// Registered as a plain servlet filter, so it runs after the security chain has
+// rejected unauthenticated calls.
+@Component
+@Slf4j
+public class AdminBulkheadFilter extends OncePerRequestFilter {
+
+    private static final String ADMIN_PATH_PREFIX = "/api/admin/";
+
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdminBulkheadFilter(ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.bulkhead.admin.max-concurrent:4}") int maxConcurrent,
+                               @Value("${app.bulkhead.admin.max-wait-ms:50}") long maxWaitMillis) {
+        this.objectMapper = objectMapper;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+
+        Gauge.builder("bankcards.bulkhead.active", this, filter -> filter.maxConcurrent - filter.permits.availablePermits())
+                .tag("bulkhead", "admin")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.bulkhead.max", this, filter -> filter.maxConcurrent)
+                .tag("bulkhead", "admin")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.bulkhead.queued", permits, Semaphore::getQueueLength)
+                .tag("bulkhead", "admin")
+                .register(meterRegistry);
+        FunctionCounter.builder("bankcards.bulkhead.rejections", rejected, AtomicLong::get)
+                .tag("bulkhead", "admin")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(ADMIN_PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            rejected.incrementAndGet();
+            log.warn("Admin bulkhead full, rejecting {} {}", request.getMethod(), request.getRequestURI());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new GenericErrorResponse("Too many concurrent admin requests, please retry later"));
+            return;
+        }
+
+        DataSourceRouteContext.set(DataSourceRoute.ADMIN);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            DataSourceRouteContext.clear();
+            permits.release();
+        }
+    }
+}
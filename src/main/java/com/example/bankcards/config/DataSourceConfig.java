@@ -0,0 +1,82 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+// Customer and admin traffic use separate Hikari pools against the same database,
+// so a slow admin export can only exhaust its own connections. Read-only customer
+// transactions go to the replica pool when app.datasource.replica.url is set.
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryPool(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.admin.hikari")
+    public HikariDataSource adminPool(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("admin");
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${app.datasource.replica.url:}'.isBlank()")
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaPool(DataSourceProperties properties,
+                                       @Value("${app.datasource.replica.url}") String url,
+                                       @Value("${app.datasource.replica.username:}") String username,
+                                       @Value("${app.datasource.replica.password:}") String password) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username.isBlank() ? properties.determineUsername() : username)
+                .password(password.isBlank() ? properties.determinePassword() : password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryPool") DataSource primaryPool,
+                                 @Qualifier("adminPool") DataSource adminPool,
+                                 @Qualifier("replicaPool") ObjectProvider<DataSource> replicaPool,
+                                 ReadYourWritesGuard readYourWritesGuard) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DataSourceRoute.PRIMARY, primaryPool);
+        targets.put(DataSourceRoute.ADMIN, adminPool);
+        replicaPool.ifAvailable(replica -> targets.put(DataSourceRoute.REPLICA, replica));
+
+        RoutingDataSource routingDataSource = new RoutingDataSource(readYourWritesGuard);
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(primaryPool);
+        routingDataSource.afterPropertiesSet();
+
+        // defer the physical connection until the first statement, when the routing key is known
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
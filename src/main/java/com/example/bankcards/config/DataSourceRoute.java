@@ -0,0 +1,7 @@
+package com.example.bankcards.config;
+
+public enum DataSourceRoute {
+    PRIMARY,
+    ADMIN,
+    REPLICA
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.config;
+
+public final class DataSourceRouteContext {
+
+    private static final ThreadLocal<DataSourceRoute> CURRENT_ROUTE = new ThreadLocal<>();
+
+    private DataSourceRouteContext() {
+    }
+
+    public static void set(DataSourceRoute route) {
+        CURRENT_ROUTE.set(route);
+    }
+
+    public static DataSourceRoute get() {
+        return CURRENT_ROUTE.get();
+    }
+
+    public static void clear() {
+        CURRENT_ROUTE.remove();
+    }
+}
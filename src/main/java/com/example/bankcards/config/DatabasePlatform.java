@@ -0,0 +1,37 @@
+package com.example.bankcards.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Jobs that rely on PostgreSQL features (partitions, advisory locks, ...) check this
+// first, so they stay idle on the H2 database used by tests.
+@Component
+@RequiredArgsConstructor
+public class DatabasePlatform {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    public boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = result;
+        }
+        return result;
+    }
+
+    // Hibernate gives the connection back after every transaction (see application.yml) and
+    // then refuses isolation levels on the transaction definition, so a snapshot is asked for
+    // by the first statement of the transaction instead. H2 keeps its default.
+    public void repeatableRead() {
+        if (isPostgres()) {
+            jdbcTemplate.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+        }
+    }
+}
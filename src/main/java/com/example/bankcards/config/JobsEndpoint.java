@@ -0,0 +1,58 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.JobRun;
+import com.example.bankcards.repository.JobRunRepository;
+import com.example.bankcards.service.JobRunner;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// /actuator/jobs: latest run of every job, /actuator/jobs/{name}: its recent runs.
+@Component
+@Endpoint(id = "jobs")
+@RequiredArgsConstructor
+public class JobsEndpoint {
+
+    private final JobRunRepository jobRunRepository;
+    private final JobRunner jobRunner;
+
+    @ReadOperation
+    public Map<String, Object> jobs() {
+        Map<String, Object> jobs = new LinkedHashMap<>();
+        for (JobRun run : jobRunRepository.findLatestRuns()) {
+            Map<String, Object> job = describe(run);
+            job.put("runningHere", jobRunner.isRunningHere(run.getJobName()));
+            jobs.put(run.getJobName(), job);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("node", jobRunner.getNode());
+        result.put("jobs", jobs);
+        return result;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> job(@Selector String name) {
+        return jobRunRepository.findTop20ByJobNameOrderByIdDesc(name).stream()
+                .map(JobsEndpoint::describe)
+                .toList();
+    }
+
+    private static Map<String, Object> describe(JobRun run) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("id", run.getId());
+        description.put("status", run.getStatus().name());
+        description.put("node", run.getNode());
+        description.put("startedAt", run.getStartedAt().toString());
+        description.put("finishedAt", run.getFinishedAt() != null ? run.getFinishedAt().toString() : null);
+        description.put("rowsProcessed", run.getRowsProcessed());
+        description.put("checkpoint", run.getCheckpoint());
+        description.put("error", run.getError());
+        return description;
+    }
+}
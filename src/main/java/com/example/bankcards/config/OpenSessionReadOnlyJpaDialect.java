@@ -0,0 +1,25 @@
+package com.example.bankcards.config;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.sql.SQLException;
+
+// Read-only transactions keep Spring's FlushMode.MANUAL (no flush, no dirty checking on commit),
+// but do not switch the whole session to read-only: with open-in-view the entities loaded by
+// a read path stay in the request's session and may be modified by a later write transaction,
+// which Hibernate would silently ignore for entities loaded as read-only.
+public class OpenSessionReadOnlyJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (definition.isReadOnly()) {
+            entityManager.unwrap(Session.class).setDefaultReadOnly(false);
+        }
+        return transactionData;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.dto.ImportReport;
+import com.example.bankcards.service.PortfolioImportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// CLI mode: with --app.import.file=<path> the application imports the CSV file, logs the
+// report and exits instead of serving requests. Exit code 1 if any row failed.
+@Component
+@ConditionalOnProperty(name = "app.import.file")
+@RequiredArgsConstructor
+@Slf4j
+public class PortfolioImportRunner implements ApplicationRunner {
+
+    private final PortfolioImportService portfolioImportService;
+    private final ApplicationContext applicationContext;
+
+    @Value("${app.import.file}")
+    private String file;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Importing users and cards from file: {}", file);
+
+        ImportReport report;
+        try (Reader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+            report = portfolioImportService.importCsv(reader);
+        }
+        for (ImportReport.RowError error : report.getErrors()) {
+            log.warn("Line {}: {}", error.getLine(), error.getMessage());
+        }
+        if (report.isTruncated()) {
+            log.warn("Only the first {} of {} failed rows are listed", report.getErrors().size(),
+                    report.getFailedRows());
+        }
+
+        int exitCode = SpringApplication.exit(applicationContext, () -> report.getFailedRows() > 0 ? 1 : 0);
+        System.exit(exitCode);
+    }
+}
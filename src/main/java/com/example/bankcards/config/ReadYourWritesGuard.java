@@ -0,0 +1,113 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.security.JwtUser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Decides whether a read-only transaction may go to the replica. A user who has just
+// written is pinned to the primary for a short window, and all reads fall back to the
+// primary while the replica reports more lag than allowed.
+@Component
+@Slf4j
+public class ReadYourWritesGuard {
+
+    private final ObjectProvider<DataSource> replicaPool;
+    private final long windowNanos;
+    private final long maxLagMillis;
+    private final Map<Long, Long> pinnedUntil = new ConcurrentHashMap<>();
+
+    private volatile boolean replicaHealthy = true;
+
+    public ReadYourWritesGuard(@Qualifier("replicaPool") ObjectProvider<DataSource> replicaPool,
+                               @Value("${app.datasource.replica.read-your-writes-window-ms:2000}") long windowMillis,
+                               @Value("${app.datasource.replica.max-lag-ms:1000}") long maxLagMillis) {
+        this.replicaPool = replicaPool;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public void recordWrite(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pin(userId);
+                }
+            });
+        } else {
+            pin(userId);
+        }
+    }
+
+    public boolean canUseReplica() {
+        return replicaHealthy && !hasRecentWrite();
+    }
+
+    public boolean hasRecentWrite() {
+        Long userId = currentUserId();
+        if (userId == null) {
+            return false;
+        }
+        Long until = pinnedUntil.get(userId);
+        return until != null && until - System.nanoTime() >= 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:1000}")
+    public void checkReplicaLag() {
+        long now = System.nanoTime();
+        pinnedUntil.values().removeIf(until -> until - now < 0);
+
+        DataSource replica = replicaPool.getIfAvailable();
+        if (replica == null) {
+            return;
+        }
+
+        boolean healthy;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+                             + "ELSE COALESCE(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) * 1000, 0) END")) {
+            double lagMillis = rs.next() ? rs.getDouble(1) : 0;
+            healthy = lagMillis <= maxLagMillis;
+            if (!healthy) {
+                log.warn("Replica lag {} ms exceeds {} ms, routing reads to primary", (long) lagMillis, maxLagMillis);
+            }
+        } catch (Exception e) {
+            log.warn("Replica lag check failed, routing reads to primary: {}", e.getMessage());
+            healthy = false;
+        }
+        replicaHealthy = healthy;
+    }
+
+    private void pin(Long userId) {
+        pinnedUntil.put(userId, System.nanoTime() + windowNanos);
+    }
+
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof JwtUser jwtUser) {
+            return jwtUser.getUser().getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Must sit behind a LazyConnectionDataSourceProxy: the read-only flag of the current
+// transaction is only known after the transaction manager has asked for a connection.
+@RequiredArgsConstructor
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReadYourWritesGuard readYourWritesGuard;
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRoute route = DataSourceRouteContext.get();
+        if (route != null) {
+            return route;
+        }
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && readYourWritesGuard.canUseReplica()) {
+            // falls back to the primary pool when no replica is configured
+            return DataSourceRoute.REPLICA;
+        }
+        return DataSourceRoute.PRIMARY;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.config;
 
 import com.example.bankcards.security.JwtAuthenticationEntryPoint;
 import com.example.bankcards.security.JwtRequestFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -47,9 +48,13 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource))
                 .authorizeHttpRequests(authz -> {
                     authz
+                            // the original request of an async response (event stream) was already authorized
+                            .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+
                             // Public endpoints
                             .requestMatchers("/api/auth/**").permitAll()
                             .requestMatchers("/actuator/health").permitAll()
+                            .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                             // Admin endpoints
                             .requestMatchers("/api/admin/**").hasRole("ADMIN")
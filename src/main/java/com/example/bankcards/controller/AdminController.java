@@ -4,7 +4,14 @@ import com.example.bankcards.dto.AdminCardCreateRequest;
 import com.example.bankcards.dto.AdminCardUpdateRequest;
 import com.example.bankcards.dto.AdminAuthRegisterRequest;
 import com.example.bankcards.dto.CardBlockRequestResponse;
+import com.example.bankcards.dto.CardBulkRequest;
+import com.example.bankcards.dto.CardBulkResponse;
+import com.example.bankcards.dto.CardIssuanceRequest;
+import com.example.bankcards.dto.CardIssuanceResponse;
+import com.example.bankcards.dto.CardLimitsRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.ImportReport;
+import com.example.bankcards.dto.ReconciliationReport;
 import com.example.bankcards.dto.UserCreateRequest;
 import com.example.bankcards.dto.TransactionResponse;
 import com.example.bankcards.dto.GenericErrorResponse;
@@ -16,8 +23,14 @@ import com.example.bankcards.entity.CardBlockRequest;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.security.JwtUser;
+import com.example.bankcards.service.BalanceReconciliationService;
+import com.example.bankcards.service.BalanceStripeService;
+import com.example.bankcards.service.BulkCardStatusService;
 import com.example.bankcards.service.CardBlockRequestService;
+import com.example.bankcards.service.CardIssuanceService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.FraudReplayService;
+import com.example.bankcards.service.PortfolioImportService;
 import com.example.bankcards.service.TransactionService;
 import com.example.bankcards.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -25,12 +38,19 @@ import lombok.RequiredArgsConstructor;
 import java.math.BigDecimal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -42,6 +62,12 @@ public class AdminController {
     private final CardService cardService;
     private final TransactionService transactionService;
     private final CardBlockRequestService cardBlockRequestService;
+    private final BalanceReconciliationService balanceReconciliationService;
+    private final BalanceStripeService balanceStripeService;
+    private final FraudReplayService fraudReplayService;
+    private final CardIssuanceService cardIssuanceService;
+    private final PortfolioImportService portfolioImportService;
+    private final BulkCardStatusService bulkCardStatusService;
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody AdminAuthRegisterRequest request,
@@ -238,6 +264,49 @@ public class AdminController {
         }
     }
 
+    // numbers are generated, cards are written in JDBC batches
+    @PostMapping("/cards/bulk")
+    public ResponseEntity<?> issueCards(@Valid @RequestBody CardIssuanceRequest request,
+                                        Authentication authentication) {
+        log.info("Admin {} issuing {} cards for user: {}", authentication.getName(), request.getCount(),
+                request.getUserId());
+
+        try {
+            CardIssuanceService.Result result = cardIssuanceService.issue(
+                    request.getUserId(),
+                    request.getBin(),
+                    request.getCount(),
+                    request.getOwner(),
+                    request.getExpiryDate(),
+                    request.getBalance() != null ? request.getBalance() : BigDecimal.ZERO);
+
+            return ResponseEntity.ok(new CardIssuanceResponse(request.getUserId(), result.issued(),
+                    result.regenerated(), result.durationMs()));
+
+        } catch (Exception e) {
+            log.error("Error issuing cards: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to issue cards: " + e.getMessage()));
+        }
+    }
+
+    // the body is read as a stream, rows that fail are listed in the report
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<?> importPortfolio(HttpServletRequest request, Authentication authentication) {
+        log.info("Admin {} importing users and cards from CSV", authentication.getName());
+
+        try {
+            ImportReport report = portfolioImportService.importCsv(
+                    new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+            return ResponseEntity.ok(report);
+
+        } catch (Exception e) {
+            log.error("Error importing users and cards: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to import users and cards: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/cards")
     public ResponseEntity<?> getAllCards(Authentication authentication) {
         log.info("Admin {} getting all cards", authentication.getName());
@@ -295,6 +364,75 @@ public class AdminController {
         }
     }
 
+    // set-based updates in chunks, for incidents that touch thousands of cards
+    @PutMapping("/cards/bulk/block")
+    public ResponseEntity<?> blockCards(@Valid @RequestBody CardBulkRequest request, Authentication authentication) {
+        log.info("Admin {} bulk blocking cards", authentication.getName());
+
+        try {
+            JwtUser userDetails = (JwtUser) authentication.getPrincipal();
+            User admin = userDetails.getUser();
+
+            BulkCardStatusService.Result result = bulkCardStatusService.block(selection(request), admin.getId());
+            return ResponseEntity.ok(bulkResponse(result));
+
+        } catch (Exception e) {
+            log.error("Error bulk blocking cards: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to block cards: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/cards/bulk/unblock")
+    public ResponseEntity<?> unblockCards(@Valid @RequestBody CardBulkRequest request, Authentication authentication) {
+        log.info("Admin {} bulk unblocking cards", authentication.getName());
+
+        try {
+            BulkCardStatusService.Result result = bulkCardStatusService.unblock(selection(request));
+            return ResponseEntity.ok(bulkResponse(result));
+
+        } catch (Exception e) {
+            log.error("Error bulk unblocking cards: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to unblock cards: " + e.getMessage()));
+        }
+    }
+
+    // spreads credits to a hot card over count stripe rows, 0 turns it off
+    @PutMapping("/cards/{id}/stripes")
+    public ResponseEntity<?> setCardStripes(@PathVariable Long id, @RequestParam int count,
+                                            Authentication authentication) {
+        log.info("Admin {} setting {} balance stripes for card: {}", authentication.getName(), count, id);
+
+        try {
+            Card card = balanceStripeService.setStripes(id, count);
+            return ResponseEntity.ok(new CardResponse(card));
+
+        } catch (Exception e) {
+            log.error("Error setting balance stripes: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to set balance stripes: " + e.getMessage()));
+        }
+    }
+
+    @PutMapping("/cards/{id}/limits")
+    public ResponseEntity<?> setCardLimits(@PathVariable Long id,
+                                           @Valid @RequestBody CardLimitsRequest request,
+                                           Authentication authentication) {
+        log.info("Admin {} setting limits for card: {}", authentication.getName(), id);
+
+        try {
+            Card card = cardService.updateLimits(id, request.getDailyLimit(), request.getMonthlyLimit(),
+                    request.getMaxTransfersPerHour());
+            return ResponseEntity.ok(new CardResponse(card));
+
+        } catch (Exception e) {
+            log.error("Error setting card limits: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to set card limits: " + e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/cards/{id}")
     public ResponseEntity<?> deleteCard(@PathVariable Long id, Authentication authentication) {
         log.info("Admin {} deleting card: {}", authentication.getName(), id);
@@ -344,11 +482,14 @@ public class AdminController {
     }
 
     @GetMapping("/transactions")
-    public ResponseEntity<?> getAllTransactions(Authentication authentication) {
+    public ResponseEntity<?> getAllTransactions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
         log.info("Admin {} getting all transactions", authentication.getName());
 
         try {
-            List<Transaction> transactions = transactionService.getAllTransactions();
+            List<Transaction> transactions = transactionService.getAllTransactions(from, to);
             List<TransactionResponse> responses = transactions.stream()
                     .map(TransactionResponse::new)
                     .toList();
@@ -429,6 +570,26 @@ public class AdminController {
         }
     }
 
+    @PutMapping("/card-block-requests/bulk/approve")
+    public ResponseEntity<?> approveCardBlockRequests(@Valid @RequestBody CardBulkRequest request,
+                                                      Authentication authentication) {
+        log.info("Admin {} bulk approving card block requests", authentication.getName());
+
+        try {
+            JwtUser userDetails = (JwtUser) authentication.getPrincipal();
+            User admin = userDetails.getUser();
+
+            BulkCardStatusService.Result result = bulkCardStatusService.approveRequests(selection(request),
+                    admin.getId());
+            return ResponseEntity.ok(bulkResponse(result));
+
+        } catch (Exception e) {
+            log.error("Error bulk approving card block requests: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to approve card block requests: " + e.getMessage()));
+        }
+    }
+
     @PutMapping("/card-block-requests/{id}/reject")
     public ResponseEntity<?> rejectCardBlockRequest(@PathVariable Long id,
                                                     Authentication authentication) {
@@ -451,4 +612,71 @@ public class AdminController {
                     .body(new GenericErrorResponse("Failed to reject card block request: " + e.getMessage()));
         }
     }
+
+    // synchronous, meant for ranges of days to weeks
+    @PostMapping("/fraud/replay")
+    public ResponseEntity<?> replayFraudRules(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
+        log.info("Admin {} replaying fraud rules from {} to {}", authentication.getName(), from, to);
+
+        try {
+            return ResponseEntity.ok(fraudReplayService.replay(from, to));
+
+        } catch (Exception e) {
+            log.error("Error replaying fraud rules: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to replay fraud rules: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reconciliation")
+    public ResponseEntity<?> getReconciliationReport(Authentication authentication) {
+        log.info("Admin {} getting last reconciliation report", authentication.getName());
+
+        try {
+            Optional<ReconciliationReport> report = balanceReconciliationService.getLastReport();
+            if (report.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new GenericErrorResponse("Reconciliation has not run yet"));
+            }
+
+            return ResponseEntity.ok(report.get());
+
+        } catch (Exception e) {
+            log.error("Error getting reconciliation report: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to get reconciliation report: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/reconciliation")
+    public ResponseEntity<?> startReconciliation(Authentication authentication) {
+        log.info("Admin {} starting reconciliation", authentication.getName());
+
+        try {
+            if (!balanceReconciliationService.startReconcile()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(new GenericErrorResponse("Reconciliation is already running"));
+            }
+
+            return ResponseEntity.accepted()
+                    .body(new GenericSuccessResponse("Reconciliation started"));
+
+        } catch (Exception e) {
+            log.error("Error starting reconciliation: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to start reconciliation: " + e.getMessage()));
+        }
+    }
+
+    private static BulkCardStatusService.Selection selection(CardBulkRequest request) {
+        return new BulkCardStatusService.Selection(request.getIds(), request.getUserId(), request.getBin());
+    }
+
+    private static CardBulkResponse bulkResponse(BulkCardStatusService.Result result) {
+        return new CardBulkResponse(result.matched(), result.updated(), result.requestsApproved(),
+                result.durationMs());
+    }
 }
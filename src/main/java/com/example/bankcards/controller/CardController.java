@@ -3,6 +3,7 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.CardBlockRequestDto;
 import com.example.bankcards.dto.CardBlockRequestResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSummaryResponse;
 import com.example.bankcards.dto.GenericErrorResponse;
 import com.example.bankcards.dto.PaginatedResponse;
 import com.example.bankcards.dto.UserBalanceResponse;
@@ -11,18 +12,25 @@ import com.example.bankcards.entity.CardBlockRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.security.JwtUser;
 import com.example.bankcards.service.CardBlockRequestService;
+import com.example.bankcards.service.CardEventStream;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSummaryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import com.example.bankcards.util.CardMasker;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import com.example.bankcards.util.EntityTags;
 
 import jakarta.validation.Valid;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -33,6 +41,11 @@ public class CardController {
 
     private final CardService cardService;
     private final CardBlockRequestService cardBlockRequestService;
+    private final CardSummaryService cardSummaryService;
+    private final CardEventStream cardEventStream;
+
+    // clients may keep the body but must revalidate it with If-None-Match on every use
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
 
 
     @GetMapping
@@ -41,7 +54,8 @@ public class CardController {
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDirection,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest webRequest) {
         log.info("Getting paginated cards for user: {}, page: {}, size: {}",
                 authentication.getName(), page, size);
 
@@ -53,12 +67,16 @@ public class CardController {
             if (page < 0) page = 0;
             if (size < 1 || size > 100) size = 20;
 
-            Page<Card> cardPage = cardService.getUserCardsPaginated(
+            String etag = EntityTags.of("cards", cardService.getUserCardsVersion(currentUser.getId()),
+                    page, size, sortBy, sortDirection);
+            if (webRequest.checkNotModified(etag)) {
+                return notModified();
+            }
+
+            Page<CardResponse> cardPage = cardService.getUserCardsPaginated(
                     currentUser.getId(), page, size, sortBy, sortDirection);
 
-            List<CardResponse> cardResponses = cardPage.getContent().stream()
-                    .map(CardResponse::new)
-                    .toList();
+            List<CardResponse> cardResponses = cardPage.getContent();
 
             PaginatedResponse<CardResponse> response = new PaginatedResponse<>(
                     cardResponses,
@@ -76,7 +94,9 @@ public class CardController {
                     cardResponses.size(), authentication.getName(),
                     page + 1, cardPage.getTotalPages());
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                    .cacheControl(REVALIDATE)
+                    .body(response);
 
         } catch (Exception e) {
             log.error("Error getting user cards: {}", e.getMessage());
@@ -86,12 +106,21 @@ public class CardController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> getCard(@PathVariable Long id, Authentication authentication) {
+    public ResponseEntity<?> getCard(@PathVariable Long id, Authentication authentication, WebRequest webRequest) {
         log.info("Getting card: {} for user: {}", id, authentication.getName());
 
         try {
             JwtUser userDetails = (JwtUser) authentication.getPrincipal();
             User currentUser = userDetails.getUser();
+
+            // only the owner gets a version, everyone else falls through to the 403 below
+            String etag = cardService.getCardVersion(id, currentUser.getId())
+                    .map(version -> EntityTags.of("card", id, version))
+                    .orElse(null);
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return notModified();
+            }
+
             Card card = cardService.getCardById(id);
 
             if (!cardService.isCardOwnedByUser(id, currentUser.getId())) {
@@ -99,7 +128,9 @@ public class CardController {
                         .body(new GenericErrorResponse("Access denied"));
             }
 
-            return ResponseEntity.ok(new CardResponse(card));
+            return ResponseEntity.ok()
+                    .cacheControl(REVALIDATE)
+                    .body(new CardResponse(card));
 
         } catch (Exception e) {
             log.error("Error getting card: {}", e.getMessage());
@@ -108,6 +139,33 @@ public class CardController {
         }
     }
 
+    @GetMapping("/{id}/summary")
+    public ResponseEntity<?> getCardSummary(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
+        log.info("Getting summary of card: {} for user: {}", id, authentication.getName());
+
+        try {
+            JwtUser userDetails = (JwtUser) authentication.getPrincipal();
+            User currentUser = userDetails.getUser();
+
+            if (!cardService.isCardOwnedByUser(id, currentUser.getId())) {
+                return ResponseEntity.status(403)
+                        .body(new GenericErrorResponse("Access denied"));
+            }
+
+            CardSummaryResponse summary = cardSummaryService.getCardSummary(id, from, to);
+            return ResponseEntity.ok(summary);
+
+        } catch (Exception e) {
+            log.error("Error getting card summary: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to get card summary: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/{id}/request-block")
     public ResponseEntity<?> requestCardBlock(@PathVariable Long id,
                                               @Valid @RequestBody CardBlockRequestDto request,
@@ -140,29 +198,25 @@ public class CardController {
     }
 
     @GetMapping("/balance")
-    public ResponseEntity<?> getUserBalance(Authentication authentication) {
+    public ResponseEntity<?> getUserBalance(Authentication authentication, WebRequest webRequest) {
         log.info("Getting balance for user: {}", authentication.getName());
 
         try {
             JwtUser userDetails = (JwtUser) authentication.getPrincipal();
             User currentUser = userDetails.getUser();
 
-            BigDecimal totalBalance = cardService.getUserTotalBalance(currentUser.getId());
-            List<Card> userCards = cardService.getUserCards(currentUser.getId());
-            List<UserBalanceResponse.CardBalance> cardBalances = userCards.stream()
-                    .map(card -> new UserBalanceResponse.CardBalance(
-                            card.getId(),
-                            CardMasker.maskCardNumber(card.getCardNumber()),
-                            card.getBalance(),
-                            card.getStatus().name()
-                    ))
-                    .toList();
+            String etag = EntityTags.of("balance", cardService.getUserCardsVersion(currentUser.getId()));
+            if (webRequest.checkNotModified(etag)) {
+                return notModified();
+            }
 
-            UserBalanceResponse response = new UserBalanceResponse(totalBalance, cardBalances);
+            UserBalanceResponse response = cardService.getUserBalance(currentUser.getId());
 
             log.info("Balance retrieved successfully for user: {}", authentication.getName());
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                    .cacheControl(REVALIDATE)
+                    .body(response);
 
         } catch (Exception e) {
             log.error("Error getting user balance: {}", e.getMessage());
@@ -170,4 +224,21 @@ public class CardController {
                     .body(new GenericErrorResponse("Failed to get user balance: " + e.getMessage()));
         }
     }
+
+    // balance changes and new transactions of the current user as server-sent events;
+    // replaces polling /balance and /api/transactions
+    @GetMapping("/stream")
+    public SseEmitter streamUpdates(Authentication authentication) {
+        log.info("Opening event stream for user: {}", authentication.getName());
+
+        JwtUser userDetails = (JwtUser) authentication.getPrincipal();
+        return cardEventStream.subscribe(userDetails.getUser().getId());
+    }
+
+    // checkNotModified has already written the ETag header on both paths
+    private static ResponseEntity<?> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(REVALIDATE)
+                .build();
+    }
 }
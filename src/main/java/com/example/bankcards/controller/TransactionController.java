@@ -2,24 +2,33 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.TransactionCreateRequest;
 import com.example.bankcards.dto.TransactionResponse;
+import com.example.bankcards.dto.TransferRequestResponse;
 import com.example.bankcards.dto.GenericErrorResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferRequest;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ServiceOverloadedException;
 import com.example.bankcards.security.JwtUser;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.service.TransferConcurrencyLimiter;
+import com.example.bankcards.service.TransferQueueService;
 import com.example.bankcards.util.CardMasker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -29,6 +38,8 @@ public class TransactionController {
 
     private final TransactionService transactionService;
     private final CardService cardService;
+    private final TransferConcurrencyLimiter transferConcurrencyLimiter;
+    private final TransferQueueService transferQueueService;
 
     @PostMapping
     public ResponseEntity<?> createTransaction(@Valid @RequestBody TransactionCreateRequest request,
@@ -39,64 +50,181 @@ public class TransactionController {
                 request.getAmount(),
                 authentication.getName());
 
+        return submitTransfer(request, authentication,
+                transaction -> completed(transactionService.createTransaction(transaction)));
+    }
+
+    // places a hold and answers with a PENDING transaction, settled later by capture or cancel
+    @PostMapping("/authorize")
+    public ResponseEntity<?> authorizeTransaction(@Valid @RequestBody TransactionCreateRequest request,
+                                                  Authentication authentication) {
+        log.info("Authorizing transaction from card {} to card {} amount: {} for user: {}",
+                CardMasker.maskCardNumber(request.getFromCardNumber()),
+                CardMasker.maskCardNumber(request.getToCardNumber()),
+                request.getAmount(),
+                authentication.getName());
+
+        return submitTransfer(request, authentication,
+                transaction -> completed(transactionService.authorizeTransaction(transaction)));
+    }
+
+    // accepts the transfer into the queue and answers 202 with a request to poll
+    @PostMapping("/async")
+    public ResponseEntity<?> queueTransaction(@Valid @RequestBody TransactionCreateRequest request,
+                                              Authentication authentication) {
+        log.info("Queueing transaction from card {} to card {} amount: {} for user: {}",
+                CardMasker.maskCardNumber(request.getFromCardNumber()),
+                CardMasker.maskCardNumber(request.getToCardNumber()),
+                request.getAmount(),
+                authentication.getName());
+
+        if (!transferQueueService.isEnabled()) {
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Asynchronous transfers are disabled"));
+        }
+
+        return submitTransfer(request, authentication, transaction -> {
+            TransferRequest queued = transferQueueService.enqueue(transaction);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/transactions/requests/" + queued.getId()))
+                    .body(new TransferRequestResponse(queued));
+        });
+    }
+
+    @GetMapping("/requests/{id}")
+    public ResponseEntity<?> getTransferRequest(@PathVariable Long id, Authentication authentication) {
+        log.info("Getting transfer request: {} for user: {}", id, authentication.getName());
+
         try {
             JwtUser userDetails = (JwtUser) authentication.getPrincipal();
             User currentUser = userDetails.getUser();
+            TransferRequest transferRequest = transferQueueService.getRequest(id);
 
-            Optional<Card> fromCardOpt = cardService.getCardByNumber(request.getFromCardNumber());
-            Optional<Card> toCardOpt = cardService.getCardByNumber(request.getToCardNumber());
-
-            if (fromCardOpt.isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(new GenericErrorResponse("Source card not found"));
+            if (!transferRequest.getUserId().equals(currentUser.getId())) {
+                return ResponseEntity.status(403)
+                        .body(new GenericErrorResponse("Access denied"));
             }
 
-            if (toCardOpt.isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(new GenericErrorResponse("Destination card not found"));
-            }
+            return ResponseEntity.ok(new TransferRequestResponse(transferRequest));
 
-            Card fromCard = fromCardOpt.get();
-            Card toCard = toCardOpt.get();
+        } catch (Exception e) {
+            log.error("Error getting transfer request: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to get transfer request: " + e.getMessage()));
+        }
+    }
 
-            if (!cardService.isCardOwnedByUser(fromCard.getId(), currentUser.getId())) {
-                return ResponseEntity.badRequest()
-                        .body(new GenericErrorResponse("Access denied to source card"));
-            }
+    @PostMapping("/{id}/capture")
+    public ResponseEntity<?> captureTransaction(@PathVariable Long id, Authentication authentication) {
+        log.info("Capturing transaction: {} for user: {}", id, authentication.getName());
+        return settle(id, authentication, transactionService::captureTransaction);
+    }
 
-            if (!cardService.isCardOwnedByUser(toCard.getId(), currentUser.getId())) {
-                return ResponseEntity.badRequest()
-                        .body(new GenericErrorResponse("You can only transfer between your own cards"));
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancelTransaction(@PathVariable Long id, Authentication authentication) {
+        log.info("Cancelling transaction: {} for user: {}", id, authentication.getName());
+        return settle(id, authentication, transactionService::cancelTransaction);
+    }
+
+    private ResponseEntity<?> submitTransfer(TransactionCreateRequest request, Authentication authentication,
+                                             Function<Transaction, ResponseEntity<?>> operation) {
+        try {
+            JwtUser userDetails = (JwtUser) authentication.getPrincipal();
+            User currentUser = userDetails.getUser();
+
+            try (TransferConcurrencyLimiter.Permit permit = transferConcurrencyLimiter.acquire(currentUser.getRole())) {
+                Optional<Card> fromCardOpt = cardService.getCardByNumber(request.getFromCardNumber());
+                Optional<Card> toCardOpt = cardService.getCardByNumber(request.getToCardNumber());
+
+                if (fromCardOpt.isEmpty()) {
+                    return ResponseEntity.badRequest()
+                            .body(new GenericErrorResponse("Source card not found"));
+                }
+
+                if (toCardOpt.isEmpty()) {
+                    return ResponseEntity.badRequest()
+                            .body(new GenericErrorResponse("Destination card not found"));
+                }
+
+                Card fromCard = fromCardOpt.get();
+                Card toCard = toCardOpt.get();
+
+                if (!cardService.isCardOwnedByUser(fromCard.getId(), currentUser.getId())) {
+                    return ResponseEntity.badRequest()
+                            .body(new GenericErrorResponse("Access denied to source card"));
+                }
+
+                if (!cardService.isCardOwnedByUser(toCard.getId(), currentUser.getId())) {
+                    return ResponseEntity.badRequest()
+                            .body(new GenericErrorResponse("You can only transfer between your own cards"));
+                }
+
+                Transaction transaction = Transaction.builder()
+                        .fromCard(fromCard)
+                        .toCard(toCard)
+                        .amount(request.getAmount())
+                        .description(request.getDescription())
+                        .build();
+
+                return permit.measure(() -> operation.apply(transaction));
             }
 
-            Transaction transaction = Transaction.builder()
-                    .fromCard(fromCard)
-                    .toCard(toCard)
-                    .amount(request.getAmount())
-                    .description(request.getDescription())
-                    .build();
+        } catch (ServiceOverloadedException e) {
+            log.warn("Transaction rejected for user {}: {}", authentication.getName(), e.getMessage());
+            // answered with 503 by GlobalExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            log.error("Error creating transaction: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GenericErrorResponse("Failed to create transaction: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> completed(Transaction savedTransaction) {
+        log.info("Transaction created successfully with id: {}", savedTransaction.getId());
+        return ResponseEntity.ok(new TransactionResponse(savedTransaction));
+    }
+
+    private ResponseEntity<?> settle(Long id, Authentication authentication, Function<Long, Transaction> operation) {
+        try {
+            JwtUser userDetails = (JwtUser) authentication.getPrincipal();
+            User currentUser = userDetails.getUser();
 
-            Transaction savedTransaction = transactionService.createTransaction(transaction);
+            try (TransferConcurrencyLimiter.Permit permit = transferConcurrencyLimiter.acquire(currentUser.getRole())) {
+                Transaction transaction = transactionService.getTransactionById(id);
+                if (!transaction.getFromCard().getUser().getId().equals(currentUser.getId())) {
+                    return ResponseEntity.status(403)
+                            .body(new GenericErrorResponse("Access denied"));
+                }
 
-            log.info("Transaction created successfully with id: {}", savedTransaction.getId());
+                Transaction settledTransaction = permit.measure(() -> operation.apply(id));
+                log.info("Transaction {} settled with status {}", id, settledTransaction.getStatus());
 
-            return ResponseEntity.ok(new TransactionResponse(savedTransaction));
+                return ResponseEntity.ok(new TransactionResponse(settledTransaction));
+            }
 
+        } catch (ServiceOverloadedException e) {
+            log.warn("Settlement of transaction {} rejected for user {}: {}", id, authentication.getName(), e.getMessage());
+            // answered with 503 by GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
-            log.error("Error creating transaction: {}", e.getMessage());
+            log.error("Error settling transaction {}: {}", id, e.getMessage());
             return ResponseEntity.badRequest()
-                    .body(new GenericErrorResponse("Failed to create transaction: " + e.getMessage()));
+                    .body(new GenericErrorResponse("Failed to settle transaction: " + e.getMessage()));
         }
     }
 
     @GetMapping
-    public ResponseEntity<?> getUserTransactions(Authentication authentication) {
+    public ResponseEntity<?> getUserTransactions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
         log.info("Getting transactions for user: {}", authentication.getName());
 
         try {
             JwtUser userDetails = (JwtUser) authentication.getPrincipal();
             User currentUser = userDetails.getUser();
-            List<Transaction> transactions = transactionService.getUserTransactions(currentUser.getId());
+            List<Transaction> transactions = transactionService.getUserTransactions(currentUser.getId(), from, to);
 
             List<TransactionResponse> transactionResponses = transactions.stream()
                     .map(TransactionResponse::new)
@@ -112,8 +240,11 @@ public class TransactionController {
     }
 
     @GetMapping("/card/{cardId}")
-    public ResponseEntity<?> getCardTransactions(@PathVariable Long cardId,
-                                                 Authentication authentication) {
+    public ResponseEntity<?> getCardTransactions(
+            @PathVariable Long cardId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
         log.info("Getting transactions for card: {} for user: {}", cardId, authentication.getName());
 
         try {
@@ -125,7 +256,7 @@ public class TransactionController {
                         .body(new GenericErrorResponse("Access denied"));
             }
 
-            List<Transaction> transactions = transactionService.getCardTransactions(cardId);
+            List<Transaction> transactions = transactionService.getCardTransactions(cardId, from, to);
 
             List<TransactionResponse> transactionResponses = transactions.stream()
                     .map(TransactionResponse::new)
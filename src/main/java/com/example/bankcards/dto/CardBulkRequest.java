@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// either ids, or an owner and/or a BIN; for block requests the ids are request ids
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardBulkRequest {
+
+    private List<Long> ids;
+
+    private Long userId;
+
+    @Pattern(regexp = "\\d{6,8}", message = "BIN must be 6 to 8 digits")
+    private String bin;
+}
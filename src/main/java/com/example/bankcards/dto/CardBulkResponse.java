@@ -0,0 +1,15 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CardBulkResponse {
+    // cards, or block requests, picked by the selection
+    private final int matched;
+    // cards whose status changed, the others already had it
+    private final int updated;
+    private final int requestsApproved;
+    private final long durationMs;
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CardIssuanceResponse {
+    private final Long userId;
+    private final int issued;
+    // numbers found taken by the database and generated again
+    private final int regenerated;
+    private final long durationMs;
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// a null value removes that limit
+@Data
+public class CardLimitsRequest {
+
+    @DecimalMin(value = "0.01", message = "Daily limit must be greater than 0")
+    @DecimalMax(value = "100000000.00", message = "Daily limit must not exceed 100,000,000.00")
+    @Digits(integer = 9, fraction = 2, message = "Daily limit must have at most 2 decimal places")
+    private BigDecimal dailyLimit;
+
+    @DecimalMin(value = "0.01", message = "Monthly limit must be greater than 0")
+    @DecimalMax(value = "100000000.00", message = "Monthly limit must not exceed 100,000,000.00")
+    @Digits(integer = 9, fraction = 2, message = "Monthly limit must have at most 2 decimal places")
+    private BigDecimal monthlyLimit;
+
+    @Min(value = 1, message = "Transfers per hour must be at least 1")
+    private Integer maxTransfersPerHour;
+}
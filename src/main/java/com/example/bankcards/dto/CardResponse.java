@@ -17,6 +17,10 @@ public class CardResponse {
     private final LocalDate expiryDate;
     private final String status;
     private final BigDecimal balance;
+    private final BigDecimal availableBalance;
+    private final BigDecimal dailyLimit;
+    private final BigDecimal monthlyLimit;
+    private final Integer maxTransfersPerHour;
     private final String createdAt;
 
     public CardResponse(Card card) {
@@ -25,7 +29,11 @@ public class CardResponse {
         this.owner = card.getOwner();
         this.expiryDate = card.getExpiryDate();
         this.status = card.getStatus().name();
-        this.balance = card.getBalance();
+        this.balance = card.getTotalBalance();
+        this.availableBalance = card.getAvailableBalance();
+        this.dailyLimit = card.getDailyLimit();
+        this.monthlyLimit = card.getMonthlyLimit();
+        this.maxTransfersPerHour = card.getMaxTransfersPerHour();
         this.createdAt = card.getCreatedAt().toString();
     }
 }
@@ -0,0 +1,30 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CardSummaryResponse {
+    private final Long cardId;
+    private final String from;
+    private final String to;
+    private final BigDecimal totalDebits;
+    private final BigDecimal totalCredits;
+    private final long transactionCount;
+    private final BigDecimal closingBalance;
+    private final List<DaySummary> days;
+
+    @Data
+    @AllArgsConstructor
+    public static class DaySummary {
+        private final String date;
+        private final BigDecimal debits;
+        private final BigDecimal credits;
+        private final int transactionCount;
+        private final BigDecimal closingBalance;
+    }
+}
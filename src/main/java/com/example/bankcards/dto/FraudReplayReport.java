@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class FraudReplayReport {
+    private final long transfers;
+    private final long allowed;
+    private final long review;
+    private final long denied;
+    // transfers each rule scored points on
+    private final Map<String, Long> ruleHits;
+    private final long p99Micros;
+    private final long maxMicros;
+    private final long durationMs;
+}
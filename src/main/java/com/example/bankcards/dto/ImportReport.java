@@ -0,0 +1,26 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ImportReport {
+    private final long rows;
+    private final long usersCreated;
+    private final long cardsCreated;
+    private final long failedRows;
+    // only the first errors are listed, failedRows has the total
+    private final boolean truncated;
+    private final List<RowError> errors;
+    private final long durationMs;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private final long line;
+        private final String message;
+    }
+}
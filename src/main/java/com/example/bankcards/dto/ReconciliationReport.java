@@ -0,0 +1,30 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ReconciliationReport {
+    private final String status;
+    private final String startedAt;
+    private final String finishedAt;
+    private final long durationMs;
+    private final long cardsChecked;
+    private final long mismatchCount;
+    // only the first mismatches are listed, mismatchCount has the total
+    private final boolean truncated;
+    private final List<Mismatch> mismatches;
+
+    @Data
+    @AllArgsConstructor
+    public static class Mismatch {
+        private final Long cardId;
+        private final BigDecimal balance;
+        private final BigDecimal expectedBalance;
+        private final BigDecimal difference;
+    }
+}
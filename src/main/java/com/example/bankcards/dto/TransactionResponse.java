@@ -18,6 +18,7 @@ public class TransactionResponse {
     private final String description;
     private final String createdAt;
     private final String processedAt;
+    private final String holdExpiresAt;
 
     public TransactionResponse(Transaction transaction) {
         this.id = transaction.getId();
@@ -29,5 +30,7 @@ public class TransactionResponse {
         this.createdAt = transaction.getCreatedAt().toString();
         this.processedAt = transaction.getProcessedAt() != null ?
                 transaction.getProcessedAt().toString() : null;
+        this.holdExpiresAt = transaction.getHoldExpiresAt() != null ?
+                transaction.getHoldExpiresAt().toString() : null;
     }
 }
@@ -0,0 +1,29 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.TransferRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class TransferRequestResponse {
+    private final Long id;
+    private final String status;
+    private final BigDecimal amount;
+    private final Long transactionId;
+    private final String error;
+    private final String createdAt;
+    private final String processedAt;
+
+    public TransferRequestResponse(TransferRequest request) {
+        this.id = request.getId();
+        this.status = request.getStatus().name();
+        this.amount = request.getAmount();
+        this.transactionId = request.getTransactionId();
+        this.error = request.getError();
+        this.createdAt = request.getCreatedAt() != null ? request.getCreatedAt().toString() : null;
+        this.processedAt = request.getProcessedAt() != null ? request.getProcessedAt().toString() : null;
+    }
+}
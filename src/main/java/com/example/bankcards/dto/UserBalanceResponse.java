@@ -18,6 +18,8 @@ public class UserBalanceResponse {
         private final Long cardId;
         private final String cardNumber;
         private final BigDecimal balance;
+        // balance minus open holds
+        private final BigDecimal availableBalance;
         private final String status;
     }
 }
@@ -3,7 +3,10 @@ package com.example.bankcards.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Formula;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import com.example.bankcards.util.CardNumberAttributeConverter;
@@ -14,6 +17,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "cards")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -53,6 +58,49 @@ public class Card {
     @Builder.Default
     private BigDecimal balance = BigDecimal.ZERO;
 
+    // balance the card was issued with, moved forward by SQL when old transactions are archived;
+    // never part of an entity update, so a stale copy cannot overwrite it
+    @Column(name = "opening_balance", nullable = false, precision = 19, scale = 2, updatable = false)
+    @Builder.Default
+    private BigDecimal openingBalance = BigDecimal.ZERO;
+
+    // reserved by authorized transfers that are not captured yet, still part of balance
+    @Column(name = "held_amount", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal heldAmount = BigDecimal.ZERO;
+
+    // outgoing transfers over the last 24 hours / 30 days, and their count over the last hour;
+    // null means no limit
+    @Column(name = "daily_limit", precision = 19, scale = 2)
+    private BigDecimal dailyLimit;
+
+    @Column(name = "monthly_limit", precision = 19, scale = 2)
+    private BigDecimal monthlyLimit;
+
+    @Column(name = "max_transfers_per_hour")
+    private Integer maxTransfersPerHour;
+
+    // changes only when the card's own outgoing transfers or holds change, so spending
+    // windows survive incoming credits and admin edits that bump version
+    @Column(name = "spend_seq", nullable = false)
+    @Builder.Default
+    private long spendSeq = 0;
+
+    // when the card last went from BLOCKED or EXPIRED back to ACTIVE
+    @Column(name = "unblocked_at")
+    private LocalDateTime unblockedAt;
+
+    // 0: credits go to balance; N: credits are spread over N rows of card_balance_stripes,
+    // so inbound transfers to a hot card do not queue up on this row
+    @Column(name = "balance_stripes", nullable = false)
+    @Builder.Default
+    private int balanceStripes = 0;
+
+    // credits parked on the stripes and not yet moved into balance; read with the card, never written
+    @Formula("(SELECT COALESCE(SUM(s.amount), 0) FROM card_balance_stripes s WHERE s.card_id = id)")
+    @Builder.Default
+    private BigDecimal stripedBalance = BigDecimal.ZERO;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -65,6 +113,27 @@ public class Card {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // bumped by every update, stale writes fail instead of overwriting the balance
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    public BigDecimal getTotalBalance() {
+        return balance.add(stripedBalance);
+    }
+
+    public BigDecimal getAvailableBalance() {
+        return getTotalBalance().subtract(heldAmount);
+    }
+
+    public boolean isStriped() {
+        return balanceStripes > 0;
+    }
+
+    public boolean hasLimits() {
+        return dailyLimit != null || monthlyLimit != null || maxTransfersPerHour != null;
+    }
+
     public enum CardStatus {
         ACTIVE,
         BLOCKED,
@@ -0,0 +1,42 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+// One sub-balance of a striped card. Credits land here without locking the card row and are
+// moved into cards.balance by BalanceStripeService.consolidate(); written with SQL only.
+@Entity
+@Table(name = "card_balance_stripes")
+@IdClass(CardBalanceStripe.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardBalanceStripe {
+
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Id
+    @Column(name = "stripe")
+    private Integer stripe;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    // number of credits ever applied, part of the card's ETag version
+    @Column(nullable = false)
+    private Long credits;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long cardId;
+        private Integer stripe;
+    }
+}
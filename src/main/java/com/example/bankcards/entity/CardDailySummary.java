@@ -0,0 +1,52 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Completed transactions of one card on one day, kept up to date by TransactionService
+// and rebuilt for closed days by CardSummaryService.catchUp().
+@Entity
+@Table(name = "card_daily_summary")
+@IdClass(CardDailySummary.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardDailySummary {
+
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Id
+    @Column(name = "summary_date")
+    private LocalDate summaryDate;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal debits;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal credits;
+
+    @Column(name = "tx_count", nullable = false)
+    private int transactionCount;
+
+    @Column(name = "closing_balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal closingBalance;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long cardId;
+        private LocalDate summaryDate;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// One execution of a scheduled job on some node, see JobRunner.
+@Entity
+@Table(name = "job_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 100)
+    private String jobName;
+
+    @Column(nullable = false, length = 255)
+    private String node;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RunStatus status;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "rows_processed", nullable = false)
+    @Builder.Default
+    private Long rowsProcessed = 0L;
+
+    @Column(length = 255)
+    private String checkpoint;
+
+    @Column(length = 1000)
+    private String error;
+
+    public enum RunStatus {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
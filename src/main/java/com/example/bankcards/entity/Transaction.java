@@ -52,6 +52,10 @@ public class Transaction {
     @Column(name = "processed_at")
     private LocalDateTime processedAt;
 
+    // set while PENDING, the hold is released after this
+    @Column(name = "hold_expires_at")
+    private LocalDateTime holdExpiresAt;
+
     public enum TransactionStatus {
         PENDING,
         COMPLETED,
@@ -0,0 +1,50 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Catalog entry of one archived segment file: transactions of the cards in
+// [cardIdFrom, cardIdTo] created in [periodStart, periodEnd).
+@Entity
+@Table(name = "transaction_archive_segments")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionArchiveSegment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDateTime periodStart;
+
+    @Column(name = "period_end", nullable = false)
+    private LocalDateTime periodEnd;
+
+    @Column(name = "card_id_from", nullable = false)
+    private Long cardIdFrom;
+
+    @Column(name = "card_id_to", nullable = false)
+    private Long cardIdTo;
+
+    @Column(name = "file_name", nullable = false, length = 255)
+    private String fileName;
+
+    @Column(name = "record_count", nullable = false)
+    private Long recordCount;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(nullable = false)
+    private Long checksum;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class FraudSuspectedException extends BusinessException {
+
+    public FraudSuspectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class LimitExceededException extends BusinessException {
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class ServiceOverloadedException extends BusinessException {
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
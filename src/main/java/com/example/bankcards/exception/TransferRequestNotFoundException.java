@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+public class TransferRequestNotFoundException extends BusinessException {
+
+    public TransferRequestNotFoundException(Long id) {
+        super("Transfer request not found with id: " + id);
+    }
+}
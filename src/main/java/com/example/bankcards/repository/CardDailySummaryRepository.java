@@ -0,0 +1,17 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardDailySummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CardDailySummaryRepository extends JpaRepository<CardDailySummary, CardDailySummary.Key> {
+
+    List<CardDailySummary> findByCardIdAndSummaryDateBetweenOrderBySummaryDateAsc(Long cardId, LocalDate from, LocalDate to);
+
+    Optional<CardDailySummary> findFirstByCardIdAndSummaryDateLessThanEqualOrderBySummaryDateDesc(Long cardId, LocalDate date);
+}
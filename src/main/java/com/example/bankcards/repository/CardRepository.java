@@ -1,24 +1,79 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, Long> {
+public interface CardRepository extends JpaRepository<Card, Long>, CardRepositoryCustom {
     List<Card> findByUserId(Long userId);
 
     List<Card> findByUserIdAndStatus(Long userId, Card.CardStatus status);
 
     Optional<Card> findByCardNumber(String cardNumber);
 
+    // rows are locked in id order, the order single transfers lock their two cards in
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> lockAllForUpdate(@Param("ids") Collection<Long> ids);
+
     // pageable
     Page<Card> findByUserId(Long userId, Pageable pageable);
 
     Page<Card> findByUserIdAndStatus(Long userId, Card.CardStatus status, Pageable pageable);
+
+    // versions for conditional GET, read without loading or decrypting cards
+    // credits to stripes do not touch the card row, their counters stand in for its version
+    @Query("SELECT COUNT(c) AS cardCount, COALESCE(SUM(c.id), 0) AS idSum, COALESCE(SUM(c.version), 0) "
+            + "+ COALESCE((SELECT SUM(s.credits) FROM CardBalanceStripe s WHERE s.cardId IN "
+            + "(SELECT c2.id FROM Card c2 WHERE c2.user.id = :userId)), 0) AS versionSum "
+            + "FROM Card c WHERE c.user.id = :userId")
+    CardsVersion findCardsVersionByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT c.version + COALESCE((SELECT SUM(s.credits) FROM CardBalanceStripe s WHERE s.cardId = c.id), 0) "
+            + "FROM Card c WHERE c.id = :id AND c.user.id = :userId")
+    Optional<Long> findVersionByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    // bounds of the id space, batch jobs split it into fixed chunks
+    @Query("SELECT COALESCE(MIN(c.id), 0) AS minId, COALESCE(MAX(c.id), 0) AS maxId FROM Card c")
+    CardIdRange findIdRange();
+
+    @Query("SELECT c.id AS id, c.balance + COALESCE((SELECT SUM(s.amount) FROM CardBalanceStripe s "
+            + "WHERE s.cardId = c.id), 0) AS balance FROM Card c "
+            + "WHERE c.id BETWEEN :fromId AND :toId AND c.createdAt < :createdBefore ORDER BY c.id")
+    List<CardBalance> findBalancesInRange(@Param("fromId") Long fromId,
+                                          @Param("toId") Long toId,
+                                          @Param("createdBefore") LocalDateTime createdBefore);
+
+    interface CardIdRange {
+        Long getMinId();
+
+        Long getMaxId();
+    }
+
+    interface CardBalance {
+        Long getId();
+
+        BigDecimal getBalance();
+    }
+
+    interface CardsVersion {
+        Long getCardCount();
+
+        Long getIdSum();
+
+        Long getVersionSum();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+
+public interface CardRepositoryCustom {
+
+    // re-reads the card from the primary with SELECT ... FOR UPDATE and returns the managed instance
+    Card lockForUpdate(Card card);
+}
@@ -0,0 +1,28 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.CardNotFoundException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+public class CardRepositoryCustomImpl implements CardRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Card lockForUpdate(Card card) {
+        if (entityManager.contains(card)) {
+            // the instance may have been loaded earlier in the request (or from a replica), refresh it under the lock
+            entityManager.refresh(card, LockModeType.PESSIMISTIC_WRITE);
+            return card;
+        }
+
+        Card locked = entityManager.find(Card.class, card.getId(), LockModeType.PESSIMISTIC_WRITE);
+        if (locked == null) {
+            throw new CardNotFoundException(card.getId());
+        }
+        return locked;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.JobRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+
+    Optional<JobRun> findFirstByJobNameOrderByIdDesc(String jobName);
+
+    List<JobRun> findTop20ByJobNameOrderByIdDesc(String jobName);
+
+    @Query("SELECT r FROM JobRun r WHERE r.id IN (SELECT MAX(l.id) FROM JobRun l GROUP BY l.jobName) ORDER BY r.jobName")
+    List<JobRun> findLatestRuns();
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransactionArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TransactionArchiveSegmentRepository extends JpaRepository<TransactionArchiveSegment, Long> {
+
+    @Query("SELECT s FROM TransactionArchiveSegment s " +
+            "WHERE s.cardIdFrom <= :cardId AND s.cardIdTo >= :cardId " +
+            "AND s.periodStart < :to AND s.periodEnd > :from " +
+            "ORDER BY s.periodStart DESC")
+    List<TransactionArchiveSegment> findCardSegments(@Param("cardId") Long cardId,
+                                                     @Param("from") LocalDateTime from,
+                                                     @Param("to") LocalDateTime to);
+}
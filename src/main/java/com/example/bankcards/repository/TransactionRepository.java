@@ -1,15 +1,125 @@
 package com.example.bankcards.repository;
 
-import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+// transactions is partitioned by created_at, every history query carries a date range
+// so PostgreSQL only touches the matching monthly partitions
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    List<Transaction> findByFromCardUserIdOrToCardUserId(Long userId, Long userId2);
+    @Query("SELECT t FROM Transaction t "
+            + "WHERE (t.fromCard.user.id = :userId OR t.toCard.user.id = :userId) "
+            + "AND t.createdAt >= :from AND t.createdAt < :to "
+            + "ORDER BY t.createdAt DESC")
+    List<Transaction> findUserTransactions(@Param("userId") Long userId,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to);
 
-    List<Transaction> findByFromCardOrToCard(Card fromCard, Card toCard);
-}
\ No newline at end of file
+    @Query("SELECT t FROM Transaction t "
+            + "WHERE (t.fromCard.id = :cardId OR t.toCard.id = :cardId) "
+            + "AND t.createdAt >= :from AND t.createdAt < :to "
+            + "ORDER BY t.createdAt DESC")
+    List<Transaction> findCardTransactions(@Param("cardId") Long cardId,
+                                           @Param("from") LocalDateTime from,
+                                           @Param("to") LocalDateTime to);
+
+    List<Transaction> findByCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAtDesc(LocalDateTime from,
+                                                                                             LocalDateTime to);
+
+    // the id alone does not tell which partition the row is in, the created_at bound lets
+    // PostgreSQL skip the older ones
+    Optional<Transaction> findByIdAndCreatedAtGreaterThanEqual(Long id, LocalDateTime createdFrom);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transaction t WHERE t.id = :id AND t.createdAt >= :createdFrom")
+    Optional<Transaction> findByIdForUpdate(@Param("id") Long id, @Param("createdFrom") LocalDateTime createdFrom);
+
+    // SKIP LOCKED: a hold that is being captured or cancelled right now is left to that request
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT t FROM Transaction t "
+            + "WHERE t.status = com.example.bankcards.entity.Transaction.TransactionStatus.PENDING "
+            + "AND t.holdExpiresAt < :now AND t.createdAt >= :createdFrom ORDER BY t.holdExpiresAt")
+    List<Transaction> findExpiredHolds(@Param("now") LocalDateTime now,
+                                       @Param("createdFrom") LocalDateTime createdFrom,
+                                       Pageable pageable);
+
+    // per-card sums of completed transfers for the cards in [fromId, toId] since :from,
+    // split into what happened before :to and what happened after it
+    @Query("SELECT t.fromCard.id AS cardId, "
+            + "SUM(CASE WHEN t.createdAt < :to THEN t.amount ELSE 0 END) AS amountInRange, "
+            + "SUM(CASE WHEN t.createdAt < :to THEN 1 ELSE 0 END) AS countInRange, "
+            + "SUM(CASE WHEN t.createdAt >= :to THEN t.amount ELSE 0 END) AS amountAfter "
+            + "FROM Transaction t WHERE t.fromCard.id BETWEEN :fromId AND :toId "
+            + "AND t.status = com.example.bankcards.entity.Transaction.TransactionStatus.COMPLETED "
+            + "AND t.createdAt >= :from GROUP BY t.fromCard.id")
+    List<CardMovements> sumOutgoingSince(@Param("fromId") Long fromId,
+                                         @Param("toId") Long toId,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
+
+    @Query("SELECT t.toCard.id AS cardId, "
+            + "SUM(CASE WHEN t.createdAt < :to THEN t.amount ELSE 0 END) AS amountInRange, "
+            + "SUM(CASE WHEN t.createdAt < :to THEN 1 ELSE 0 END) AS countInRange, "
+            + "SUM(CASE WHEN t.createdAt >= :to THEN t.amount ELSE 0 END) AS amountAfter "
+            + "FROM Transaction t WHERE t.toCard.id BETWEEN :fromId AND :toId "
+            + "AND t.status = com.example.bankcards.entity.Transaction.TransactionStatus.COMPLETED "
+            + "AND t.createdAt >= :from GROUP BY t.toCard.id")
+    List<CardMovements> sumIncomingSince(@Param("fromId") Long fromId,
+                                         @Param("toId") Long toId,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
+
+    // unmanaged projections, so a long stream does not fill the persistence context
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT t.id AS id, t.fromCard.id AS fromCardId, t.toCard.id AS toCardId, t.amount AS amount, "
+            + "t.description AS description, t.createdAt AS createdAt "
+            + "FROM Transaction t "
+            + "WHERE (t.fromCard.id BETWEEN :fromId AND :toId OR t.toCard.id BETWEEN :fromId AND :toId) "
+            + "AND t.status = com.example.bankcards.entity.Transaction.TransactionStatus.COMPLETED "
+            + "AND t.createdAt >= :from AND t.createdAt < :to "
+            + "ORDER BY t.createdAt, t.id")
+    Stream<Movement> streamCompletedForCardRange(@Param("fromId") Long fromId,
+                                                 @Param("toId") Long toId,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("to") LocalDateTime to);
+
+    interface CardMovements {
+        Long getCardId();
+
+        BigDecimal getAmountInRange();
+
+        Long getCountInRange();
+
+        BigDecimal getAmountAfter();
+    }
+
+    interface Movement {
+        Long getId();
+
+        Long getFromCardId();
+
+        Long getToCardId();
+
+        BigDecimal getAmount();
+
+        String getDescription();
+
+        LocalDateTime getCreatedAt();
+    }
+}
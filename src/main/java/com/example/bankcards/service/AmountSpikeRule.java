@@ -0,0 +1,39 @@
+package com.example.bankcards.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// an amount far above what the card usually sends: more than factor times the mean and more
+// than 4 standard deviations above it, once the card has some history
+@Component
+@Order(4)
+public class AmountSpikeRule implements FraudRule {
+
+    private final int points;
+    private final int minHistory;
+    private final double factor;
+
+    public AmountSpikeRule(@Value("${app.fraud.rules.amount-spike.points:50}") int points,
+                           @Value("${app.fraud.rules.amount-spike.min-history:5}") int minHistory,
+                           @Value("${app.fraud.rules.amount-spike.factor:5.0}") double factor) {
+        this.points = points;
+        this.minHistory = minHistory;
+        this.factor = factor;
+    }
+
+    @Override
+    public String name() {
+        return "amount-spike";
+    }
+
+    @Override
+    public int score(Transfer transfer, FraudFeatures features) {
+        if (features.count() < minHistory) {
+            return 0;
+        }
+        double mean = features.mean();
+        double threshold = Math.max(factor * mean, mean + 4 * features.stdDev());
+        return transfer.amountCents() > threshold ? points : 0;
+    }
+}
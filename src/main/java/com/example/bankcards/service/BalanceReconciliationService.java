@@ -0,0 +1,277 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.dto.ReconciliationReport;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.LongLongHashMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Checks that every card balance equals opening_balance plus its completed incoming minus
+// outgoing transfers. The id space is split into chunks on a fork-join pool; a chunk reads
+// the per-card sums with two aggregate queries into a primitive map of cents and then
+// compares them with the balances, all in one repeatable-read snapshot.
+@Service
+@Slf4j
+public class BalanceReconciliationService {
+
+    private static final String INCOMING =
+            "SELECT to_card_id, SUM(amount) FROM transactions "
+                    + "WHERE status = 'COMPLETED' AND to_card_id BETWEEN ? AND ? GROUP BY to_card_id";
+
+    private static final String OUTGOING =
+            "SELECT from_card_id, SUM(amount) FROM transactions "
+                    + "WHERE status = 'COMPLETED' AND from_card_id BETWEEN ? AND ? GROUP BY from_card_id";
+
+    private static final String BALANCES =
+            "SELECT c.id, c.balance + COALESCE((SELECT SUM(s.amount) FROM card_balance_stripes s WHERE s.card_id = c.id), 0), "
+                    + "c.opening_balance FROM cards c WHERE c.id BETWEEN ? AND ?";
+
+    private final CardRepository cardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final JobRunner jobRunner;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final ForkJoinPool pool;
+    private final boolean enabled;
+    private final long chunkSize;
+    private final int maxReported;
+
+    private final Timer chunkTimer;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicReference<ReconciliationReport> lastReport = new AtomicReference<>();
+
+    public BalanceReconciliationService(CardRepository cardRepository,
+                                        JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager,
+                                        DatabasePlatform databasePlatform,
+                                        JobRunner jobRunner,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${app.reconciliation.enabled:true}") boolean enabled,
+                                        @Value("${app.reconciliation.chunk-size:10000}") long chunkSize,
+                                        @Value("${app.reconciliation.parallelism:4}") int parallelism,
+                                        @Value("${app.reconciliation.max-reported:1000}") int maxReported) {
+        this.cardRepository = cardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobRunner = jobRunner;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.maxReported = maxReported;
+        this.pool = new ForkJoinPool(parallelism);
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.databasePlatform = databasePlatform;
+
+        this.chunkTimer = Timer.builder("bankcards.reconciliation.chunk.duration")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.reconciliation.mismatches", lastReport,
+                        report -> report.get() != null ? report.get().getMismatchCount() : 0)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.reconciliation.cron:0 30 4 * * *}")
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        runJob(this::reconcile);
+    }
+
+    // false when a run is already in progress on this node. The run is claimed here and not
+    // in the task, so two requests arriving together cannot both be accepted.
+    public boolean startReconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    runJob(this::runReconciliation);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    private void runJob(Supplier<ReconciliationReport> reconciliation) {
+        jobRunner.run("balance-reconciliation", context -> {
+            ReconciliationReport report = reconciliation.get();
+            if (report == null) {
+                return;
+            }
+            context.addRows(report.getCardsChecked());
+            if ("FAILED".equals(report.getStatus())) {
+                throw new IllegalStateException("Reconciliation failed, see the log");
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public Optional<ReconciliationReport> getLastReport() {
+        return Optional.ofNullable(lastReport.get());
+    }
+
+    public ReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Reconciliation already running");
+            return null;
+        }
+        try {
+            return runReconciliation();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // the caller holds the running flag
+    private ReconciliationReport runReconciliation() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long started = System.nanoTime();
+        try {
+            CardRepository.CardIdRange range = cardRepository.findIdRange();
+            ChunkResult result = range.getMinId() == null
+                    ? new ChunkResult()
+                    : pool.invoke(new RangeTask(range.getMinId(), range.getMaxId()));
+
+            ReconciliationReport report = report("COMPLETED", startedAt, started, result);
+            lastReport.set(report);
+            if (result.mismatchCount > 0) {
+                log.warn("Reconciliation found {} mismatching balances out of {} cards",
+                        result.mismatchCount, result.cards);
+            } else {
+                log.info("Reconciliation checked {} cards in {} ms, no mismatches", result.cards, report.getDurationMs());
+            }
+            return report;
+        } catch (RuntimeException e) {
+            log.error("Reconciliation failed: {}", e.getMessage(), e);
+            ReconciliationReport report = report("FAILED", startedAt, started, new ChunkResult());
+            lastReport.set(report);
+            return report;
+        }
+    }
+
+    ChunkResult checkChunk(long fromId, long toId) {
+        long started = System.nanoTime();
+        try {
+            return transactionTemplate.execute(status -> {
+                // one snapshot per chunk, so transfers committing meanwhile cannot show up as mismatches
+                databasePlatform.repeatableRead();
+                LongLongHashMap movedCents = new LongLongHashMap((int) Math.min(toId - fromId + 1, 1 << 16));
+                jdbcTemplate.query(INCOMING, (RowCallbackHandler) rs ->
+                        movedCents.addTo(rs.getLong(1), cents(rs.getBigDecimal(2))), fromId, toId);
+                jdbcTemplate.query(OUTGOING, (RowCallbackHandler) rs ->
+                        movedCents.addTo(rs.getLong(1), -cents(rs.getBigDecimal(2))), fromId, toId);
+
+                ChunkResult result = new ChunkResult();
+                jdbcTemplate.query(BALANCES, (RowCallbackHandler) rs -> {
+                    long cardId = rs.getLong(1);
+                    long balance = cents(rs.getBigDecimal(2));
+                    long expected = cents(rs.getBigDecimal(3)) + movedCents.get(cardId, 0);
+                    result.cards++;
+                    if (balance != expected) {
+                        result.addMismatch(cardId, balance, expected, maxReported);
+                    }
+                }, fromId, toId);
+                return result;
+            });
+        } finally {
+            chunkTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ReconciliationReport report(String status, LocalDateTime startedAt, long started, ChunkResult result) {
+        return new ReconciliationReport(status, startedAt.toString(), LocalDateTime.now().toString(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                result.cards, result.mismatchCount, result.mismatchCount > result.mismatches.size(),
+                result.mismatches);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private class RangeTask extends RecursiveTask<ChunkResult> {
+
+        private final long fromId;
+        private final long toId;
+
+        RangeTask(long fromId, long toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            if (toId - fromId < chunkSize) {
+                return checkChunk(fromId, toId);
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            RangeTask left = new RangeTask(fromId, middle);
+            left.fork();
+            ChunkResult right = new RangeTask(middle + 1, toId).compute();
+            return left.join().merge(right, maxReported);
+        }
+    }
+
+    static class ChunkResult {
+        long cards;
+        long mismatchCount;
+        final List<ReconciliationReport.Mismatch> mismatches = new ArrayList<>();
+
+        void addMismatch(long cardId, long balance, long expected, int maxReported) {
+            mismatchCount++;
+            if (mismatches.size() < maxReported) {
+                mismatches.add(new ReconciliationReport.Mismatch(cardId, fromCents(balance), fromCents(expected),
+                        fromCents(balance - expected)));
+            }
+        }
+
+        ChunkResult merge(ChunkResult other, int maxReported) {
+            cards += other.cards;
+            mismatchCount += other.mismatchCount;
+            for (ReconciliationReport.Mismatch mismatch : other.mismatches) {
+                if (mismatches.size() >= maxReported) {
+                    break;
+                }
+                mismatches.add(mismatch);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Striped balances for cards that receive many concurrent transfers. A credit adds to one of
+// the card's stripe rows, picked by a hash of the source card, instead of locking the card
+// row, so N stripes take N credits at once. The card's balance is balance plus its stripes;
+// a debit that the balance alone cannot cover first moves the stripes into it under the card
+// lock. Stripe rows are always locked after card rows.
+@Service
+@Slf4j
+public class BalanceStripeService {
+
+    private static final String CREDIT =
+            "UPDATE card_balance_stripes SET amount = amount + ?, credits = credits + 1 WHERE card_id = ? AND stripe = ?";
+
+    private static final String LOCK_NONZERO =
+            "SELECT stripe, amount FROM card_balance_stripes WHERE card_id = ? AND amount <> 0 ORDER BY stripe FOR UPDATE";
+
+    private static final String DRAIN =
+            "UPDATE card_balance_stripes SET amount = amount - ? WHERE card_id = ? AND stripe = ?";
+
+    private static final String INSERT_STRIPE =
+            "INSERT INTO card_balance_stripes (card_id, stripe, amount, credits) VALUES (?, ?, 0, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardRepository cardRepository;
+    private final EntityCacheInvalidator entityCacheInvalidator;
+    private final UserBalanceCache userBalanceCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final int maxStripes;
+
+    private final Counter credits;
+    private final Counter consolidations;
+
+    public BalanceStripeService(JdbcTemplate jdbcTemplate,
+                                CardRepository cardRepository,
+                                EntityCacheInvalidator entityCacheInvalidator,
+                                UserBalanceCache userBalanceCache,
+                                CacheInvalidationBus cacheInvalidationBus,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.cards.stripes.max:64}") int maxStripes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cardRepository = cardRepository;
+        this.entityCacheInvalidator = entityCacheInvalidator;
+        this.userBalanceCache = userBalanceCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.maxStripes = maxStripes;
+
+        this.credits = Counter.builder("bankcards.cards.stripes.credits")
+                .register(meterRegistry);
+        this.consolidations = Counter.builder("bankcards.cards.stripes.consolidations")
+                .description("Debits that had to move stripes into the card balance first")
+                .register(meterRegistry);
+    }
+
+    // the card row is not locked and not written, only one stripe row is
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void credit(Card card, Long sourceCardId, BigDecimal amount) {
+        int stripe = stripeFor(sourceCardId, card.getBalanceStripes());
+        if (jdbcTemplate.update(CREDIT, amount, card.getId(), stripe) == 0) {
+            throw new CardNotFoundException(card.getId());
+        }
+        card.setStripedBalance(card.getStripedBalance().add(amount));
+        credits.increment();
+
+        // neither Hibernate nor the version of the card saw this write
+        Long userId = card.getUser().getId();
+        Long cardId = card.getId();
+        afterCommit(() -> {
+            entityCacheInvalidator.evict(InvalidatableCache.Region.CARD, cardId);
+            userBalanceCache.evict(InvalidatableCache.Region.BALANCE, userId);
+        });
+    }
+
+    // Moves everything parked on the stripes into balance. The card must be locked by the caller.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal consolidate(Card card) {
+        List<Stripe> stripes = jdbcTemplate.query(LOCK_NONZERO,
+                (rs, rowNum) -> new Stripe(rs.getInt(1), rs.getBigDecimal(2)), card.getId());
+        // credits committed after this read land on rows that are not locked and stay parked
+        card.setStripedBalance(BigDecimal.ZERO);
+        if (stripes.isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+
+        jdbcTemplate.batchUpdate(DRAIN, stripes, stripes.size(), (ps, stripe) -> {
+            ps.setBigDecimal(1, stripe.amount());
+            ps.setLong(2, card.getId());
+            ps.setInt(3, stripe.stripe());
+        });
+        BigDecimal total = stripes.stream()
+                .map(Stripe::amount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        card.setBalance(card.getBalance().add(total));
+        consolidations.increment();
+        log.debug("Moved {} from {} stripes into the balance of card {}", total, stripes.size(), card.getId());
+        return total;
+    }
+
+    // 0 turns striping off; existing stripe rows are kept, drained and still counted
+    @Transactional
+    public Card setStripes(Long cardId, int stripes) {
+        if (stripes < 0 || stripes > maxStripes) {
+            throw new IllegalArgumentException("Stripes must be between 0 and " + maxStripes);
+        }
+        log.info("Setting {} balance stripes for card: {}", stripes, cardId);
+
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(() -> new CardNotFoundException(cardId));
+        card = cardRepository.lockForUpdate(card);
+
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM card_balance_stripes WHERE card_id = ?", Integer.class, cardId);
+        int from = existing != null ? existing : 0;
+        if (stripes > from) {
+            // rows exist before any transfer can see the new count
+            List<Integer> added = IntStream.range(from, stripes).boxed().toList();
+            jdbcTemplate.batchUpdate(INSERT_STRIPE, added, added.size(), (ps, stripe) -> {
+                ps.setLong(1, cardId);
+                ps.setInt(2, stripe);
+            });
+        }
+        consolidate(card);
+        card.setBalanceStripes(stripes);
+
+        Card savedCard = cardRepository.save(card);
+        userBalanceCache.cardChanged(savedCard);
+        cacheInvalidationBus.cardChanged(savedCard);
+        return savedCard;
+    }
+
+    static int stripeFor(Long sourceCardId, int stripes) {
+        // spread consecutive ids, then pick a stripe
+        long mixed = sourceCardId * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (mixed ^ (mixed >>> 32)), stripes);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    record Stripe(int stripe, BigDecimal amount) {
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.CardNumberAttributeConverter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+// Blocks and unblocks cards and approves block requests by the thousand, for incidents such
+// as a leaked BIN range. Cards are picked by ids, owner or BIN and changed in chunks, one
+// transaction each: the chunk's cards are locked in id order, updated with one set-based
+// UPDATE that bumps the version (a card loaded before cannot be saved back with the old
+// status), their pending block requests are approved in the same pass and the outbox events
+// written in one batch. Caches are flushed once at the end, as after the expiry sweep.
+@Service
+@Slf4j
+public class BulkCardStatusService {
+
+    private static final Pattern BIN = Pattern.compile("\\d{6,8}");
+    // replaced with "= ANY(?)" on PostgreSQL and an IN list elsewhere
+    private static final String IDS = "{ids}";
+
+    // an expired card stays EXPIRED, so a later bulk unblock cannot make it ACTIVE
+    private static final String LOCK_ACTIVE =
+            "SELECT id, user_id FROM cards WHERE status = 'ACTIVE' AND id " + IDS + " ORDER BY id FOR UPDATE";
+
+    private static final String LOCK_BLOCKED =
+            "SELECT id, user_id FROM cards WHERE status = 'BLOCKED' AND expiry_date >= ? AND id " + IDS
+                    + " ORDER BY id FOR UPDATE";
+
+    private static final String BLOCK =
+            "UPDATE cards SET status = 'BLOCKED', version = version + 1, updated_at = ? WHERE id " + IDS;
+
+    private static final String UNBLOCK =
+            "UPDATE cards SET status = 'ACTIVE', unblocked_at = ?, version = version + 1, updated_at = ? WHERE id " + IDS;
+
+    private static final String APPROVE_REQUESTS =
+            "UPDATE card_block_requests SET status = 'APPROVED', processed_by_id = ?, processed_at = ?, updated_at = ? "
+                    + "WHERE status = 'PENDING' AND card_id " + IDS;
+
+    private static final String PENDING_BY_ID =
+            "SELECT card_id FROM card_block_requests WHERE status = 'PENDING' AND id " + IDS + " ORDER BY card_id FOR UPDATE";
+
+    private static final String PENDING_BY_CARD =
+            "SELECT card_id FROM card_block_requests WHERE status = 'PENDING' AND card_id " + IDS
+                    + " ORDER BY card_id FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final CardNumberAttributeConverter cardNumberConverter;
+    private final OutboxService outboxService;
+    private final CardEventStream cardEventStream;
+    private final EntityManagerFactory entityManagerFactory;
+    private final UserBalanceCache userBalanceCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionTemplate chunkTemplate;
+    private final int chunkSize;
+    private final int maxCards;
+
+    private final Counter blocked;
+    private final Counter unblocked;
+    private final Counter approved;
+
+    public BulkCardStatusService(JdbcTemplate jdbcTemplate,
+                                 DatabasePlatform databasePlatform,
+                                 CardNumberAttributeConverter cardNumberConverter,
+                                 OutboxService outboxService,
+                                 CardEventStream cardEventStream,
+                                 EntityManagerFactory entityManagerFactory,
+                                 UserBalanceCache userBalanceCache,
+                                 CacheInvalidationBus cacheInvalidationBus,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.cards.bulk.chunk-size:1000}") int chunkSize,
+                                 @Value("${app.cards.bulk.max-cards:200000}") int maxCards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.cardNumberConverter = cardNumberConverter;
+        this.outboxService = outboxService;
+        this.cardEventStream = cardEventStream;
+        this.entityManagerFactory = entityManagerFactory;
+        this.userBalanceCache = userBalanceCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.transactionManager = transactionManager;
+        this.chunkTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxCards = maxCards;
+
+        this.blocked = Counter.builder("bankcards.cards.bulk.updated")
+                .tag("operation", "block")
+                .register(meterRegistry);
+        this.unblocked = Counter.builder("bankcards.cards.bulk.updated")
+                .tag("operation", "unblock")
+                .register(meterRegistry);
+        this.approved = Counter.builder("bankcards.cards.bulk.updated")
+                .tag("operation", "approve")
+                .register(meterRegistry);
+    }
+
+    // pending block requests of the blocked cards are approved by the admin
+    public Result block(Selection selection, Long adminId) {
+        long started = System.currentTimeMillis();
+        List<Long> cardIds = cardIds(selection);
+        log.info("Bulk blocking {} cards by admin: {}", cardIds.size(), adminId);
+
+        int[] totals = new int[2];
+        try {
+            for (List<Long> chunk : chunks(cardIds)) {
+                chunkTemplate.executeWithoutResult(status -> {
+                    int[] result = blockChunk(chunk, adminId, "ADMIN");
+                    totals[0] += result[0];
+                    totals[1] += result[1];
+                });
+            }
+        } finally {
+            changed(totals[0] + totals[1]);
+        }
+        blocked.increment(totals[0]);
+        return result("Bulk block", cardIds.size(), totals, started);
+    }
+
+    // only BLOCKED cards that have not expired become ACTIVE; pending block requests stay pending
+    public Result unblock(Selection selection) {
+        long started = System.currentTimeMillis();
+        List<Long> cardIds = cardIds(selection);
+        log.info("Bulk unblocking {} cards", cardIds.size());
+
+        int[] totals = new int[2];
+        try {
+            for (List<Long> chunk : chunks(cardIds)) {
+                chunkTemplate.executeWithoutResult(status -> {
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    Map<Long, Long> owners = lock(LOCK_BLOCKED, chunk, Date.valueOf(LocalDate.now()));
+                    if (!owners.isEmpty()) {
+                        update(UNBLOCK, new ArrayList<>(owners.keySet()), now, now);
+                        outboxService.cardsStatusChanged(owners, Card.CardStatus.ACTIVE, "ADMIN");
+                        cardEventStream.cardsStatusChanged(owners, Card.CardStatus.ACTIVE);
+                    }
+                    totals[0] += owners.size();
+                });
+            }
+        } finally {
+            changed(totals[0]);
+        }
+        unblocked.increment(totals[0]);
+        return result("Bulk unblock", cardIds.size(), totals, started);
+    }
+
+    // ids of the selection are request ids here, owner and BIN pick the requests of those cards
+    public Result approveRequests(Selection selection, Long adminId) {
+        long started = System.currentTimeMillis();
+        boolean byRequest = selection.ids() != null && !selection.ids().isEmpty();
+        List<Long> ids = cardIds(selection);
+        log.info("Bulk approving block requests of {} {} by admin: {}", ids.size(), byRequest ? "requests" : "cards",
+                adminId);
+
+        int[] totals = new int[2];
+        try {
+            for (List<Long> chunk : chunks(ids)) {
+                chunkTemplate.executeWithoutResult(status -> {
+                    List<Long> cardIds = pendingCards(byRequest ? PENDING_BY_ID : PENDING_BY_CARD, chunk);
+                    if (cardIds.isEmpty()) {
+                        return;
+                    }
+                    int[] result = blockChunk(cardIds, adminId, "BLOCK_REQUEST");
+                    totals[0] += result[0];
+                    totals[1] += result[1];
+                });
+            }
+        } finally {
+            changed(totals[0] + totals[1]);
+        }
+        blocked.increment(totals[0]);
+        approved.increment(totals[1]);
+        return result("Bulk approve", ids.size(), totals, started);
+    }
+
+    // returns the number of cards blocked and of requests approved
+    private int[] blockChunk(List<Long> cardIds, Long adminId, String reason) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, Long> owners = lock(LOCK_ACTIVE, cardIds);
+        if (!owners.isEmpty()) {
+            update(BLOCK, new ArrayList<>(owners.keySet()), now);
+            outboxService.cardsStatusChanged(owners, Card.CardStatus.BLOCKED, reason);
+            cardEventStream.cardsStatusChanged(owners, Card.CardStatus.BLOCKED);
+        }
+        int requests = update(APPROVE_REQUESTS, cardIds, adminId, now, now);
+        return new int[]{owners.size(), requests};
+    }
+
+    // sorted and without duplicates, so chunks lock rows in the same order as everyone else
+    private List<Long> cardIds(Selection selection) {
+        List<Long> ids = selection.ids();
+        if (ids != null && !ids.isEmpty()) {
+            if (selection.userId() != null || selection.bin() != null) {
+                throw new IllegalArgumentException("Select either by ids or by user and BIN");
+            }
+            if (ids.size() > maxCards) {
+                throw new IllegalArgumentException("At most " + maxCards + " ids per request");
+            }
+            return new ArrayList<>(new TreeSet<>(ids));
+        }
+        if (selection.userId() == null && selection.bin() == null) {
+            throw new IllegalArgumentException("Select cards by ids, user or BIN");
+        }
+        if (selection.bin() != null && !BIN.matcher(selection.bin()).matches()) {
+            throw new IllegalArgumentException("BIN must be 6 to 8 digits");
+        }
+        return scan(selection.userId(), selection.bin());
+    }
+
+    // card numbers are encrypted, so a BIN is matched by decrypting them on the way
+    private List<Long> scan(Long userId, String bin) {
+        String sql = "SELECT id" + (bin != null ? ", card_number" : "") + " FROM cards"
+                + (userId != null ? " WHERE user_id = ?" : "") + " ORDER BY id";
+        List<Long> ids = new ArrayList<>();
+        // PostgreSQL only streams with a fetch size inside a transaction
+        TransactionTemplate read = new TransactionTemplate(transactionManager);
+        read.setReadOnly(true);
+        read.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(chunkSize);
+            if (userId != null) {
+                statement.setLong(1, userId);
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            if (bin != null) {
+                String cardNumber = cardNumberConverter.convertToEntityAttribute(rs.getString(2));
+                if (cardNumber == null || !cardNumber.startsWith(bin)) {
+                    return;
+                }
+            }
+            if (ids.size() == maxCards) {
+                throw new IllegalArgumentException("More than " + maxCards + " cards match, narrow the selection");
+            }
+            ids.add(rs.getLong(1));
+        }));
+        return ids;
+    }
+
+    // card id to owner id of the locked rows
+    private Map<Long, Long> lock(String sql, List<Long> ids, Object... params) {
+        Map<Long, Long> owners = new LinkedHashMap<>();
+        jdbcTemplate.query(connection -> prepare(connection, sql, ids, params),
+                (RowCallbackHandler) rs -> owners.put(rs.getLong(1), rs.getLong(2)));
+        return owners;
+    }
+
+    private List<Long> pendingCards(String sql, List<Long> ids) {
+        TreeSet<Long> cardIds = new TreeSet<>();
+        jdbcTemplate.query(connection -> prepare(connection, sql, ids),
+                (RowCallbackHandler) rs -> cardIds.add(rs.getLong(1)));
+        return new ArrayList<>(cardIds);
+    }
+
+    private int update(String sql, List<Long> ids, Object... params) {
+        return jdbcTemplate.update(connection -> prepare(connection, sql, ids, params));
+    }
+
+    // params come first, the ids are the last parameter(s) of the statement
+    private PreparedStatement prepare(Connection connection, String sql, List<Long> ids, Object... params)
+            throws SQLException {
+        boolean postgres = databasePlatform.isPostgres();
+        PreparedStatement statement = connection.prepareStatement(sql.replace(IDS,
+                postgres ? "= ANY(?)" : "IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")"));
+        int index = 1;
+        for (Object param : params) {
+            statement.setObject(index++, param);
+        }
+        if (postgres) {
+            statement.setArray(index, connection.createArrayOf("bigint", ids.toArray()));
+        } else {
+            for (Long id : ids) {
+                statement.setLong(index++, id);
+            }
+        }
+        return statement;
+    }
+
+    private List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    private void changed(int rows) {
+        if (rows > 0) {
+            // the rows changed behind Hibernate's back
+            entityManagerFactory.getCache().evict(Card.class);
+            userBalanceCache.invalidateAll();
+            cacheInvalidationBus.invalidateAll();
+        }
+    }
+
+    private Result result(String operation, int matched, int[] totals, long started) {
+        long durationMs = System.currentTimeMillis() - started;
+        log.info("{} finished: {} selected, {} cards changed, {} requests approved in {} ms",
+                operation, matched, totals[0], totals[1], durationMs);
+        return new Result(matched, totals[0], totals[1], durationMs);
+    }
+
+    public record Selection(List<Long> ids, Long userId, String bin) {
+    }
+
+    public record Result(int matched, int updated, int requestsApproved, long durationMs) {
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps node-local caches in step across instances. Writes collect the keys they touch during
+// the transaction and send them with a single pg_notify just before commit, so the notification
+// is delivered only if the write commits. Every node listens on a connection of its own, outside
+// the pools, gathers the keys that arrive within a short window and evicts them once. Anything
+// sent while the listener was disconnected is lost, so each (re)connect flushes all caches.
+@Component
+@Slf4j
+public class CacheInvalidationBus {
+
+    static final String CHANNEL = "bankcards_cache";
+    static final String ALL = "*";
+
+    // PostgreSQL rejects payloads of 8000 bytes and more
+    private static final int MAX_PAYLOAD = 7900;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final DataSourceProperties dataSourceProperties;
+    private final List<InvalidatableCache> caches;
+    private final boolean enabled;
+    private final long coalesceMillis;
+    private final int maxPending;
+    private final int pollMillis;
+    private final long reconnectDelayMillis;
+    private final String node = UUID.randomUUID().toString();
+
+    private final Counter sent;
+    private final Counter received;
+    private final Counter flushes;
+    private final AtomicInteger connected = new AtomicInteger();
+
+    private volatile boolean running;
+    private volatile Thread listener;
+
+    public CacheInvalidationBus(JdbcTemplate jdbcTemplate,
+                                DatabasePlatform databasePlatform,
+                                DataSourceProperties dataSourceProperties,
+                                List<InvalidatableCache> caches,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.cache.invalidation.enabled:true}") boolean enabled,
+                                @Value("${app.cache.invalidation.coalesce-ms:200}") long coalesceMillis,
+                                @Value("${app.cache.invalidation.max-pending:1000}") int maxPending,
+                                @Value("${app.cache.invalidation.poll-ms:5000}") int pollMillis,
+                                @Value("${app.cache.invalidation.reconnect-delay-ms:5000}") long reconnectDelayMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.dataSourceProperties = dataSourceProperties;
+        this.caches = caches;
+        this.enabled = enabled;
+        this.coalesceMillis = coalesceMillis;
+        this.maxPending = maxPending;
+        this.pollMillis = pollMillis;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+
+        this.sent = Counter.builder("bankcards.cache.invalidation.sent")
+                .register(meterRegistry);
+        this.received = Counter.builder("bankcards.cache.invalidation.received")
+                .description("Keys received from other nodes")
+                .register(meterRegistry);
+        this.flushes = Counter.builder("bankcards.cache.invalidation.flushes")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.cache.invalidation.connected", connected, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    public void cardChanged(Card card) {
+        publish(key(InvalidatableCache.Region.CARD, card.getId()));
+        publish(key(InvalidatableCache.Region.BALANCE, card.getUser().getId()));
+    }
+
+    public void cardRemoved(Long userId, Long cardId) {
+        publish(key(InvalidatableCache.Region.CARD, cardId));
+        publish(key(InvalidatableCache.Region.BALANCE, userId));
+    }
+
+    public void userChanged(Long userId) {
+        publish(key(InvalidatableCache.Region.USER, userId));
+        publish(key(InvalidatableCache.Region.BALANCE, userId));
+    }
+
+    // for writes made in SQL, where the affected rows are not known
+    public void invalidateAll() {
+        publish(ALL);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::listen, "cache-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+        listener = thread;
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        Thread thread = listener;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void publish(String key) {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(Set.of(key));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<String> keys = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // NOTIFY is transactional: held back until commit, dropped on rollback
+                    send(keys);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationBus.this);
+                }
+            });
+            pending = keys;
+        }
+        pending.add(key);
+    }
+
+    private void send(Collection<String> keys) {
+        String payload = node + "|" + (keys.contains(ALL) ? ALL : String.join(",", keys));
+        if (payload.length() > MAX_PAYLOAD) {
+            payload = node + "|" + ALL;
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (RowCallbackHandler) rs -> { }, CHANNEL, payload);
+        sent.increment();
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                connected.set(1);
+                log.info("Cache invalidation listener connected");
+                apply(Set.of(), true);
+                receive(connection);
+            } catch (SQLException e) {
+                connected.set(0);
+                if (running) {
+                    log.warn("Cache invalidation listener disconnected: {}", e.getMessage());
+                    pause();
+                }
+            } catch (RuntimeException e) {
+                // a bad payload or a cache that throws must not end the thread, the reconnect
+                // flushes every cache, so nothing missed meanwhile stays stale
+                connected.set(0);
+                if (running) {
+                    log.error("Cache invalidation listener failed: {}", e.getMessage(), e);
+                    pause();
+                }
+            }
+        }
+        connected.set(0);
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        Set<String> pending = new HashSet<>();
+        boolean flush = false;
+        long windowEnds = 0;
+
+        while (running) {
+            long waitMillis = pending.isEmpty() && !flush
+                    ? pollMillis
+                    : TimeUnit.NANOSECONDS.toMillis(windowEnds - System.nanoTime());
+            // a timeout of 0 would block until the next notification
+            PGNotification[] notifications = pgConnection.getNotifications((int) Math.max(1, waitMillis));
+
+            if (notifications != null && notifications.length > 0) {
+                boolean wasEmpty = pending.isEmpty() && !flush;
+                for (PGNotification notification : notifications) {
+                    flush |= collect(notification.getParameter(), pending);
+                }
+                if (wasEmpty && (flush || !pending.isEmpty())) {
+                    windowEnds = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(coalesceMillis);
+                }
+            } else if (pending.isEmpty() && !flush) {
+                // an idle socket does not notice a dead server by itself
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+            }
+
+            if ((flush || !pending.isEmpty()) && System.nanoTime() >= windowEnds) {
+                apply(pending, flush);
+                pending.clear();
+                flush = false;
+            }
+        }
+    }
+
+    // adds the keys of a payload sent by another node, returns true when it asks for a full flush
+    boolean collect(String payload, Set<String> pending) {
+        int separator = payload.indexOf('|');
+        if (separator < 0 || payload.substring(0, separator).equals(node)) {
+            // malformed, or our own write, which was applied locally already
+            return false;
+        }
+        String keys = payload.substring(separator + 1);
+        if (ALL.equals(keys)) {
+            received.increment();
+            return true;
+        }
+        for (String key : keys.split(",")) {
+            if (!key.isEmpty()) {
+                pending.add(key);
+                received.increment();
+            }
+        }
+        return false;
+    }
+
+    void apply(Set<String> keys, boolean flush) {
+        if (flush || keys.size() > maxPending) {
+            flushes.increment();
+            for (InvalidatableCache cache : caches) {
+                cache.evictAll();
+            }
+            return;
+        }
+        for (String key : keys) {
+            InvalidatableCache.Region region;
+            long id;
+            try {
+                region = InvalidatableCache.Region.of(key.charAt(0));
+                id = Long.parseLong(key.substring(1));
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring cache invalidation key {}", key);
+                continue;
+            }
+            for (InvalidatableCache cache : caches) {
+                cache.evict(region, id);
+            }
+        }
+    }
+
+    String getNode() {
+        return node;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(reconnectDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static String key(InvalidatableCache.Region region, Long id) {
+        return String.valueOf(region.getCode()) + id;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadYourWritesGuard;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardBlockRequest;
 import com.example.bankcards.entity.User;
@@ -23,6 +24,11 @@ public class CardBlockRequestService {
 
     private final CardBlockRequestRepository cardBlockRequestRepository;
     private final CardRepository cardRepository;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final UserBalanceCache userBalanceCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final OutboxService outboxService;
+    private final CardEventStream cardEventStream;
 
     @Transactional
     public CardBlockRequest createBlockRequest(Long cardId, Long requesterId, String reason) {
@@ -45,19 +51,24 @@ public class CardBlockRequestService {
         CardBlockRequest savedRequest = cardBlockRequestRepository.save(request);
         log.info("Block request created successfully with id: {}", savedRequest.getId());
 
+        readYourWritesGuard.recordWrite(requesterId);
+
         return savedRequest;
     }
 
+    @Transactional(readOnly = true)
     public List<CardBlockRequest> getUserRequests(Long userId) {
         log.info("Getting block requests for user: {}", userId);
         return cardBlockRequestRepository.findByRequesterId(userId);
     }
 
+    @Transactional(readOnly = true)
     public List<CardBlockRequest> getRequestsByStatus(CardBlockRequest.RequestStatus status) {
         log.info("Getting block requests by status: {}", status);
         return cardBlockRequestRepository.findByStatus(status);
     }
 
+    @Transactional(readOnly = true)
     public List<CardBlockRequest> getAllRequests() {
         log.info("Getting all block requests");
         return cardBlockRequestRepository.findAll();
@@ -77,6 +88,10 @@ public class CardBlockRequestService {
         // block card
         request.getCard().setStatus(Card.CardStatus.BLOCKED);
         cardRepository.save(request.getCard());
+        userBalanceCache.cardChanged(request.getCard());
+        cacheInvalidationBus.cardChanged(request.getCard());
+        cardEventStream.cardChanged(request.getCard());
+        outboxService.cardStatusChanged(request.getCard(), "BLOCK_REQUEST");
         // and approve request
         request.setStatus(CardBlockRequest.RequestStatus.APPROVED);
         request.setProcessedBy(User.builder().id(adminId).build());
@@ -109,6 +124,7 @@ public class CardBlockRequestService {
         return savedRequest;
     }
 
+    @Transactional(readOnly = true)
     public CardBlockRequest getRequestById(Long id) {
         log.info("Getting block request by id: {}", id);
         return cardBlockRequestRepository.findById(id)
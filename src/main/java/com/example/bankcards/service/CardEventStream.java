@@ -0,0 +1,290 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionResponse;
+import com.example.bankcards.dto.UserBalanceResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.util.CardMasker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Live updates behind GET /api/cards/stream. Services publish card and transaction changes,
+// which are queued per connection after commit and written by a small sender pool, so a slow
+// client never holds up the request that made the change. A connection whose buffer fills up
+// is closed; the client reconnects and reloads its state.
+@Service
+@Slf4j
+public class CardEventStream {
+
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final int maxConnectionsPerUser;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Executor sender;
+    private final ScheduledExecutorService heartbeat;
+    private final Counter sent;
+    private final Counter dropped;
+
+    @Autowired
+    public CardEventStream(MeterRegistry meterRegistry,
+                           @Value("${app.stream.buffer-size:64}") int bufferSize,
+                           @Value("${app.stream.timeout-ms:1800000}") long timeoutMillis,
+                           @Value("${app.stream.heartbeat-ms:15000}") long heartbeatMillis,
+                           @Value("${app.stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+                           @Value("${app.stream.sender-threads:2}") int senderThreads) {
+        this(meterRegistry, bufferSize, timeoutMillis, heartbeatMillis, maxConnectionsPerUser,
+                Executors.newFixedThreadPool(senderThreads, daemon("card-stream-sender")));
+    }
+
+    CardEventStream(MeterRegistry meterRegistry, int bufferSize, long timeoutMillis, long heartbeatMillis,
+                    int maxConnectionsPerUser, Executor sender) {
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.sender = sender;
+
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("card-stream-heartbeat"));
+        this.heartbeat.scheduleWithFixedDelay(this::sendHeartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("bankcards.stream.connections", connections, AtomicInteger::get)
+                .register(meterRegistry);
+        this.sent = Counter.builder("bankcards.stream.events")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("bankcards.stream.dropped")
+                .description("Connections closed because the client did not keep up")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        AtomicBoolean added = new AtomicBoolean();
+        subscribers.compute(userId, (id, userSubscribers) -> {
+            Set<Subscriber> result = userSubscribers != null ? userSubscribers : ConcurrentHashMap.newKeySet();
+            if (result.size() < maxConnectionsPerUser) {
+                result.add(subscriber);
+                added.set(true);
+            }
+            return result.isEmpty() ? null : result;
+        });
+        if (!added.get()) {
+            throw new ServiceOverloadedException("Too many open streams");
+        }
+        connections.incrementAndGet();
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        // the first event tells the client the stream is live
+        subscriber.offer(new Event("ready", Map.of("userId", userId)));
+        return emitter;
+    }
+
+    public void cardChanged(Card card) {
+        UserBalanceResponse.CardBalance balance = new UserBalanceResponse.CardBalance(
+                card.getId(),
+                CardMasker.maskCardNumber(card.getCardNumber()),
+                card.getTotalBalance(),
+                card.getAvailableBalance(),
+                card.getStatus().name());
+        publish(card.getUser().getId(), "balance", balance);
+    }
+
+    // bulk status changes carry no balances, one after-commit hook for the whole chunk
+    public void cardsStatusChanged(Map<Long, Long> ownersByCardId, Card.CardStatus status) {
+        if (ownersByCardId.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> owners = Map.copyOf(ownersByCardId);
+        afterCommit(() -> owners.forEach((cardId, userId) ->
+                deliver(userId, new Event("card-status", Map.of("cardId", cardId, "status", status.name())))));
+    }
+
+    public void cardRemoved(Long userId, Long cardId) {
+        publish(userId, "card-removed", Map.of("cardId", cardId));
+    }
+
+    // both sides see the transfer, card numbers in the response are masked
+    public void transactionCompleted(Transaction transaction) {
+        TransactionResponse response = new TransactionResponse(transaction);
+        Long senderId = transaction.getFromCard().getUser().getId();
+        Long recipientId = transaction.getToCard().getUser().getId();
+        publish(senderId, "transaction", response);
+        if (!recipientId.equals(senderId)) {
+            publish(recipientId, "transaction", response);
+        }
+        cardChanged(transaction.getFromCard());
+        cardChanged(transaction.getToCard());
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        if (sender instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void publish(Long userId, String name, Object data) {
+        // payload is built now, while lazy associations can still load; sent only once committed
+        Event event = new Event(name, data);
+        afterCommit(() -> deliver(userId, event));
+    }
+
+    private void deliver(Long userId, Event event) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers != null) {
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    private void sendHeartbeat() {
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.offer(Event.HEARTBEAT);
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        connections.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger threads = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private class Subscriber {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Queue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                log.info("Closing event stream of user {}: client is not keeping up", userId);
+                dropped.increment();
+                remove(this);
+                emitter.complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                List<Event> batch = new ArrayList<>();
+                while (!closed.get()) {
+                    Event event;
+                    while ((event = buffer.poll()) != null) {
+                        batch.add(event);
+                    }
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    for (Event next : batch) {
+                        emitter.send(next.toSse());
+                        sent.increment();
+                    }
+                    batch.clear();
+                }
+            } catch (Exception e) {
+                // the client went away
+                remove(this);
+                emitter.completeWithError(e);
+            } finally {
+                draining.set(false);
+            }
+            // an event offered after the last poll but before the flag was cleared
+            if (!buffer.isEmpty() && !closed.get() && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+    }
+
+    // SseEventBuilder is consumed when sent, so each connection gets its own
+    private record Event(String name, Object data) {
+
+        static final Event HEARTBEAT = new Event(null, null);
+
+        SseEmitter.SseEventBuilder toSse() {
+            return name == null ? SseEmitter.event().comment("heartbeat") : SseEmitter.event().name(name).data(data);
+        }
+    }
+}
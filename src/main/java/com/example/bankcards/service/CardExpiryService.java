@@ -0,0 +1,136 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Moves ACTIVE cards past their expiry date to EXPIRED. Updates are plain SQL over id-range
+// chunks, each committed together with its checkpoint, and bump the version so a card loaded
+// before the sweep cannot be saved back as ACTIVE. Runs through JobRunner, so one node at a time.
+@Service
+@Slf4j
+public class CardExpiryService {
+
+    static final String JOB_NAME = "card-expiry";
+
+    private static final String EXPIRED_RANGE =
+            "SELECT MIN(id), MAX(id) FROM cards WHERE status = 'ACTIVE' AND expiry_date < ?";
+
+    private static final String EXPIRE_CHUNK =
+            "UPDATE cards SET status = 'EXPIRED', version = version + 1, updated_at = ? "
+                    + "WHERE id BETWEEN ? AND ? AND status = 'ACTIVE' AND expiry_date < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final EntityManagerFactory entityManagerFactory;
+    private final UserBalanceCache userBalanceCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final JobRunner jobRunner;
+    private final TransactionTemplate chunkTemplate;
+    private final boolean enabled;
+    private final long chunkSize;
+
+    private final DistributionSummary expiredPerRun;
+    private final Timer runTimer;
+
+    public CardExpiryService(JdbcTemplate jdbcTemplate,
+                             DatabasePlatform databasePlatform,
+                             EntityManagerFactory entityManagerFactory,
+                             UserBalanceCache userBalanceCache,
+                             CacheInvalidationBus cacheInvalidationBus,
+                             JobRunner jobRunner,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.cards.expiry.enabled:true}") boolean enabled,
+                             @Value("${app.cards.expiry.chunk-size:5000}") long chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.entityManagerFactory = entityManagerFactory;
+        this.userBalanceCache = userBalanceCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.jobRunner = jobRunner;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+
+        this.chunkTemplate = new TransactionTemplate(transactionManager);
+
+        this.expiredPerRun = DistributionSummary.builder("bankcards.cards.expiry.updated")
+                .description("Cards moved to EXPIRED per sweep")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("bankcards.cards.expiry.duration")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.cards.expiry.cron:0 5 0 * * *}")
+    public void scheduledSweep() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        sweep(LocalDate.now());
+    }
+
+    // returns the number of expired cards, or -1 when the sweep is running elsewhere
+    public long sweep(LocalDate today) {
+        long started = System.nanoTime();
+        AtomicLong counter = new AtomicLong();
+        if (!jobRunner.run(JOB_NAME, context -> expireCards(today, context, counter))) {
+            return -1;
+        }
+
+        long expired = counter.get();
+        runTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        expiredPerRun.record(expired);
+        if (expired > 0) {
+            // the rows changed behind Hibernate's back
+            entityManagerFactory.getCache().evict(Card.class);
+            userBalanceCache.invalidateAll();
+            cacheInvalidationBus.invalidateAll();
+        }
+        log.info("Card expiry sweep moved {} cards to EXPIRED", expired);
+        return expired;
+    }
+
+    private void expireCards(LocalDate today, JobRunner.JobContext context, AtomicLong counter) {
+        long[] range = jdbcTemplate.queryForObject(EXPIRED_RANGE, (rs, rowNum) -> {
+            Long min = rs.getObject(1, Long.class);
+            return min == null ? null : new long[]{min, rs.getLong(2)};
+        }, today);
+        if (range == null) {
+            return;
+        }
+
+        // checkpoints are "<day>:<last id>", a failed sweep of the same day skips finished chunks
+        long first = range[0];
+        String resumeFrom = context.getResumeFrom();
+        String prefix = today + ":";
+        if (resumeFrom != null && resumeFrom.startsWith(prefix)) {
+            first = Math.max(first, Long.parseLong(resumeFrom.substring(prefix.length())) + 1);
+        }
+
+        for (long start = first; start <= range[1]; start += chunkSize) {
+            long from = start;
+            long to = Math.min(start + chunkSize - 1, range[1]);
+            Integer updated = chunkTemplate.execute(status -> {
+                int rows = jdbcTemplate.update(EXPIRE_CHUNK, LocalDateTime.now(), from, to, today);
+                context.checkpoint(prefix + to, rows);
+                return rows;
+            });
+            counter.addAndGet(updated != null ? updated : 0);
+        }
+    }
+}
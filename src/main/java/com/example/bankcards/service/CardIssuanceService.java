@@ -0,0 +1,250 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BloomFilter;
+import com.example.bankcards.util.CardNumberAttributeConverter;
+import com.example.bankcards.util.Luhn;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.security.SecureRandom;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Issues cards in bulk with generated numbers: BIN, random account digits and a Luhn check
+// digit. A Bloom filter over the numbers of all cards, loaded once per node, rules out taken
+// numbers without a query per card; a number it may have seen is replaced by another one.
+// Cards are written with JDBC batch inserts in one transaction. On PostgreSQL ON CONFLICT
+// DO NOTHING skips numbers another node issued after the filter was loaded, and those are
+// generated again.
+@Service
+@Slf4j
+public class CardIssuanceService {
+
+    private static final int NUMBER_LENGTH = 16;
+    private static final int MAX_ROUNDS = 5;
+    private static final Pattern BIN = Pattern.compile("\\d{6,8}");
+
+    private static final String INSERT =
+            "INSERT INTO cards (card_number, owner, expiry_date, status, balance, opening_balance, held_amount, "
+                    + "balance_stripes, spend_seq, user_id, created_at, updated_at, version) "
+                    + "VALUES (?, ?, ?, 'ACTIVE', ?, ?, 0, 0, 0, ?, ?, ?, 0)";
+
+    private static final String INSERT_OR_SKIP = INSERT + " ON CONFLICT (card_number) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final UserRepository userRepository;
+    private final CardNumberAttributeConverter cardNumberConverter;
+    private final UserBalanceCache userBalanceCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionTemplate transactionTemplate;
+    private final SecureRandom random = new SecureRandom();
+    private final int maxCount;
+    private final int batchSize;
+    private final long expectedCards;
+    private final double falsePositiveRate;
+
+    private final Counter issued;
+    private final Counter bloomCollisions;
+    private final Counter databaseCollisions;
+    private final Timer issueTimer;
+
+    private volatile BloomFilter numbers;
+
+    public CardIssuanceService(JdbcTemplate jdbcTemplate,
+                               DatabasePlatform databasePlatform,
+                               UserRepository userRepository,
+                               CardNumberAttributeConverter cardNumberConverter,
+                               UserBalanceCache userBalanceCache,
+                               CacheInvalidationBus cacheInvalidationBus,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.cards.issuance.max-count:10000}") int maxCount,
+                               @Value("${app.cards.issuance.batch-size:1000}") int batchSize,
+                               @Value("${app.cards.issuance.bloom.expected-cards:2000000}") long expectedCards,
+                               @Value("${app.cards.issuance.bloom.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.userRepository = userRepository;
+        this.cardNumberConverter = cardNumberConverter;
+        this.userBalanceCache = userBalanceCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.transactionManager = transactionManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxCount = maxCount;
+        this.batchSize = batchSize;
+        this.expectedCards = expectedCards;
+        this.falsePositiveRate = falsePositiveRate;
+
+        this.issued = Counter.builder("bankcards.cards.issued")
+                .register(meterRegistry);
+        this.bloomCollisions = Counter.builder("bankcards.cards.issuance.collisions")
+                .tag("source", "bloom")
+                .register(meterRegistry);
+        this.databaseCollisions = Counter.builder("bankcards.cards.issuance.collisions")
+                .tag("source", "database")
+                .register(meterRegistry);
+        this.issueTimer = Timer.builder("bankcards.cards.issuance.duration")
+                .register(meterRegistry);
+    }
+
+    public Result issue(Long userId, String bin, int count, String owner, LocalDate expiryDate, BigDecimal balance) {
+        if (bin == null || !BIN.matcher(bin).matches()) {
+            throw new IllegalArgumentException("BIN must be 6 to 8 digits");
+        }
+        if (count < 1 || count > maxCount) {
+            throw new IllegalArgumentException("Count must be between 1 and " + maxCount);
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException(userId);
+        }
+        log.info("Issuing {} cards with BIN {} for user: {}", count, bin, userId);
+
+        long started = System.nanoTime();
+        BloomFilter filter = numbers();
+        int[] regenerated = new int[1];
+        Integer total = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<String> pending = generate(filter, bin, count);
+            int inserted = 0;
+            for (int round = 1; !pending.isEmpty(); round++) {
+                if (round > MAX_ROUNDS) {
+                    throw new IllegalStateException("Could not find free card numbers for BIN " + bin);
+                }
+                int conflicts = insert(pending, userId, owner, expiryDate, balance, now);
+                inserted += pending.size() - conflicts;
+                regenerated[0] += conflicts;
+                pending = generate(filter, bin, conflicts);
+            }
+            return inserted;
+        });
+        int cards = total != null ? total : 0;
+
+        userBalanceCache.evict(InvalidatableCache.Region.BALANCE, userId);
+        cacheInvalidationBus.userChanged(userId);
+        issued.increment(cards);
+        long nanos = System.nanoTime() - started;
+        issueTimer.record(nanos, TimeUnit.NANOSECONDS);
+        log.info("Issued {} cards for user {} in {} ms", cards, userId, nanos / 1_000_000);
+        return new Result(cards, regenerated[0], nanos / 1_000_000);
+    }
+
+    // numbers the filter has not seen, marked as seen right away so that no two requests pick the same
+    private List<String> generate(BloomFilter filter, String bin, int count) {
+        List<String> result = new ArrayList<>(count);
+        StringBuilder number = new StringBuilder(NUMBER_LENGTH);
+        // a nearly exhausted BIN would otherwise keep hitting taken numbers forever
+        long attemptsLeft = 100L * count + 1000;
+        while (result.size() < count) {
+            if (attemptsLeft-- == 0) {
+                throw new IllegalStateException("Could not find free card numbers for BIN " + bin);
+            }
+            number.setLength(0);
+            number.append(bin);
+            while (number.length() < NUMBER_LENGTH - 1) {
+                number.append((char) ('0' + random.nextInt(10)));
+            }
+            number.append((char) ('0' + Luhn.checkDigit(number)));
+
+            long key = Long.parseLong(number, 0, NUMBER_LENGTH, 10);
+            if (filter.mightContain(key)) {
+                bloomCollisions.increment();
+                continue;
+            }
+            filter.put(key);
+            result.add(number.toString());
+        }
+        return result;
+    }
+
+    // returns the number of cards not inserted because their number was taken
+    private int insert(List<String> cardNumbers, Long userId, String owner, LocalDate expiryDate,
+                       BigDecimal balance, LocalDateTime now) {
+        boolean postgres = databasePlatform.isPostgres();
+        int conflicts = 0;
+        int[][] counts = jdbcTemplate.batchUpdate(postgres ? INSERT_OR_SKIP : INSERT, cardNumbers, batchSize,
+                (ps, cardNumber) -> {
+                    ps.setString(1, cardNumberConverter.convertToDatabaseColumn(cardNumber));
+                    ps.setString(2, owner);
+                    ps.setDate(3, Date.valueOf(expiryDate));
+                    ps.setBigDecimal(4, balance);
+                    ps.setBigDecimal(5, balance);
+                    ps.setLong(6, userId);
+                    ps.setTimestamp(7, Timestamp.valueOf(now));
+                    ps.setTimestamp(8, Timestamp.valueOf(now));
+                });
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    conflicts++;
+                }
+            }
+        }
+        databaseCollisions.increment(conflicts);
+        return conflicts;
+    }
+
+    private BloomFilter numbers() {
+        BloomFilter filter = numbers;
+        if (filter == null || filter.isSaturated()) {
+            synchronized (this) {
+                filter = numbers;
+                if (filter == null || filter.isSaturated()) {
+                    filter = load();
+                    numbers = filter;
+                }
+            }
+        }
+        return filter;
+    }
+
+    private BloomFilter load() {
+        long started = System.currentTimeMillis();
+        Long cards = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cards", Long.class);
+        BloomFilter filter = new BloomFilter(Math.max(expectedCards, 2 * (cards != null ? cards : 0)), falsePositiveRate);
+
+        // PostgreSQL only streams with a fetch size inside a transaction
+        TransactionTemplate read = new TransactionTemplate(transactionManager);
+        read.setReadOnly(true);
+        read.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT card_number FROM cards",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(batchSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            String cardNumber = cardNumberConverter.convertToEntityAttribute(rs.getString(1));
+            // numbers that failed to decrypt come back masked
+            if (cardNumber != null && cardNumber.length() == NUMBER_LENGTH
+                    && cardNumber.chars().allMatch(Character::isDigit)) {
+                filter.put(Long.parseLong(cardNumber));
+            }
+        }));
+        log.info("Loaded {} card numbers into the issuance filter in {} ms", filter.size(),
+                System.currentTimeMillis() - started);
+        return filter;
+    }
+
+    public record Result(int issued, int regenerated, long durationMs) {
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.UserBalanceResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardNotFoundException;
@@ -17,6 +19,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +30,11 @@ public class CardService {
 
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
+    private final UserBalanceCache userBalanceCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final RequestCoalescer requestCoalescer;
+    private final OutboxService outboxService;
+    private final CardEventStream cardEventStream;
 
     @Transactional
     public Card createCard(Card card, Long userId) {
@@ -39,24 +47,34 @@ public class CardService {
 
         card.setUser(user);
         card.setStatus(Card.CardStatus.ACTIVE);
+        card.setOpeningBalance(card.getBalance());
 
-        return cardRepository.save(card);
+        Card savedCard = cardRepository.save(card);
+        userBalanceCache.cardChanged(savedCard);
+        cacheInvalidationBus.cardChanged(savedCard);
+        cardEventStream.cardChanged(savedCard);
+
+        return savedCard;
     }
 
 
+    @Transactional(readOnly = true)
     public Card getCardById(Long id) {
         return cardRepository.findById(id)
                 .orElseThrow(() -> new CardNotFoundException(id));
     }
 
+    @Transactional(readOnly = true)
     public Optional<Card> getCardByNumber(String cardNumber) {
         return cardRepository.findByCardNumber(cardNumber);
     }
 
+    @Transactional(readOnly = true)
     public List<Card> getActiveUserCards(Long userId) {
         return cardRepository.findByUserIdAndStatus(userId, Card.CardStatus.ACTIVE);
     }
 
+    @Transactional(readOnly = true)
     public boolean isCardOwnedByUser(Long cardId, Long userId) {
         Card card = getCardById(cardId);
         return card.getUser().getId().equals(userId);
@@ -70,6 +88,10 @@ public class CardService {
         card.setStatus(Card.CardStatus.BLOCKED);
 
         Card savedCard = cardRepository.save(card);
+        userBalanceCache.cardChanged(savedCard);
+        cacheInvalidationBus.cardChanged(savedCard);
+        cardEventStream.cardChanged(savedCard);
+        outboxService.cardStatusChanged(savedCard, "ADMIN");
         log.info("Card blocked successfully: {}", cardId);
 
         return savedCard;
@@ -80,9 +102,16 @@ public class CardService {
         log.info("Unblocking card: {}", cardId);
 
         Card card = getCardById(cardId);
+        if (card.getStatus() != Card.CardStatus.ACTIVE) {
+            card.setUnblockedAt(LocalDateTime.now());
+        }
         card.setStatus(Card.CardStatus.ACTIVE);
 
         Card savedCard = cardRepository.save(card);
+        userBalanceCache.cardChanged(savedCard);
+        cacheInvalidationBus.cardChanged(savedCard);
+        cardEventStream.cardChanged(savedCard);
+        outboxService.cardStatusChanged(savedCard, "ADMIN");
         log.info("Card unblocked successfully: {}", cardId);
 
         return savedCard;
@@ -94,41 +123,70 @@ public class CardService {
 
         Card card = getCardById(cardId);
         cardRepository.delete(card);
+        userBalanceCache.cardRemoved(card.getUser().getId(), cardId);
+        cacheInvalidationBus.cardRemoved(card.getUser().getId(), cardId);
+        cardEventStream.cardRemoved(card.getUser().getId(), cardId);
 
         log.info("Card deleted successfully: {}", cardId);
     }
 
+    @Transactional(readOnly = true)
     public BigDecimal getUserTotalBalance(Long userId) {
         log.info("Getting total balance for user: {}", userId);
 
         List<Card> userCards = cardRepository.findByUserId(userId);
         BigDecimal totalBalance = userCards.stream()
-                .map(Card::getBalance)
+                .map(Card::getTotalBalance)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         log.info("Total balance for user {}: {}", userId, totalBalance);
         return totalBalance;
     }
 
+    @Transactional(readOnly = true)
+    public UserBalanceResponse getUserBalance(Long userId) {
+        log.info("Getting balance for user: {}", userId);
+        // only the response leaves the flight, the entities stay in the session that loaded them
+        return requestCoalescer.execute("balance", userId,
+                () -> userBalanceCache.get(userId, () -> cardRepository.findByUserId(userId)));
+    }
+
+    @Transactional(readOnly = true)
+    public String getUserCardsVersion(Long userId) {
+        CardRepository.CardsVersion version = cardRepository.findCardsVersionByUserId(userId);
+        return version.getCardCount() + ":" + version.getIdSum() + ":" + version.getVersionSum();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Long> getCardVersion(Long cardId, Long userId) {
+        return cardRepository.findVersionByIdAndUserId(cardId, userId);
+    }
+
+    @Transactional(readOnly = true)
     public List<Card> getUserCards(Long userId) {
         log.info("Getting cards for user: {}", userId);
         return cardRepository.findByUserId(userId);
     }
 
-    public Page<Card> getUserCardsPaginated(Long userId, int page, int size, String sortBy, String sortDirection) {
+    @Transactional(readOnly = true)
+    public Page<CardResponse> getUserCardsPaginated(Long userId, int page, int size, String sortBy, String sortDirection) {
         log.info("Getting paginated cards for user: {}, page: {}, size: {}", userId, page, size);
 
         Sort sort = Sort.by(Sort.Direction.fromString(sortDirection), sortBy);
 
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        return cardRepository.findByUserId(userId, pageable);
+        String key = userId + ":" + page + ":" + size + ":" + sortBy + ":" + sortDirection;
+        return requestCoalescer.execute("cards-page", key,
+                () -> cardRepository.findByUserId(userId, pageable).map(CardResponse::new));
     }
 
-    public Page<Card> getUserCardsPaginated(Long userId, int page, int size) {
+    @Transactional(readOnly = true)
+    public Page<CardResponse> getUserCardsPaginated(Long userId, int page, int size) {
         return getUserCardsPaginated(userId, page, size, "createdAt", "desc");
     }
 
+    @Transactional(readOnly = true)
     public List<Card> getAllCards() {
         log.info("Getting all cards");
         return cardRepository.findAll();
@@ -143,11 +201,34 @@ public class CardService {
 
         existingCard.setOwner(card.getOwner());
         existingCard.setExpiryDate(card.getExpiryDate());
+        if (existingCard.getStatus() != Card.CardStatus.ACTIVE && card.getStatus() == Card.CardStatus.ACTIVE) {
+            existingCard.setUnblockedAt(LocalDateTime.now());
+        }
         existingCard.setStatus(card.getStatus());
 
         Card updatedCard = cardRepository.save(existingCard);
+        userBalanceCache.cardChanged(updatedCard);
+        cacheInvalidationBus.cardChanged(updatedCard);
+        cardEventStream.cardChanged(updatedCard);
         log.info("Card updated successfully with id: {}", updatedCard.getId());
 
         return updatedCard;
     }
+
+    // spending windows hold what the card spent, not its limits, so they stay valid; the next
+    // check on any node compares them with the new limits
+    @Transactional
+    public Card updateLimits(Long cardId, BigDecimal dailyLimit, BigDecimal monthlyLimit, Integer maxTransfersPerHour) {
+        log.info("Updating limits of card with id: {}", cardId);
+
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(() -> new CardNotFoundException(cardId));
+        card.setDailyLimit(dailyLimit);
+        card.setMonthlyLimit(monthlyLimit);
+        card.setMaxTransfersPerHour(maxTransfersPerHour);
+
+        Card updatedCard = cardRepository.save(card);
+        cacheInvalidationBus.cardChanged(updatedCard);
+        return updatedCard;
+    }
 }
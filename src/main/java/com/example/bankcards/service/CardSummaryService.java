@@ -0,0 +1,240 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.dto.CardSummaryResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardDailySummary;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.InvalidTransactionException;
+import com.example.bankcards.repository.CardDailySummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Per-card daily totals in card_daily_summary. Every completed transfer adds itself to the
+// rows of both cards, and a nightly job recomputes closed days from the transactions table,
+// so a summary over N days reads at most N rows per card. Credits to a striped card are the
+// exception: days the job has not rebuilt add them from transactions when read.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardSummaryService {
+
+    private static final String ADD_ACTIVITY =
+            "UPDATE card_daily_summary SET debits = debits + ?, credits = credits + ?, tx_count = tx_count + 1, "
+                    + "closing_balance = ?, updated_at = ? WHERE card_id = ? AND summary_date = ?";
+
+    private static final String INSERT_ACTIVITY =
+            "INSERT INTO card_daily_summary (card_id, summary_date, debits, credits, tx_count, closing_balance, updated_at) "
+                    + "VALUES (?, ?, ?, ?, 1, ?, ?)";
+
+    // PostgreSQL: one statement, so a row the nightly rebuild inserted in the meantime is
+    // added to instead of failing the transfer on the primary key
+    private static final String UPSERT_ACTIVITY = INSERT_ACTIVITY
+            + " ON CONFLICT (card_id, summary_date) DO UPDATE SET "
+            + "debits = card_daily_summary.debits + EXCLUDED.debits, "
+            + "credits = card_daily_summary.credits + EXCLUDED.credits, "
+            + "tx_count = card_daily_summary.tx_count + 1, "
+            + "closing_balance = EXCLUDED.closing_balance, updated_at = EXCLUDED.updated_at";
+
+    // recomputes [from, to) from scratch, the closing balance is the current balance minus
+    // everything that moved after the day. Money moves when a transfer is processed, which
+    // for a captured hold can be days after created_at, so days follow processed_at and
+    // created_at only narrows the partitions that are read.
+    private static final String MOVED_AT = "COALESCE(processed_at, created_at)";
+    private static final String REBUILD_DAYS =
+            "INSERT INTO card_daily_summary (card_id, summary_date, debits, credits, tx_count, closing_balance, updated_at) "
+                    + "SELECT c.id, d.summary_date, d.debits, d.credits, d.tx_count, "
+                    + "c.balance + COALESCE((SELECT sum(s.amount) FROM card_balance_stripes s WHERE s.card_id = c.id), 0) "
+                    + "- COALESCE((SELECT sum(CASE WHEN t.to_card_id = c.id THEN t.amount ELSE -t.amount END) "
+                    + "FROM transactions t WHERE (t.from_card_id = c.id OR t.to_card_id = c.id) "
+                    + "AND t.status = 'COMPLETED' AND COALESCE(t.processed_at, t.created_at) >= d.summary_date + 1 "
+                    + "AND t.created_at >= d.summary_date + 1 - CAST(? AS integer)), 0), now() "
+                    + "FROM (SELECT card_id, moved_at::date AS summary_date, sum(debit) AS debits, "
+                    + "sum(credit) AS credits, count(*) AS tx_count FROM ("
+                    + "SELECT from_card_id AS card_id, " + MOVED_AT + " AS moved_at, amount AS debit, 0 AS credit "
+                    + "FROM transactions WHERE status = 'COMPLETED' AND " + MOVED_AT + " >= ? AND " + MOVED_AT + " < ? "
+                    + "AND created_at >= ? AND created_at < ? "
+                    + "UNION ALL "
+                    + "SELECT to_card_id AS card_id, " + MOVED_AT + " AS moved_at, 0 AS debit, amount AS credit "
+                    + "FROM transactions WHERE status = 'COMPLETED' AND " + MOVED_AT + " >= ? AND " + MOVED_AT + " < ? "
+                    + "AND created_at >= ? AND created_at < ?"
+                    + ") m GROUP BY card_id, moved_at::date) d "
+                    + "JOIN cards c ON c.id = d.card_id "
+                    + "ON CONFLICT (card_id, summary_date) DO UPDATE SET debits = EXCLUDED.debits, "
+                    + "credits = EXCLUDED.credits, tx_count = EXCLUDED.tx_count, "
+                    + "closing_balance = EXCLUDED.closing_balance, updated_at = EXCLUDED.updated_at";
+
+    // credits to a striped card skip its summary rows, see recordTransaction
+    private static final String STRIPE_CREDITS =
+            "SELECT CAST(" + MOVED_AT + " AS date), sum(amount), count(*) FROM transactions "
+                    + "WHERE to_card_id = ? AND status = 'COMPLETED' AND " + MOVED_AT + " >= ? AND " + MOVED_AT + " < ? "
+                    + "AND created_at >= ? AND created_at < ? GROUP BY CAST(" + MOVED_AT + " AS date) ORDER BY 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final CardDailySummaryRepository summaryRepository;
+    private final JobRunner jobRunner;
+
+    @Value("${app.summary.catch-up.enabled:true}")
+    private boolean catchUpEnabled;
+
+    @Value("${app.summary.catch-up.days:2}")
+    private int catchUpDays;
+
+    @Value("${app.transactions.history-window-days:90}")
+    private int historyWindowDays;
+
+    // a hold can be captured at most this long after it was authorized
+    @Value("${app.transactions.holds.lookback-days:7}")
+    private int holdLookbackDays;
+
+    // called inside the transfer transaction, where both card rows are already locked,
+    // so the update-or-insert below cannot race with another transfer of the same card.
+    // The day is the one the money moved on, for a captured hold the capture day.
+    public void recordTransaction(Transaction transaction) {
+        LocalDateTime movedAt = transaction.getProcessedAt() != null
+                ? transaction.getProcessedAt()
+                : transaction.getCreatedAt();
+        LocalDate day = movedAt.toLocalDate();
+        addActivity(transaction.getFromCard(), day, transaction.getAmount(), BigDecimal.ZERO);
+        // the summary row of a striped card would serialize its credits again, catchUp() rebuilds
+        // it and getCardSummary() adds them meanwhile
+        if (!transaction.getToCard().isStriped()) {
+            addActivity(transaction.getToCard(), day, BigDecimal.ZERO, transaction.getAmount());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public CardSummaryResponse getCardSummary(Long cardId, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(historyWindowDays - 1L);
+        if (start.isAfter(end)) {
+            throw new InvalidTransactionException("'from' must not be after 'to'");
+        }
+
+        List<CardDailySummary> rows =
+                summaryRepository.findByCardIdAndSummaryDateBetweenOrderBySummaryDateAsc(cardId, start, end);
+
+        TreeMap<LocalDate, CardSummaryResponse.DaySummary> days = new TreeMap<>();
+        for (CardDailySummary row : rows) {
+            days.put(row.getSummaryDate(), new CardSummaryResponse.DaySummary(
+                    row.getSummaryDate().toString(),
+                    row.getDebits(),
+                    row.getCredits(),
+                    row.getTransactionCount(),
+                    row.getClosingBalance()));
+        }
+        if (isStriped(cardId)) {
+            addStripeCredits(cardId, start, end, rows, days);
+        }
+
+        BigDecimal debits = BigDecimal.ZERO;
+        BigDecimal credits = BigDecimal.ZERO;
+        long count = 0;
+        for (CardSummaryResponse.DaySummary day : days.values()) {
+            debits = debits.add(day.getDebits());
+            credits = credits.add(day.getCredits());
+            count += day.getTransactionCount();
+        }
+
+        // the last active day may be before the range
+        BigDecimal closingBalance = !days.isEmpty()
+                ? days.lastEntry().getValue().getClosingBalance()
+                : summaryRepository.findFirstByCardIdAndSummaryDateLessThanEqualOrderBySummaryDateDesc(cardId, end)
+                        .map(CardDailySummary::getClosingBalance)
+                        .orElse(null);
+
+        return new CardSummaryResponse(cardId, start.toString(), end.toString(),
+                debits, credits, count, closingBalance, new ArrayList<>(days.values()));
+    }
+
+    @Scheduled(cron = "${app.summary.catch-up.cron:0 15 0 * * *}")
+    public void catchUp() {
+        if (!catchUpEnabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        // only closed days, today's rows are still being incremented by transfers
+        LocalDate today = LocalDate.now();
+        jobRunner.run("summary-catch-up", context -> context.addRows(rebuild(today.minusDays(catchUpDays), today)));
+    }
+
+    // idempotent, running it twice for the same days gives the same rows
+    public int rebuild(LocalDate from, LocalDate toExclusive) {
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = toExclusive.atStartOfDay();
+        LocalDateTime createdFrom = start.minusDays(holdLookbackDays);
+        int rows = jdbcTemplate.update(REBUILD_DAYS, holdLookbackDays,
+                start, end, createdFrom, end, start, end, createdFrom, end);
+        log.info("Rebuilt {} daily card summaries from {} to {}", rows, from, toExclusive);
+        return rows;
+    }
+
+    private boolean isStriped(Long cardId) {
+        List<Integer> stripes = jdbcTemplate.queryForList("SELECT balance_stripes FROM cards WHERE id = ?",
+                Integer.class, cardId);
+        return !stripes.isEmpty() && stripes.get(0) > 0;
+    }
+
+    // Credits to a striped card reach its rows only through the nightly rebuild, which runs on
+    // PostgreSQL for closed days. A rebuilt row was written after its day, any other day in
+    // the range gets the card's credits from transactions here.
+    private void addStripeCredits(Long cardId, LocalDate start, LocalDate end, List<CardDailySummary> rows,
+                                  TreeMap<LocalDate, CardSummaryResponse.DaySummary> days) {
+        Set<LocalDate> rebuilt = new HashSet<>();
+        for (CardDailySummary row : rows) {
+            if (row.getUpdatedAt().toLocalDate().isAfter(row.getSummaryDate())) {
+                rebuilt.add(row.getSummaryDate());
+            }
+        }
+        LocalDateTime from = start.atStartOfDay();
+        LocalDateTime to = end.plusDays(1).atStartOfDay();
+        jdbcTemplate.query(STRIPE_CREDITS, (RowCallbackHandler) rs -> {
+            LocalDate day = rs.getDate(1).toLocalDate();
+            if (rebuilt.contains(day)) {
+                return;
+            }
+            BigDecimal amount = rs.getBigDecimal(2);
+            int transfers = rs.getInt(3);
+            CardSummaryResponse.DaySummary row = days.get(day);
+            if (row != null) {
+                days.put(day, new CardSummaryResponse.DaySummary(row.getDate(), row.getDebits(),
+                        row.getCredits().add(amount), row.getTransactionCount() + transfers, row.getClosingBalance()));
+                return;
+            }
+            // a day with credits only, its balance follows from the day before
+            Map.Entry<LocalDate, CardSummaryResponse.DaySummary> before = days.lowerEntry(day);
+            BigDecimal closing = before != null && before.getValue().getClosingBalance() != null
+                    ? before.getValue().getClosingBalance().add(amount)
+                    : null;
+            days.put(day, new CardSummaryResponse.DaySummary(day.toString(), BigDecimal.ZERO, amount, transfers, closing));
+        }, cardId, from, to, from.minusDays(holdLookbackDays), to);
+    }
+
+    private void addActivity(Card card, LocalDate day, BigDecimal debit, BigDecimal credit) {
+        LocalDateTime now = LocalDateTime.now();
+        if (databasePlatform.isPostgres()) {
+            jdbcTemplate.update(UPSERT_ACTIVITY, card.getId(), day, debit, credit, card.getTotalBalance(), now);
+            return;
+        }
+        int updated = jdbcTemplate.update(ADD_ACTIVITY, debit, credit, card.getTotalBalance(), now, card.getId(), day);
+        if (updated == 0) {
+            jdbcTemplate.update(INSERT_ACTIVITY, card.getId(), day, debit, credit, card.getTotalBalance(), now);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+
+// Hibernate's second-level cache only sees the writes of its own node. Evicting is a no-op
+// when the cache is disabled.
+@Component
+@RequiredArgsConstructor
+public class EntityCacheInvalidator implements InvalidatableCache {
+
+    private static final String USER_BY_USERNAME = "user-by-username";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void evict(Region region, long id) {
+        switch (region) {
+            case USER -> {
+                entityManagerFactory.getCache().evict(User.class, id);
+                // the username may have changed
+                entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion(USER_BY_USERNAME);
+            }
+            case CARD -> entityManagerFactory.getCache().evict(Card.class, id);
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        // entities and query results
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.OutboxMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Appends one JSON line per event and forces it to disk before the batch counts as delivered.
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink", havingValue = "file")
+public class FileOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+
+    public FileOutboxSink(ObjectMapper objectMapper,
+                          @Value("${app.outbox.file.path:./outbox/events.jsonl}") String path) {
+        this.objectMapper = objectMapper;
+        this.path = Path.of(path);
+    }
+
+    @Override
+    public synchronized void deliver(List<OutboxMessage> messages) throws IOException, RejectedException {
+        StringBuilder lines = new StringBuilder();
+        for (OutboxMessage message : messages) {
+            lines.append(objectMapper.writeValueAsString(toJson(objectMapper, message))).append('\n');
+        }
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    static Map<String, Object> toJson(ObjectMapper objectMapper, OutboxMessage message) throws RejectedException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", message.id());
+        json.put("aggregateType", message.aggregateType());
+        json.put("aggregateId", message.aggregateId());
+        json.put("eventType", message.eventType());
+        json.put("createdAt", message.createdAt().toString());
+        try {
+            json.put("payload", objectMapper.readTree(message.payload()));
+        } catch (JsonProcessingException e) {
+            throw new RejectedException("Malformed payload of outbox event " + message.id(), e);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Scores transfers with a list of rules against per-card features held in memory, in
+// lock-striped LRU maps bounded by maxCards. Rules run in order until the latency budget is
+// spent; the rest are skipped and the decision is made on the points collected so far.
+public class FraudEngine {
+
+    private static final int STRIPES = 64;
+
+    private final List<FraudRule> rules;
+    private final int reviewScore;
+    private final int denyScore;
+    private final long budgetNanos;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public FraudEngine(List<FraudRule> rules, int reviewScore, int denyScore, long budgetNanos, int maxCards) {
+        this.rules = List.copyOf(rules);
+        this.reviewScore = reviewScore;
+        this.denyScore = denyScore;
+        this.budgetNanos = budgetNanos;
+        int perStripe = Math.max(1, (maxCards + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public Assessment assess(FraudRule.Transfer transfer) {
+        long started = System.nanoTime();
+        int score = 0;
+        List<String> matched = null;
+        boolean complete = true;
+
+        Stripe stripe = stripeOf(transfer.cardId());
+        synchronized (stripe) {
+            FraudFeatures features = stripe.features.get(transfer.cardId());
+            if (features == null) {
+                // a card without history only trips rules that do not need one
+                features = new FraudFeatures();
+            }
+            for (int i = 0; i < rules.size(); i++) {
+                if (i > 0 && System.nanoTime() - started > budgetNanos) {
+                    complete = false;
+                    break;
+                }
+                FraudRule rule = rules.get(i);
+                int points = rule.score(transfer, features);
+                if (points > 0) {
+                    score += points;
+                    if (matched == null) {
+                        matched = new ArrayList<>(2);
+                    }
+                    matched.add(rule.name());
+                }
+            }
+        }
+
+        Decision decision = score >= denyScore ? Decision.DENY
+                : score >= reviewScore ? Decision.REVIEW
+                : Decision.ALLOW;
+        return new Assessment(decision, score, matched != null ? matched : List.of(), complete,
+                System.nanoTime() - started);
+    }
+
+    public void record(FraudRule.Transfer transfer) {
+        Stripe stripe = stripeOf(transfer.cardId());
+        synchronized (stripe) {
+            stripe.features.computeIfAbsent(transfer.cardId(), id -> new FraudFeatures())
+                    .record(transfer.timeMillis(), transfer.amountCents());
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.features.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(long cardId) {
+        return stripes[(int) Math.floorMod(cardId ^ (cardId >>> 32), (long) STRIPES)];
+    }
+
+    public enum Decision {
+        ALLOW,
+        REVIEW,
+        DENY
+    }
+
+    // complete is false when the budget ran out before every rule was evaluated
+    public record Assessment(Decision decision, int score, List<String> rules, boolean complete, long nanos) {
+    }
+
+    private static class Stripe {
+        private final LinkedHashMap<Long, FraudFeatures> features;
+
+        Stripe(int capacity) {
+            this.features = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, FraudFeatures> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+}
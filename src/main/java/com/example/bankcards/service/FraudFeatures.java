@@ -0,0 +1,47 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.SlidingWindowCounter;
+
+import java.util.concurrent.TimeUnit;
+
+// What the fraud rules know about the outgoing transfers of one card: an exponentially weighted
+// mean and variance of the amount, the number of transfers, and their count over the last
+// 10 minutes. Not thread-safe, FraudEngine guards it.
+public class FraudFeatures {
+
+    private static final double ALPHA = 0.1;
+
+    private final SlidingWindowCounter recent = new SlidingWindowCounter(10, TimeUnit.MINUTES.toMillis(1));
+    private long count;
+    private double mean;
+    private double variance;
+
+    public void record(long timeMillis, long amountCents) {
+        if (count == 0) {
+            mean = amountCents;
+        } else {
+            double diff = amountCents - mean;
+            double increment = ALPHA * diff;
+            mean += increment;
+            variance = (1 - ALPHA) * (variance + diff * increment);
+        }
+        count++;
+        recent.add(timeMillis, 1);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    public double stdDev() {
+        return Math.sqrt(variance);
+    }
+
+    public long recentTransfers(long nowMillis) {
+        return recent.sum(nowMillis);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.FraudReplayReport;
+import com.example.bankcards.exception.InvalidTransactionException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Feeds stored transfers, oldest first, through a fresh fraud engine to show what the current
+// rules and thresholds would have decided. Denied transfers are not learned from, as in the live
+// path. unblocked_at is the card's current value, so only its latest unblock is seen.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FraudReplayService {
+
+    private static final String REPLAY_QUERY =
+            "SELECT t.from_card_id, t.amount, t.created_at, c.unblocked_at FROM transactions t "
+                    + "JOIN cards c ON c.id = t.from_card_id "
+                    + "WHERE t.status IN ('COMPLETED', 'PENDING') AND t.created_at >= ? AND t.created_at < ? "
+                    + "ORDER BY t.created_at, t.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FraudScoringService fraudScoringService;
+
+    @Value("${app.fraud.replay.fetch-size:1000}")
+    private int fetchSize;
+
+    // PostgreSQL only streams with a fetch size inside a transaction
+    @Transactional(readOnly = true)
+    public FraudReplayReport replay(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidTransactionException("'from' must not be after 'to'");
+        }
+        log.info("Replaying transfers from {} to {} through fraud rules", from, to);
+
+        long started = System.currentTimeMillis();
+        Replay replay = new Replay(fraudScoringService.newEngine());
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REPLAY_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            statement.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            return statement;
+        }, replay);
+
+        FraudReplayReport report = replay.report(System.currentTimeMillis() - started);
+        log.info("Replayed {} transfers: {} allowed, {} for review, {} denied",
+                report.getTransfers(), report.getAllowed(), report.getReview(), report.getDenied());
+        return report;
+    }
+
+    private static class Replay implements RowCallbackHandler {
+
+        // latency histogram in whole microseconds, the last slot takes everything slower
+        private static final int SLOTS = 10_001;
+
+        private final FraudEngine engine;
+        private final long[] latencies = new long[SLOTS];
+        private final long[] decisions = new long[FraudEngine.Decision.values().length];
+        private final Map<String, Long> ruleHits = new TreeMap<>();
+        private long transfers;
+        private long maxMicros;
+
+        Replay(FraudEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long time = rs.getTimestamp(3).getTime();
+            Timestamp unblockedAt = rs.getTimestamp(4);
+            // an unblock after the transfer did not happen yet at the time
+            long unblocked = unblockedAt != null && unblockedAt.getTime() <= time ? unblockedAt.getTime() : 0;
+            FraudRule.Transfer transfer = new FraudRule.Transfer(rs.getLong(1),
+                    rs.getBigDecimal(2).movePointRight(2).longValueExact(), time, unblocked);
+
+            FraudEngine.Assessment assessment = engine.assess(transfer);
+            if (assessment.decision() != FraudEngine.Decision.DENY) {
+                engine.record(transfer);
+            }
+
+            transfers++;
+            decisions[assessment.decision().ordinal()]++;
+            for (String rule : assessment.rules()) {
+                ruleHits.merge(rule, 1L, Long::sum);
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(assessment.nanos());
+            latencies[(int) Math.min(micros, SLOTS - 1)]++;
+            maxMicros = Math.max(maxMicros, micros);
+        }
+
+        FraudReplayReport report(long durationMs) {
+            return new FraudReplayReport(transfers,
+                    decisions[FraudEngine.Decision.ALLOW.ordinal()],
+                    decisions[FraudEngine.Decision.REVIEW.ordinal()],
+                    decisions[FraudEngine.Decision.DENY.ordinal()],
+                    ruleHits, percentile(0.99), maxMicros, durationMs);
+        }
+
+        private long percentile(double quantile) {
+            long rank = (long) Math.ceil(transfers * quantile);
+            long seen = 0;
+            for (int micros = 0; micros < SLOTS; micros++) {
+                seen += latencies[micros];
+                if (seen >= rank && seen > 0) {
+                    return micros;
+                }
+            }
+            return 0;
+        }
+    }
+}
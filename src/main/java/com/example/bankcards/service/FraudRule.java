@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+// One check of the fraud engine: the points a transfer earns, 0 when the rule does not apply.
+// Rules run under the lock of the card's features, so they must not block or query anything.
+public interface FraudRule {
+
+    String name();
+
+    int score(Transfer transfer, FraudFeatures features);
+
+    // amount in cents; unblockedAtMillis is 0 when the card was never unblocked
+    record Transfer(long cardId, long amountCents, long timeMillis, long unblockedAtMillis) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.FraudSuspectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Scores every outgoing transfer with the FraudRule beans before any money moves. ALLOW goes
+// through, REVIEW goes through and is logged, DENY rejects the transfer and files a block
+// request for the card once the transaction is over. Features are learned from committed
+// transfers of this node only, so a fresh node starts without history.
+@Service
+@Slf4j
+public class FraudScoringService {
+
+    private final List<FraudRule> rules;
+    private final CardBlockRequestService cardBlockRequestService;
+    private final TransactionTemplate requiresNew;
+    private final boolean enabled;
+    private final int reviewScore;
+    private final int denyScore;
+    private final long budgetNanos;
+    private final int maxCards;
+    private final FraudEngine engine;
+
+    private final Timer evaluation;
+    private final Counter overBudget;
+    private final Map<FraudEngine.Decision, Counter> decisions = new EnumMap<>(FraudEngine.Decision.class);
+
+    public FraudScoringService(List<FraudRule> rules,
+                               CardBlockRequestService cardBlockRequestService,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.fraud.enabled:true}") boolean enabled,
+                               @Value("${app.fraud.review-score:40}") int reviewScore,
+                               @Value("${app.fraud.deny-score:80}") int denyScore,
+                               @Value("${app.fraud.budget-micros:1000}") long budgetMicros,
+                               @Value("${app.fraud.max-cards:100000}") int maxCards) {
+        this.rules = rules;
+        this.cardBlockRequestService = cardBlockRequestService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.reviewScore = reviewScore;
+        this.denyScore = denyScore;
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(budgetMicros);
+        this.maxCards = maxCards;
+        this.engine = newEngine();
+
+        this.evaluation = Timer.builder("bankcards.fraud.evaluation")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.overBudget = Counter.builder("bankcards.fraud.budget.exceeded")
+                .description("Transfers decided before every rule ran")
+                .register(meterRegistry);
+        for (FraudEngine.Decision decision : FraudEngine.Decision.values()) {
+            decisions.put(decision, Counter.builder("bankcards.fraud.decisions")
+                    .tag("decision", decision.name())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("bankcards.fraud.cards", engine, FraudEngine::size)
+                .register(meterRegistry);
+    }
+
+    // a separate engine with the same rules and no history, for replays
+    public FraudEngine newEngine() {
+        return new FraudEngine(rules, reviewScore, denyScore, budgetNanos, maxCards);
+    }
+
+    // The card must be locked by the caller. Throws on DENY.
+    public FraudEngine.Assessment screen(Card card, BigDecimal amount) {
+        if (!enabled) {
+            return null;
+        }
+        FraudRule.Transfer transfer = transferOf(card, amount, System.currentTimeMillis());
+        FraudEngine.Assessment assessment = engine.assess(transfer);
+        evaluation.record(assessment.nanos(), TimeUnit.NANOSECONDS);
+        if (!assessment.complete()) {
+            overBudget.increment();
+        }
+        decisions.get(assessment.decision()).increment();
+
+        switch (assessment.decision()) {
+            case DENY -> {
+                log.warn("Transfer of {} from card {} declined, fraud score {} {}",
+                        amount, card.getId(), assessment.score(), assessment.rules());
+                requestBlock(card, assessment);
+                throw new FraudSuspectedException("Transfer declined by fraud checks");
+            }
+            case REVIEW -> log.warn("Transfer of {} from card {} needs review, fraud score {} {}",
+                    amount, card.getId(), assessment.score(), assessment.rules());
+            case ALLOW -> {
+            }
+        }
+
+        afterCommit(() -> engine.record(transfer));
+        return assessment;
+    }
+
+    static FraudRule.Transfer transferOf(Card card, BigDecimal amount, long nowMillis) {
+        long unblockedAt = card.getUnblockedAt() != null
+                ? card.getUnblockedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : 0;
+        return new FraudRule.Transfer(card.getId(), amount.movePointRight(2).longValueExact(), nowMillis, unblockedAt);
+    }
+
+    private void requestBlock(Card card, FraudEngine.Assessment assessment) {
+        Long cardId = card.getId();
+        Long ownerId = card.getUser().getId();
+        String reason = "Automatic: fraud score " + assessment.score() + " " + assessment.rules();
+        // the card row is locked until the transfer's transaction ends, the request needs a key share lock on it
+        afterCompletion(() -> {
+            try {
+                requiresNew.executeWithoutResult(status ->
+                        cardBlockRequestService.createBlockRequest(cardId, ownerId, reason));
+            } catch (RuntimeException e) {
+                log.info("No block request filed for card {}: {}", cardId, e.getMessage());
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
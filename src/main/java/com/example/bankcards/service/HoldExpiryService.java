@@ -0,0 +1,77 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cancels authorized transfers that were not captured in time and gives their holds back,
+// one committed batch after another. Runs through JobRunner, so one node at a time.
+@Service
+@Slf4j
+public class HoldExpiryService {
+
+    static final String JOB_NAME = "hold-expiry";
+
+    private final TransactionService transactionService;
+    private final DatabasePlatform databasePlatform;
+    private final JobRunner jobRunner;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final Counter released;
+
+    public HoldExpiryService(TransactionService transactionService,
+                             DatabasePlatform databasePlatform,
+                             JobRunner jobRunner,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.transactions.holds.expiry.enabled:true}") boolean enabled,
+                             @Value("${app.transactions.holds.expiry.batch-size:500}") int batchSize) {
+        this.transactionService = transactionService;
+        this.databasePlatform = databasePlatform;
+        this.jobRunner = jobRunner;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+
+        this.released = Counter.builder("bankcards.transactions.holds.expired")
+                .description("Holds released because they were not captured in time")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.transactions.holds.expiry.interval-ms:60000}")
+    public void scheduledSweep() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        sweep(LocalDateTime.now());
+    }
+
+    // returns the number of released holds, or -1 when the sweep is running elsewhere
+    public long sweep(LocalDateTime now) {
+        AtomicLong counter = new AtomicLong();
+        boolean ran = jobRunner.run(JOB_NAME, context -> {
+            int count;
+            do {
+                count = transactionService.releaseExpiredHolds(now, batchSize);
+                counter.addAndGet(count);
+                context.addRows(count);
+            } while (count == batchSize);
+        });
+        if (!ran) {
+            return -1;
+        }
+
+        long total = counter.get();
+        released.increment(total);
+        if (total > 0) {
+            log.info("Released {} expired holds", total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.OutboxMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// POSTs a batch as a JSON array; anything but a 2xx leaves the batch for the next attempt.
+// 400, 413 and 422 say the messages themselves are wrong and are reported as rejected.
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink", havingValue = "http")
+public class HttpOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final URI url;
+    private final Duration timeout;
+
+    public HttpOutboxSink(ObjectMapper objectMapper,
+                          @Value("${app.outbox.http.url}") String url,
+                          @Value("${app.outbox.http.timeout-ms:5000}") long timeoutMillis) {
+        this.objectMapper = objectMapper;
+        this.url = URI.create(url);
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public void deliver(List<OutboxMessage> messages) throws IOException, InterruptedException, RejectedException {
+        List<Map<String, Object>> body = new ArrayList<>(messages.size());
+        for (OutboxMessage message : messages) {
+            body.add(FileOutboxSink.toJson(objectMapper, message));
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        int status = response.statusCode();
+        if (status == 400 || status == 413 || status == 422) {
+            throw new RejectedException("Outbox endpoint rejected the events with " + status, null);
+        }
+        if (status / 100 != 2) {
+            throw new IOException("Outbox endpoint answered " + status);
+        }
+    }
+}
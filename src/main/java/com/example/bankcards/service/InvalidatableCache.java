@@ -0,0 +1,32 @@
+package com.example.bankcards.service;
+
+// A node-local cache that CacheInvalidationBus evicts when another node changes the data behind it.
+public interface InvalidatableCache {
+
+    enum Region {
+        USER('U'), CARD('C'), BALANCE('B');
+
+        private final char code;
+
+        Region(char code) {
+            this.code = code;
+        }
+
+        public char getCode() {
+            return code;
+        }
+
+        public static Region of(char code) {
+            for (Region region : values()) {
+                if (region.code == code) {
+                    return region;
+                }
+            }
+            throw new IllegalArgumentException("Unknown cache region: " + code);
+        }
+    }
+
+    void evict(Region region, long id);
+
+    void evictAll();
+}
@@ -0,0 +1,229 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.JobRun;
+import com.example.bankcards.repository.JobRunRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Runs scheduled jobs so that each one executes on a single node at a time. On PostgreSQL the
+// job holds a session advisory lock on a connection of its own for the whole run; on other
+// databases (H2 in tests) only the in-JVM guard applies. Every run is recorded in job_runs,
+// and a job that stores checkpoints gets the last one back when the previous run did not finish.
+// Runs older than historyDays are deleted after each run of the job, its latest run always stays.
+@Service
+@Slf4j
+public class JobRunner {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final JobRunRepository jobRunRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final MeterRegistry meterRegistry;
+    private final int historyDays;
+    private final String node;
+
+    private final Set<String> runningHere = ConcurrentHashMap.newKeySet();
+
+    public JobRunner(JobRunRepository jobRunRepository,
+                     JdbcTemplate jdbcTemplate,
+                     DatabasePlatform databasePlatform,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.jobs.history-days:14}") int historyDays) {
+        this.jobRunRepository = jobRunRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.meterRegistry = meterRegistry;
+        this.historyDays = historyDays;
+        this.node = hostName();
+    }
+
+    @FunctionalInterface
+    public interface Job {
+        void run(JobContext context) throws Exception;
+    }
+
+    // returns false when the job is already running here or on another node
+    public boolean run(String jobName, Job job) {
+        if (!runningHere.add(jobName)) {
+            log.info("Job {} is already running on this node, skipping", jobName);
+            return false;
+        }
+        try {
+            if (!databasePlatform.isPostgres()) {
+                execute(jobName, job);
+                return true;
+            }
+            Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+                long key = lockKey(jobName);
+                if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(?)", key)) {
+                    return false;
+                }
+                try {
+                    execute(jobName, job);
+                } finally {
+                    advisoryLock(connection, "SELECT pg_advisory_unlock(?)", key);
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(ran)) {
+                log.info("Job {} is running on another node, skipping", jobName);
+                return false;
+            }
+            return true;
+        } finally {
+            runningHere.remove(jobName);
+        }
+    }
+
+    public boolean isRunningHere(String jobName) {
+        return runningHere.contains(jobName);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    void execute(String jobName, Job job) {
+        // holding the lock means a RUNNING row of this job belongs to a node that died mid-run
+        String resumeFrom = null;
+        JobRun previous = jobRunRepository.findFirstByJobNameOrderByIdDesc(jobName).orElse(null);
+        if (previous != null && previous.getStatus() != JobRun.RunStatus.COMPLETED) {
+            resumeFrom = previous.getCheckpoint();
+            if (previous.getStatus() == JobRun.RunStatus.RUNNING) {
+                previous.setStatus(JobRun.RunStatus.FAILED);
+                previous.setFinishedAt(LocalDateTime.now());
+                previous.setError("Interrupted");
+                jobRunRepository.save(previous);
+            }
+        }
+
+        JobRun run = jobRunRepository.save(JobRun.builder()
+                .jobName(jobName)
+                .node(node)
+                .status(JobRun.RunStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .checkpoint(resumeFrom)
+                .build());
+        JobContext context = new JobContext(run.getId(), resumeFrom);
+        if (resumeFrom != null) {
+            log.info("Job {} resuming from checkpoint {}", jobName, resumeFrom);
+        }
+
+        long started = System.nanoTime();
+        JobRun.RunStatus status = JobRun.RunStatus.COMPLETED;
+        String error = null;
+        try {
+            job.run(context);
+        } catch (Exception e) {
+            status = JobRun.RunStatus.FAILED;
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            log.error("Job {} failed: {}", jobName, error, e);
+        }
+
+        run.setStatus(status);
+        run.setFinishedAt(LocalDateTime.now());
+        run.setRowsProcessed(context.getRows());
+        run.setCheckpoint(context.getCheckpoint());
+        run.setError(error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        jobRunRepository.save(run);
+
+        meterRegistry.timer("bankcards.jobs.duration", "job", jobName, "status", status.name())
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.info("Job {} {} in {} ms, {} rows", jobName, status.name().toLowerCase(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), context.getRows());
+
+        prune(jobName, run.getId());
+    }
+
+    // hold-expiry alone runs every minute, the run just recorded stays as the latest
+    private void prune(String jobName, Long latestRunId) {
+        if (historyDays <= 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM job_runs WHERE job_name = ? AND id < ? AND started_at < ?",
+                    jobName, latestRunId, LocalDateTime.now().minusDays(historyDays));
+        } catch (RuntimeException e) {
+            log.warn("Could not delete old runs of job {}: {}", jobName, e.getMessage());
+        }
+    }
+
+    private static boolean advisoryLock(Connection connection, String sql, long key) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    static long lockKey(String jobName) {
+        // high bits keep job locks apart from other advisory locks taken by the application
+        return (0x6A6F62L << 32) | (jobName.hashCode() & 0xFFFFFFFFL);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    // Handed to a job; checkpoints are written right away, inside the caller's transaction
+    // when there is one, so a chunk and its checkpoint commit together.
+    public class JobContext {
+
+        private final Long runId;
+        private final String resumeFrom;
+        private volatile String checkpoint;
+        private volatile long rows;
+
+        JobContext(Long runId, String resumeFrom) {
+            this.runId = runId;
+            this.resumeFrom = resumeFrom;
+            this.checkpoint = resumeFrom;
+        }
+
+        // last checkpoint of an unfinished previous run, null for a fresh start
+        public String getResumeFrom() {
+            return resumeFrom;
+        }
+
+        public synchronized void addRows(long count) {
+            rows += count;
+        }
+
+        public synchronized void checkpoint(String position, long processed) {
+            rows += processed;
+            checkpoint = position;
+            jdbcTemplate.update("UPDATE job_runs SET checkpoint = ?, rows_processed = ? WHERE id = ?",
+                    position, rows, runId);
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public String getCheckpoint() {
+            return checkpoint;
+        }
+    }
+}
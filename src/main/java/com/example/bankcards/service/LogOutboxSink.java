@@ -0,0 +1,22 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.OutboxMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink", havingValue = "log", matchIfMissing = true)
+@Slf4j
+public class LogOutboxSink implements OutboxSink {
+
+    @Override
+    public void deliver(List<OutboxMessage> messages) {
+        for (OutboxMessage message : messages) {
+            log.info("Outbox event {} {} {}:{} {}", message.id(), message.eventType(),
+                    message.aggregateType(), message.aggregateId(), message.payload());
+        }
+    }
+}
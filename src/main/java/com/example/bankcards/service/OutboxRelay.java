@@ -0,0 +1,272 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.util.OutboxMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drains the outbox in id order. A batch is locked with FOR UPDATE SKIP LOCKED, handed to the
+// sink and marked published in the same transaction, so nodes relay disjoint batches in
+// parallel and a crash between delivery and commit only causes a redelivery (at least once).
+// When the sink rejects a batch its events are retried one at a time, so a single bad event
+// costs the batch nothing. An event is charged an attempt only when the sink rejects it as such
+// or accepts another event meanwhile; after max-attempts it is parked in dead_at and the relay
+// moves past it. A sink that accepts nothing is down: no event is charged and polls back off
+// up to a minute.
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final String SELECT_BATCH =
+            "SELECT id, aggregate_type, aggregate_id, event_type, payload, created_at FROM outbox "
+                    + "WHERE published_at IS NULL AND dead_at IS NULL ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String MARK_PUBLISHED =
+            "UPDATE outbox SET published_at = ?, attempts = attempts + 1, last_error = NULL WHERE id = ?";
+
+    private static final String MARK_FAILED =
+            "UPDATE outbox SET attempts = attempts + 1, last_error = ?, "
+                    + "dead_at = CASE WHEN attempts + 1 >= ? THEN CAST(? AS timestamp) ELSE NULL END WHERE id = ? RETURNING attempts";
+
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final RowMapper<OutboxMessage> ROW_MAPPER = (rs, rowNum) -> new OutboxMessage(
+            rs.getLong("id"),
+            rs.getString("aggregate_type"),
+            rs.getLong("aggregate_id"),
+            rs.getString("event_type"),
+            rs.getString("payload"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final OutboxSink sink;
+    private final JobRunner jobRunner;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerPoll;
+    private final int maxAttempts;
+    private final int retentionHours;
+
+    private final Counter published;
+    private final Counter failures;
+    private final Counter deadLettered;
+    private final Timer deliveryTimer;
+    private final Timer lagTimer;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong oldestPendingSeconds = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+
+    // only touched by the scheduler thread
+    private long backoffNanos;
+    private long retryAtNanos;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate,
+                       DatabasePlatform databasePlatform,
+                       OutboxSink sink,
+                       JobRunner jobRunner,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${app.outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${app.outbox.relay.max-batches-per-poll:50}") int maxBatchesPerPoll,
+                       @Value("${app.outbox.relay.max-attempts:10}") int maxAttempts,
+                       @Value("${app.outbox.retention-hours:72}") int retentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.sink = sink;
+        this.jobRunner = jobRunner;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerPoll = maxBatchesPerPoll;
+        this.maxAttempts = maxAttempts;
+        this.retentionHours = retentionHours;
+        this.retryAtNanos = System.nanoTime();
+
+        this.published = Counter.builder("bankcards.outbox.published")
+                .register(meterRegistry);
+        this.failures = Counter.builder("bankcards.outbox.failures")
+                .description("Batches the sink rejected")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("bankcards.outbox.dead.lettered")
+                .description("Events parked after max-attempts rejections")
+                .register(meterRegistry);
+        this.deliveryTimer = Timer.builder("bankcards.outbox.delivery.duration")
+                .register(meterRegistry);
+        // time from the write of an event to its delivery
+        this.lagTimer = Timer.builder("bankcards.outbox.lag")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.outbox.pending", pending, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("bankcards.outbox.oldest.pending.seconds", oldestPendingSeconds, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("bankcards.outbox.dead", dead, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.interval-ms:1000}")
+    public void relay() {
+        if (!enabled || !databasePlatform.isPostgres() || System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+        for (int i = 0; i < maxBatchesPerPoll; i++) {
+            if (relayBatch() < batchSize) {
+                break;
+            }
+        }
+        if (backoffNanos > 0) {
+            retryAtNanos = System.nanoTime() + backoffNanos;
+        }
+        refreshBacklog();
+    }
+
+    @Scheduled(cron = "${app.outbox.cleanup.cron:0 0 * * * *}")
+    public void cleanup() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        jobRunner.run("outbox-cleanup", context ->
+                context.addRows(jdbcTemplate.update("DELETE FROM outbox WHERE published_at < ?", cutoff)));
+    }
+
+    // returns the number of delivered events, fewer than the batch when the sink rejected one
+    int relayBatch() {
+        Integer delivered = transactionTemplate.execute(status -> {
+            List<OutboxMessage> batch = jdbcTemplate.query(SELECT_BATCH, ROW_MAPPER, batchSize);
+            if (batch.isEmpty()) {
+                backoffNanos = 0;
+                return 0;
+            }
+
+            Exception error = deliver(batch);
+            if (error == null) {
+                markPublished(batch);
+                backoffNanos = 0;
+                return batch.size();
+            }
+            failures.increment();
+            log.warn("Outbox sink failed for events {}-{}: {}", batch.get(0).id(),
+                    batch.get(batch.size() - 1).id(), describe(error));
+            if (batch.size() == 1) {
+                boolean rejected = error instanceof OutboxSink.RejectedException;
+                if (rejected) {
+                    markFailed(batch.get(0), error);
+                }
+                backOff(rejected);
+                return 0;
+            }
+
+            // the rows are still locked, retry them one at a time; an attempt is only counted
+            // against an event when the sink rejects it outright or takes another event of the
+            // batch, a sink that takes nothing is down and no event is to blame
+            int count = 0;
+            boolean rejected = false;
+            OutboxMessage suspect = null;
+            Exception suspectError = null;
+            for (OutboxMessage message : batch) {
+                error = deliver(List.of(message));
+                if (error == null) {
+                    markPublished(List.of(message));
+                    count++;
+                    if (suspect != null) {
+                        markFailed(suspect, suspectError);
+                        suspect = null;
+                    }
+                } else if (error instanceof OutboxSink.RejectedException) {
+                    markFailed(message, error);
+                    rejected = true;
+                } else if (count > 0) {
+                    // stopping here keeps the order of the rest
+                    markFailed(message, error);
+                    break;
+                } else if (suspect == null) {
+                    suspect = message;
+                    suspectError = error;
+                } else {
+                    break;
+                }
+            }
+            backOff(count > 0 || rejected);
+            return count;
+        });
+        int count = delivered != null ? delivered : 0;
+        published.increment(count);
+        return count;
+    }
+
+    // a sink that answered polls again at once, one that did not waits up to a minute
+    private void backOff(boolean sinkAnswered) {
+        backoffNanos = sinkAnswered ? 0 : Math.min(MAX_BACKOFF_NANOS, Math.max(MIN_BACKOFF_NANOS, backoffNanos * 2));
+    }
+
+    private Exception deliver(List<OutboxMessage> messages) {
+        long started = System.nanoTime();
+        try {
+            sink.deliver(messages);
+        } catch (Exception e) {
+            return e;
+        }
+        deliveryTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return null;
+    }
+
+    private void markPublished(List<OutboxMessage> messages) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(MARK_PUBLISHED, messages, messages.size(), (ps, message) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setLong(2, message.id());
+        });
+        for (OutboxMessage message : messages) {
+            lagTimer.record(Duration.between(message.createdAt(), now));
+        }
+    }
+
+    private void markFailed(OutboxMessage message, Exception error) {
+        String description = describe(error);
+        String lastError = description.length() > 1000 ? description.substring(0, 1000) : description;
+        Integer attempts = jdbcTemplate.queryForObject(MARK_FAILED, Integer.class,
+                lastError, maxAttempts, Timestamp.valueOf(LocalDateTime.now()), message.id());
+        if (attempts != null && attempts >= maxAttempts) {
+            deadLettered.increment();
+            log.error("Outbox event {} ({}) parked after {} failed deliveries: {}", message.id(),
+                    message.eventType(), attempts, description);
+        }
+    }
+
+    private static String describe(Exception error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+    }
+
+    private void refreshBacklog() {
+        jdbcTemplate.query("SELECT COUNT(*) FILTER (WHERE dead_at IS NULL), "
+                + "MIN(created_at) FILTER (WHERE dead_at IS NULL), COUNT(*) FILTER (WHERE dead_at IS NOT NULL) "
+                + "FROM outbox WHERE published_at IS NULL", rs -> {
+            pending.set(rs.getLong(1));
+            Timestamp oldest = rs.getTimestamp(2);
+            oldestPendingSeconds.set(oldest == null ? 0
+                    : Math.max(0, Duration.between(oldest.toLocalDateTime(), LocalDateTime.now()).toSeconds()));
+            dead.set(rs.getLong(3));
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Writes events for downstream systems into the outbox table. MANDATORY propagation: an event
+// is only ever stored together with the change it describes.
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    public static final String TRANSFER = "TRANSFER";
+    public static final String CARD = "CARD";
+
+    private static final String INSERT_EVENT =
+            "INSERT INTO outbox (aggregate_type, aggregate_id, event_type, payload, created_at, attempts) "
+                    + "VALUES (?, ?, ?, ?, ?, 0)";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void transferProcessed(Transaction transaction) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("transactionId", transaction.getId());
+        payload.put("fromCardId", transaction.getFromCard().getId());
+        payload.put("toCardId", transaction.getToCard().getId());
+        payload.put("userId", transaction.getFromCard().getUser().getId());
+        payload.put("amount", transaction.getAmount());
+        payload.put("status", transaction.getStatus().name());
+        payload.put("createdAt", transaction.getCreatedAt() != null ? transaction.getCreatedAt().toString() : null);
+        String eventType = switch (transaction.getStatus()) {
+            case PENDING -> "TRANSFER_AUTHORIZED";
+            case COMPLETED -> "TRANSFER_COMPLETED";
+            case CANCELLED -> "TRANSFER_CANCELLED";
+            case FAILED -> "TRANSFER_FAILED";
+        };
+        publish(TRANSFER, transaction.getId(), eventType, payload);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cardStatusChanged(Card card, String reason) {
+        publish(CARD, card.getId(), cardEventType(card.getStatus()),
+                cardPayload(card.getId(), card.getUser().getId(), card.getStatus(), reason));
+    }
+
+    // the same events for cards changed in SQL, keyed by card id with the owner's id as value,
+    // written with one JDBC batch
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cardsStatusChanged(Map<Long, Long> ownersByCardId, Card.CardStatus status, String reason) {
+        if (ownersByCardId.isEmpty()) {
+            return;
+        }
+        String eventType = cardEventType(status);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_EVENT, ownersByCardId.entrySet(), ownersByCardId.size(), (ps, card) -> {
+            ps.setString(1, CARD);
+            ps.setLong(2, card.getKey());
+            ps.setString(3, eventType);
+            ps.setString(4, serialize(eventType, cardPayload(card.getKey(), card.getValue(), status, reason)));
+            ps.setTimestamp(5, now);
+        });
+    }
+
+    private static Map<String, Object> cardPayload(Long cardId, Long userId, Card.CardStatus status, String reason) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("cardId", cardId);
+        payload.put("userId", userId);
+        payload.put("status", status.name());
+        payload.put("reason", reason);
+        return payload;
+    }
+
+    private static String cardEventType(Card.CardStatus status) {
+        return status == Card.CardStatus.BLOCKED ? "CARD_BLOCKED" : "CARD_UNBLOCKED";
+    }
+
+    private void publish(String aggregateType, Long aggregateId, String eventType, Map<String, Object> payload) {
+        outboxEventRepository.save(OutboxEvent.builder()
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .eventType(eventType)
+                .payload(serialize(eventType, payload))
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    private String serialize(String eventType, Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + eventType + " event", e);
+        }
+    }
+}
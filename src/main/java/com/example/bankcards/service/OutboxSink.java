@@ -0,0 +1,25 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.util.OutboxMessage;
+
+import java.util.List;
+
+// Destination of outbox events, picked with app.outbox.sink (log, file or http). A batch is
+// marked published only when deliver returns, so a sink must tolerate seeing a message again.
+// Order is only kept inside one call: nodes relay different batches at the same time, so a
+// later event can arrive before an earlier one, events after one the sink keeps failing are
+// delivered around it, and an event parked after max-attempts never arrives. Consumers that
+// need order per card have to check it themselves, by event id.
+public interface OutboxSink {
+
+    void deliver(List<OutboxMessage> messages) throws Exception;
+
+    // The destination will never take these messages, e.g. a malformed payload. Any other
+    // exception is taken for an outage and retried without charging the messages.
+    class RejectedException extends Exception {
+
+        public RejectedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ImportReport;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.CardNumberAttributeConverter;
+import com.example.bankcards.util.CsvReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Imports users with their cards from CSV with the columns
+// username,password,card_number,owner,expiry_date,balance (header optional). Each row is a
+// card; rows of one user must follow each other, the first creates the user and the password
+// of the others is ignored. Rows are read one at a time and written in chunks: validated,
+// passwords hashed on a bounded pool, card numbers encrypted, then users and cards inserted
+// with JDBC batches in one transaction per chunk. A bad row is reported and skipped, a chunk
+// the database rejects reports all of its rows; the import goes on either way. Memory is
+// bounded by the chunk size and the number of reported errors, not by the input.
+@Service
+@Slf4j
+public class PortfolioImportService {
+
+    static final List<String> HEADER = List.of("username", "password", "card_number", "owner", "expiry_date", "balance");
+
+    private static final int MAX_RECORD_LENGTH = 4096;
+    private static final BigDecimal MAX_BALANCE = new BigDecimal("100000000.00");
+
+    private static final String INSERT_USER =
+            "INSERT INTO users (username, password, role, created_at, updated_at) VALUES (?, ?, 'USER', ?, ?)";
+
+    private static final String INSERT_CARD =
+            "INSERT INTO cards (card_number, owner, expiry_date, status, balance, opening_balance, held_amount, "
+                    + "balance_stripes, spend_seq, user_id, created_at, updated_at, version) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, 0, 0, 0, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final CardNumberAttributeConverter cardNumberConverter;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService hashPool;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    private final Counter imported;
+    private final Counter failed;
+
+    public PortfolioImportService(JdbcTemplate jdbcTemplate,
+                                  PasswordEncoder passwordEncoder,
+                                  CardNumberAttributeConverter cardNumberConverter,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.import.chunk-size:1000}") int chunkSize,
+                                  @Value("${app.import.hash-threads:4}") int hashThreads,
+                                  @Value("${app.import.max-errors:1000}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.cardNumberConverter = cardNumberConverter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.hashPool = Executors.newFixedThreadPool(hashThreads, task -> {
+            Thread thread = new Thread(task, "import-password-hash-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.imported = Counter.builder("bankcards.import.rows")
+                .tag("result", "imported")
+                .register(meterRegistry);
+        this.failed = Counter.builder("bankcards.import.rows")
+                .tag("result", "failed")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashPool.shutdownNow();
+    }
+
+    // throws IOException only when the input itself cannot be read as CSV
+    public ImportReport importCsv(Reader input) throws IOException {
+        long started = System.currentTimeMillis();
+        Progress progress = new Progress();
+        log.info("Starting portfolio import");
+
+        try (CsvReader csv = new CsvReader(input, MAX_RECORD_LENGTH)) {
+            List<String> record = csv.next();
+            if (record != null && isHeader(record)) {
+                record = csv.next();
+            }
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            String previousUsername = null;
+            while (record != null) {
+                progress.rows++;
+                Row row = parse(csv.getRecordLine(), record, previousUsername);
+                previousUsername = row.username;
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, progress);
+                    chunk.clear();
+                }
+                record = csv.next();
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(chunk, progress);
+            }
+        }
+
+        ImportReport report = new ImportReport(progress.rows, progress.usersCreated, progress.cardsCreated,
+                progress.failedRows, progress.failedRows > progress.errors.size(), progress.errors,
+                System.currentTimeMillis() - started);
+        log.info("Portfolio import finished: {} rows, {} users and {} cards created, {} rows failed in {} ms",
+                report.getRows(), report.getUsersCreated(), report.getCardsCreated(), report.getFailedRows(),
+                report.getDurationMs());
+        return report;
+    }
+
+    private static boolean isHeader(List<String> record) {
+        return record.size() == HEADER.size()
+                && HEADER.get(0).equalsIgnoreCase(record.get(0).trim())
+                && HEADER.get(2).equalsIgnoreCase(record.get(2).trim());
+    }
+
+    Row parse(long line, List<String> record, String previousUsername) {
+        String username = !record.isEmpty() ? record.get(0).trim() : "";
+        Row row = new Row(line, username.isEmpty() ? null : username);
+        row.newUser = row.username == null || !row.username.equals(previousUsername);
+        if (record.size() != HEADER.size()) {
+            return row.fail("Expected " + HEADER.size() + " columns, got " + record.size());
+        }
+        if (username.length() < 3 || username.length() > 50) {
+            return row.fail("Username must be between 3 and 50 characters");
+        }
+
+        String password = record.get(1);
+        if (row.newUser && (password.length() < 6 || password.length() > 100)) {
+            return row.fail("Password must be between 6 and 100 characters");
+        }
+        String cardNumber = record.get(2).trim();
+        if (cardNumber.length() != 16 || !cardNumber.chars().allMatch(Character::isDigit)) {
+            return row.fail("Card number must be exactly 16 digits");
+        }
+        String owner = record.get(3).trim();
+        if (owner.isEmpty() || owner.length() > 100) {
+            return row.fail("Owner name must be between 1 and 100 characters");
+        }
+
+        LocalDate expiryDate;
+        try {
+            expiryDate = LocalDate.parse(record.get(4).trim());
+        } catch (DateTimeParseException e) {
+            return row.fail("Expiry date must be yyyy-MM-dd");
+        }
+        BigDecimal balance;
+        try {
+            String value = record.get(5).trim();
+            balance = value.isEmpty() ? BigDecimal.ZERO : new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            return row.fail("Balance is not a number");
+        }
+        if (balance.signum() < 0 || balance.compareTo(MAX_BALANCE) > 0 || balance.scale() > 2) {
+            return row.fail("Balance must be between 0 and 100,000,000.00 with at most 2 decimal places");
+        }
+
+        row.password = row.newUser ? password : null;
+        row.cardNumber = cardNumber;
+        row.owner = owner;
+        row.expiryDate = expiryDate;
+        // portfolios carry cards that already ran out
+        row.status = expiryDate.isBefore(LocalDate.now()) ? Card.CardStatus.EXPIRED : Card.CardStatus.ACTIVE;
+        row.balance = balance.setScale(2);
+        return row;
+    }
+
+    private void writeChunk(List<Row> chunk, Progress progress) {
+        for (Row row : chunk) {
+            if (row.error == null) {
+                row.encryptedNumber = cardNumberConverter.convertToDatabaseColumn(row.cardNumber);
+            }
+        }
+        Set<String> takenUsernames = existing("SELECT username FROM users WHERE username IN ",
+                chunk.stream().filter(row -> row.error == null && row.newUser).map(row -> row.username).toList());
+        Set<String> takenNumbers = existing("SELECT card_number FROM cards WHERE card_number IN ",
+                chunk.stream().filter(row -> row.error == null).map(row -> row.encryptedNumber).toList());
+
+        // in file order, so a failed user takes the rows of its other cards with it
+        List<Row> users = new ArrayList<>();
+        List<Row> cards = new ArrayList<>();
+        Set<String> chunkUsernames = new HashSet<>();
+        Set<String> chunkNumbers = new HashSet<>();
+        for (Row row : chunk) {
+            if (row.error == null && !row.newUser && row.username.equals(progress.failedUser)) {
+                row.fail("User from line " + progress.failedUserLine + " was not imported");
+            } else if (row.error == null && row.newUser
+                    && (takenUsernames.contains(row.username) || !chunkUsernames.add(row.username))) {
+                row.fail("Username already exists");
+            } else if (row.error == null
+                    && (takenNumbers.contains(row.encryptedNumber) || !chunkNumbers.add(row.encryptedNumber))) {
+                row.fail("Card number already exists");
+            }
+
+            if (row.error != null) {
+                if (row.newUser && row.username != null) {
+                    progress.failedUser = row.username;
+                    progress.failedUserLine = row.line;
+                }
+                progress.fail(row.line, row.error);
+                continue;
+            }
+            if (row.newUser) {
+                users.add(row);
+            }
+            cards.add(row);
+        }
+        if (cards.isEmpty()) {
+            return;
+        }
+
+        try {
+            hashPasswords(users);
+            Map<String, Long> userIds = transactionTemplate.execute(status -> insert(users, cards, progress));
+            progress.usersCreated += users.size();
+            progress.cardsCreated += cards.size();
+            imported.increment(cards.size());
+            Row last = cards.get(cards.size() - 1);
+            progress.lastUser = last.username;
+            progress.lastUserId = userIds != null ? userIds.get(last.username) : null;
+        } catch (RuntimeException e) {
+            log.warn("Import chunk of lines {}-{} failed: {}", chunk.get(0).line, chunk.get(chunk.size() - 1).line,
+                    e.getMessage());
+            for (Row row : cards) {
+                progress.fail(row.line, "Not imported, the chunk failed: " + e.getMessage());
+            }
+            Row last = cards.get(cards.size() - 1);
+            progress.failedUser = last.username;
+            progress.failedUserLine = last.line;
+            progress.lastUser = null;
+            progress.lastUserId = null;
+        }
+    }
+
+    private void hashPasswords(List<Row> users) {
+        List<Callable<String>> tasks = new ArrayList<>(users.size());
+        for (Row user : users) {
+            String password = user.password;
+            tasks.add(() -> passwordEncoder.encode(password));
+        }
+        try {
+            List<Future<String>> hashes = hashPool.invokeAll(tasks);
+            for (int i = 0; i < users.size(); i++) {
+                users.get(i).password = hashes.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not hash passwords", e.getCause());
+        }
+    }
+
+    // returns the ids of the users created by this chunk and of the user its first rows continue
+    private Map<String, Long> insert(List<Row> users, List<Row> cards, Progress progress) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<String, Long> userIds = new HashMap<>();
+        if (progress.lastUser != null && progress.lastUserId != null) {
+            userIds.put(progress.lastUser, progress.lastUserId);
+        }
+        if (!users.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_USER, users, users.size(), (ps, user) -> {
+                ps.setString(1, user.username);
+                ps.setString(2, user.password);
+                ps.setTimestamp(3, now);
+                ps.setTimestamp(4, now);
+            });
+            List<String> usernames = users.stream().map(user -> user.username).toList();
+            jdbcTemplate.query("SELECT id, username FROM users WHERE username IN " + placeholders(usernames.size()),
+                    (RowCallbackHandler) rs -> userIds.put(rs.getString(2), rs.getLong(1)), usernames.toArray());
+        }
+        for (Row card : cards) {
+            if (!userIds.containsKey(card.username)) {
+                throw new IllegalStateException("User " + card.username + " of line " + card.line + " is missing");
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_CARD, cards, cards.size(), (ps, card) -> {
+            ps.setString(1, card.encryptedNumber);
+            ps.setString(2, card.owner);
+            ps.setDate(3, Date.valueOf(card.expiryDate));
+            ps.setString(4, card.status.name());
+            ps.setBigDecimal(5, card.balance);
+            ps.setBigDecimal(6, card.balance);
+            ps.setLong(7, userIds.get(card.username));
+            ps.setTimestamp(8, now);
+            ps.setTimestamp(9, now);
+        });
+        return userIds;
+    }
+
+    private Set<String> existing(String query, Collection<String> values) {
+        if (values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(query + placeholders(values.size()), String.class,
+                values.toArray()));
+    }
+
+    private static String placeholders(int count) {
+        return "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    private class Progress {
+        private long rows;
+        private long usersCreated;
+        private long cardsCreated;
+        private long failedRows;
+        private final List<ImportReport.RowError> errors = new ArrayList<>();
+
+        // the user the next rows may continue, carried over chunk boundaries
+        private String lastUser;
+        private Long lastUserId;
+        private String failedUser;
+        private long failedUserLine;
+
+        void fail(long line, String message) {
+            failedRows++;
+            failed.increment();
+            if (errors.size() < maxErrors) {
+                errors.add(new ImportReport.RowError(line, message));
+            }
+        }
+    }
+
+    static class Row {
+        private final long line;
+        private final String username;
+        private boolean newUser;
+        private String password;
+        private String cardNumber;
+        private String encryptedNumber;
+        private String owner;
+        private LocalDate expiryDate;
+        private Card.CardStatus status;
+        private BigDecimal balance;
+        private String error;
+
+        Row(long line, String username) {
+            this.line = line;
+            this.username = username;
+        }
+
+        Row fail(String message) {
+            this.error = message;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.bankcards.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// spending right after a blocked card is unblocked
+@Component
+@Order(1)
+public class RecentlyUnblockedRule implements FraudRule {
+
+    private final int points;
+    private final long periodMillis;
+
+    public RecentlyUnblockedRule(@Value("${app.fraud.rules.recently-unblocked.points:30}") int points,
+                                 @Value("${app.fraud.rules.recently-unblocked.hours:24}") long hours) {
+        this.points = points;
+        this.periodMillis = TimeUnit.HOURS.toMillis(hours);
+    }
+
+    @Override
+    public String name() {
+        return "recently-unblocked";
+    }
+
+    @Override
+    public int score(Transfer transfer, FraudFeatures features) {
+        long since = transfer.timeMillis() - transfer.unblockedAtMillis();
+        return transfer.unblockedAtMillis() > 0 && since >= 0 && since < periodMillis ? points : 0;
+    }
+}
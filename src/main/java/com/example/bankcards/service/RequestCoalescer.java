@@ -0,0 +1,83 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ReadYourWritesGuard;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Single-flight for identical reads: while a query for a key is running, other callers
+// with the same key wait for it and get the same result instead of hitting the database.
+// Nothing is kept after the query finishes. Results are shared between threads, so only
+// return immutable DTOs from the loader, never entities attached to the loading session.
+@Component
+public class RequestCoalescer {
+
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(ReadYourWritesGuard readYourWritesGuard, MeterRegistry meterRegistry) {
+        this.readYourWritesGuard = readYourWritesGuard;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("bankcards.coalescer.inflight", inflight, Map::size)
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String query, Object key, Supplier<T> loader) {
+        // a query that started before the caller's own write committed would hide that write
+        if (readYourWritesGuard.hasRecentWrite()) {
+            count(query, "bypassed");
+            return loader.get();
+        }
+
+        String flightKey = query + ":" + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inflight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            count(query, "coalesced");
+            return (T) await(existing);
+        }
+
+        count(query, "executed");
+        try {
+            T result = loader.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(flightKey, flight);
+        }
+    }
+
+    public int getInflightCount() {
+        return inflight.size();
+    }
+
+    private void count(String query, String result) {
+        meterRegistry.counter("bankcards.coalescer.calls", "query", query, "result", result).increment();
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
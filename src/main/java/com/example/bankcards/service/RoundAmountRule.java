@@ -0,0 +1,33 @@
+package com.example.bankcards.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// large amounts in whole hundreds, weak on its own
+@Component
+@Order(2)
+public class RoundAmountRule implements FraudRule {
+
+    private static final long HUNDRED = 100_00;
+
+    private final int points;
+    private final long minCents;
+
+    public RoundAmountRule(@Value("${app.fraud.rules.round-amount.points:15}") int points,
+                           @Value("${app.fraud.rules.round-amount.min-amount:1000}") long minAmount) {
+        this.points = points;
+        this.minCents = minAmount * 100;
+    }
+
+    @Override
+    public String name() {
+        return "round-amount";
+    }
+
+    @Override
+    public int score(Transfer transfer, FraudFeatures features) {
+        long amount = transfer.amountCents();
+        return amount >= minCents && amount % HUNDRED == 0 ? points : 0;
+    }
+}
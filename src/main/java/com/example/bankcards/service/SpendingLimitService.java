@@ -0,0 +1,372 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.LimitExceededException;
+import com.example.bankcards.util.SlidingWindowCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Daily, monthly and per-hour limits on outgoing transfers. Every card with limits has sliding
+// windows of its transfers in memory: amounts over 24 hours in hourly buckets and over 30 days
+// in daily buckets, and the count over the last hour in 5-minute buckets. Windows sit in
+// lock-striped LRU maps bounded by maxCards and are rebuilt from transactions on startup.
+// The check runs under the card row lock; a window remembers the card's spend_seq it matches.
+// spend_seq moves only with the card's own outgoing transfers and released holds, so a card
+// spent from elsewhere (another node, a cancel or an expired hold) is reloaded from
+// transactions first, while credits and admin edits leave the window alone. Transfers checked
+// recorded in a transaction are added once it commits.
+@Service
+@Slf4j
+public class SpendingLimitService {
+
+    private static final int STRIPES = 64;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long FIVE_MINUTES = TimeUnit.MINUTES.toMillis(5);
+    private static final int MONTH_DAYS = 30;
+
+    private static final String LIMITED = "(c.daily_limit IS NOT NULL OR c.monthly_limit IS NOT NULL "
+            + "OR c.max_transfers_per_hour IS NOT NULL)";
+
+    // holds count as spent until they are cancelled
+    private static final String LOAD_CARD =
+            "SELECT created_at, amount FROM transactions "
+                    + "WHERE from_card_id = ? AND status IN ('COMPLETED', 'PENDING') AND created_at >= ?";
+
+    private static final String LIMITED_CARDS =
+            "SELECT c.id, c.spend_seq FROM cards c WHERE " + LIMITED + " ORDER BY c.id LIMIT ?";
+
+    private static final String LOAD_ALL =
+            "SELECT t.from_card_id, t.created_at, t.amount FROM transactions t JOIN cards c ON c.id = t.from_card_id "
+                    + "WHERE " + LIMITED + " AND t.status IN ('COMPLETED', 'PENDING') AND t.created_at >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int maxCards;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final Counter reloads;
+    private final Map<String, Counter> rejected = new HashMap<>();
+
+    @Autowired
+    public SpendingLimitService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                DatabasePlatform databasePlatform,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.limits.enabled:true}") boolean enabled,
+                                @Value("${app.limits.max-cards:20000}") int maxCards) {
+        this(jdbcTemplate, transactionManager, databasePlatform, meterRegistry, enabled, maxCards, Clock.systemDefaultZone());
+    }
+
+    SpendingLimitService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         DatabasePlatform databasePlatform, MeterRegistry meterRegistry, boolean enabled, int maxCards, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.maxCards = maxCards;
+
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setReadOnly(true);
+        this.databasePlatform = databasePlatform;
+
+        int perStripe = Math.max(1, (maxCards + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+
+        this.reloads = Counter.builder("bankcards.limits.reloads")
+                .description("Windows read from transactions because the card changed elsewhere")
+                .register(meterRegistry);
+        for (String limit : new String[]{"daily", "monthly", "velocity"}) {
+            rejected.put(limit, Counter.builder("bankcards.limits.rejected")
+                    .tag("limit", limit)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("bankcards.limits.windows", this, SpendingLimitService::size)
+                .register(meterRegistry);
+    }
+
+    // The card must be locked by the caller. Throws when the transfer would exceed a limit;
+    // nothing is counted until record(), so a transfer rejected later leaves no trace.
+    public void check(Card card, BigDecimal amount) {
+        if (!enabled || !card.hasLimits()) {
+            return;
+        }
+        long now = clock.millis();
+        long cents = cents(amount);
+        Pending cardPending = pendingOf(card.getId());
+        long seq = cardPending != null ? cardPending.seqBefore : card.getSpendSeq();
+
+        Stripe stripe = stripeOf(card.getId());
+        long[] spent;
+        synchronized (stripe) {
+            spent = spent(stripe.windows.get(card.getId()), seq, now);
+        }
+        if (spent == null) {
+            Window loaded = load(card.getId(), seq, now);
+            synchronized (stripe) {
+                stripe.windows.put(card.getId(), loaded);
+                spent = spent(loaded, seq, now);
+            }
+        }
+
+        long daily = spent[0] + (cardPending != null ? cardPending.cents : 0);
+        long monthly = spent[1] + (cardPending != null ? cardPending.cents : 0);
+        long count = spent[2] + (cardPending != null ? cardPending.count : 0);
+        if (card.getDailyLimit() != null && daily + cents > cents(card.getDailyLimit())) {
+            reject("daily", String.format("Daily limit exceeded. Limit: %s, spent in the last 24 hours: %s",
+                    card.getDailyLimit(), fromCents(daily)));
+        }
+        if (card.getMonthlyLimit() != null && monthly + cents > cents(card.getMonthlyLimit())) {
+            reject("monthly", String.format("Monthly limit exceeded. Limit: %s, spent in the last 30 days: %s",
+                    card.getMonthlyLimit(), fromCents(monthly)));
+        }
+        if (card.getMaxTransfersPerHour() != null && count + 1 > card.getMaxTransfersPerHour()) {
+            reject("velocity", String.format("Too many transfers. Limit: %d per hour", card.getMaxTransfersPerHour()));
+        }
+    }
+
+    // The card must be locked by the caller. Counts a transfer that passed check() and every
+    // later rejection point; it is added to the window once the transaction commits.
+    public void record(Card card, BigDecimal amount) {
+        if (!enabled) {
+            return;
+        }
+        if (!card.hasLimits()) {
+            // a window left from before the limits were removed must not be trusted again
+            card.setSpendSeq(card.getSpendSeq() + 1);
+            return;
+        }
+        Map<Long, Pending> pending = pendingOfTransaction();
+        Pending cardPending = pending != null ? pending.get(card.getId()) : null;
+        long seq = cardPending != null ? cardPending.seqBefore : card.getSpendSeq();
+
+        // saved with the card by the caller, other nodes reload their window when they see it
+        card.setSpendSeq(card.getSpendSeq() + 1);
+        if (cardPending == null) {
+            cardPending = new Pending(card, seq, clock.millis());
+        }
+        cardPending.cents += cents(amount);
+        cardPending.count++;
+        if (pending == null) {
+            // no transaction to wait for
+            apply(cardPending);
+        } else {
+            pending.putIfAbsent(card.getId(), cardPending);
+        }
+    }
+
+    // The card must be locked by the caller. A hold on it was released, so the window no longer
+    // matches transactions; the next check reloads it, here or on any other node.
+    public void released(Card card) {
+        if (!enabled) {
+            return;
+        }
+        card.setSpendSeq(card.getSpendSeq() + 1);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long now = clock.millis();
+            Map<Long, Window> windows = snapshotTemplate.execute(status -> {
+                // spend_seq and transactions of all cards from one snapshot
+                databasePlatform.repeatableRead();
+                Map<Long, Window> result = new HashMap<>();
+                jdbcTemplate.query(LIMITED_CARDS, (RowCallbackHandler) rs ->
+                        result.put(rs.getLong(1), new Window(rs.getLong(2))), maxCards);
+                jdbcTemplate.query(LOAD_ALL, (RowCallbackHandler) rs -> {
+                    Window window = result.get(rs.getLong(1));
+                    if (window != null) {
+                        window.add(rs.getTimestamp(2).getTime(), cents(rs.getBigDecimal(3)), now);
+                    }
+                }, new Timestamp(now - MONTH_DAYS * DAY));
+                return result;
+            });
+            if (windows == null) {
+                return;
+            }
+            windows.forEach((cardId, window) -> {
+                Stripe stripe = stripeOf(cardId);
+                synchronized (stripe) {
+                    stripe.windows.putIfAbsent(cardId, window);
+                }
+            });
+            log.info("Loaded spending windows of {} cards", windows.size());
+        } catch (RuntimeException e) {
+            // windows are then loaded card by card on first use
+            log.warn("Could not load spending windows: {}", e.getMessage());
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.windows.size();
+            }
+        }
+        return size;
+    }
+
+    private Window load(Long cardId, long seq, long now) {
+        reloads.increment();
+        Window window = new Window(seq);
+        jdbcTemplate.query(LOAD_CARD, (RowCallbackHandler) rs ->
+                        window.add(rs.getTimestamp(1).getTime(), cents(rs.getBigDecimal(2)), now),
+                cardId, new Timestamp(now - MONTH_DAYS * DAY));
+        return window;
+    }
+
+    // daily amount, monthly amount and hourly count, null when the window does not match the card
+    private static long[] spent(Window window, long seq, long now) {
+        if (window == null || window.seq != seq) {
+            return null;
+        }
+        return new long[]{window.day.sum(now), window.month.sum(now), window.hour.sum(now)};
+    }
+
+    private void reject(String limit, String message) {
+        rejected.get(limit).increment();
+        throw new LimitExceededException(message);
+    }
+
+    // transfers of the card recorded earlier in this transaction, without registering for it
+    private Pending pendingOf(Long cardId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Long, Pending> pending = (Map<Long, Pending>) TransactionSynchronizationManager.getResource(this);
+        return pending != null ? pending.get(cardId) : null;
+    }
+
+    private Map<Long, Pending> pendingOfTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Long, Pending> pending = (Map<Long, Pending>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        Map<Long, Pending> created = new HashMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                created.values().forEach(SpendingLimitService.this::apply);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(SpendingLimitService.this);
+            }
+        });
+        return created;
+    }
+
+    private void apply(Pending pending) {
+        Long cardId = pending.card.getId();
+        Stripe stripe = stripeOf(cardId);
+        synchronized (stripe) {
+            Window window = stripe.windows.get(cardId);
+            // a window reloaded after our commit already has these transfers
+            if (window == null || window.seq != pending.seqBefore) {
+                return;
+            }
+            window.day.add(pending.time, pending.cents);
+            window.month.add(pending.time, pending.cents);
+            window.hour.add(pending.time, pending.count);
+            window.seq = pending.card.getSpendSeq();
+        }
+    }
+
+    private Stripe stripeOf(Long cardId) {
+        return stripes[(int) Math.floorMod(cardId ^ (cardId >>> 32), (long) STRIPES)];
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static class Stripe {
+        private final LinkedHashMap<Long, Window> windows;
+
+        Stripe(int capacity) {
+            // access order: the least recently checked card is dropped first
+            this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Window> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    private static class Window {
+        private long seq;
+        private final SlidingWindowCounter day = new SlidingWindowCounter(24, HOUR);
+        private final SlidingWindowCounter month = new SlidingWindowCounter(MONTH_DAYS, DAY);
+        private final SlidingWindowCounter hour = new SlidingWindowCounter(12, FIVE_MINUTES);
+
+        Window(long seq) {
+            this.seq = seq;
+        }
+
+        void add(long time, long cents, long now) {
+            if (time > now) {
+                time = now;
+            }
+            day.add(time, cents);
+            month.add(time, cents);
+            hour.add(time, 1);
+        }
+    }
+
+    private static class Pending {
+        private final Card card;
+        private final long seqBefore;
+        private final long time;
+        private long cents;
+        private int count;
+
+        Pending(Card card, long seqBefore, long time) {
+            this.card = card;
+            this.seqBefore = seqBefore;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Monthly statements for every card. A run splits the card id space into fixed chunks that
+// are processed in parallel; each chunk is written and checkpointed in one transaction, so
+// a run that died is resumed from the chunks that are not in statement_run_chunks yet.
+@Service
+@Slf4j
+public class StatementService {
+
+    private static final String INSERT_STATEMENT =
+            "INSERT INTO card_statements (card_id, period_start, opening_balance, closing_balance, "
+                    + "total_debits, total_credits, tx_count, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_LINE =
+            "INSERT INTO card_statement_lines (card_id, period_start, transaction_id, created_at, direction, "
+                    + "amount, counterparty_card_id, description, balance_after) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final CardRepository cardRepository;
+    private final TransactionRepository transactionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final JobRunner jobRunner;
+    private final boolean enabled;
+    private final long chunkSize;
+    private final int workers;
+    private final int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong cardsProcessed = new AtomicLong();
+    private final Timer chunkTimer;
+    private final MeterRegistry meterRegistry;
+
+    // throughput of the current or the last run
+    private final AtomicLong runCards = new AtomicLong();
+    private volatile long runStartedNanos;
+    private volatile long runFinishedNanos;
+
+    public StatementService(CardRepository cardRepository,
+                            TransactionRepository transactionRepository,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            DatabasePlatform databasePlatform,
+                            JobRunner jobRunner,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.statements.enabled:true}") boolean enabled,
+                            @Value("${app.statements.chunk-size:1000}") long chunkSize,
+                            @Value("${app.statements.workers:4}") int workers,
+                            @Value("${app.statements.batch-size:500}") int batchSize) {
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.databasePlatform = databasePlatform;
+        this.jobRunner = jobRunner;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.workers = workers;
+        this.batchSize = batchSize;
+
+        this.chunkTimer = Timer.builder("bankcards.statements.chunk.duration")
+                .register(meterRegistry);
+        FunctionCounter.builder("bankcards.statements.cards", cardsProcessed, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("bankcards.statements.throughput", this, StatementService::getCardsPerSecond)
+                .baseUnit("cards/s")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.statements.cron:0 0 4 * * *}")
+    public void generatePreviousMonth() {
+        if (!enabled) {
+            return;
+        }
+        // a completed month is a single lookup, so running daily also resumes failed runs
+        YearMonth period = YearMonth.now().minusMonths(1);
+        jobRunner.run("statements", context -> {
+            boolean completed = generate(period);
+            context.addRows(runCards.get());
+            if (!completed) {
+                throw new IllegalStateException("Statements for " + period + " are incomplete");
+            }
+        });
+    }
+
+    // returns true when all statements of the month exist
+    public boolean generate(YearMonth period) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Statement run already in progress, skipping {}", period);
+            return false;
+        }
+        try {
+            Run run = startRun(period);
+            if (run == null) {
+                return true;
+            }
+
+            List<long[]> chunks = pendingChunks(run);
+            log.info("Generating statements for {}: {} of {} chunks left", period, chunks.size(), run.chunkCount());
+            runCards.set(0);
+            runStartedNanos = System.nanoTime();
+            runFinishedNanos = 0;
+
+            boolean failed = !processChunks(run, period, chunks);
+
+            runFinishedNanos = System.nanoTime();
+            jdbcTemplate.update("UPDATE statement_runs SET status = ?, finished_at = ? WHERE id = ?",
+                    failed ? "FAILED" : "COMPLETED", LocalDateTime.now(), run.id());
+            log.info("Statement run for {} {}: {} cards, {} cards/s", period, failed ? "failed" : "completed",
+                    runCards.get(), String.format("%.1f", getCardsPerSecond()));
+            return !failed;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public double getCardsPerSecond() {
+        long started = runStartedNanos;
+        if (started == 0) {
+            return 0;
+        }
+        long finished = runFinishedNanos;
+        long elapsed = (finished != 0 ? finished : System.nanoTime()) - started;
+        return elapsed > 0 ? runCards.get() * 1_000_000_000.0 / elapsed : 0;
+    }
+
+    private boolean processChunks(Run run, YearMonth period, List<long[]> chunks) {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "statement-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(chunks.size());
+            for (long[] chunk : chunks) {
+                futures.add(pool.submit(() -> processChunk(run.id(), period, chunk[0], chunk[1])));
+            }
+
+            boolean ok = true;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    ok = false;
+                    log.error("Statement chunk {}-{} failed: {}", chunks.get(i)[0], chunks.get(i)[1],
+                            e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return ok;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    int processChunk(long runId, YearMonth period, long fromId, long toId) {
+        Integer cards = chunkTimer.record(() -> transactionTemplate.execute(status -> writeChunk(runId, period, fromId, toId)));
+        int count = cards != null ? cards : 0;
+        cardsProcessed.addAndGet(count);
+        runCards.addAndGet(count);
+        meterRegistry.counter("bankcards.statements.chunks").increment();
+        return count;
+    }
+
+    private int writeChunk(long runId, YearMonth period, long fromId, long toId) {
+        // balances, sums and lines of a chunk are read in several statements, one snapshot
+        // keeps a transfer committing in between from making them disagree
+        databasePlatform.repeatableRead();
+        LocalDate periodStart = period.atDay(1);
+        LocalDateTime start = periodStart.atStartOfDay();
+        LocalDateTime end = period.plusMonths(1).atDay(1).atStartOfDay();
+
+        Map<Long, CardStatement> statements = buildStatements(
+                cardRepository.findBalancesInRange(fromId, toId, end),
+                transactionRepository.sumOutgoingSince(fromId, toId, start, end),
+                transactionRepository.sumIncomingSince(fromId, toId, start, end));
+
+        // a chunk that was half written by a crashed run is replaced as a whole
+        jdbcTemplate.update("DELETE FROM card_statements WHERE card_id BETWEEN ? AND ? AND period_start = ?",
+                fromId, toId, periodStart);
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_STATEMENT, statements.values(), batchSize, (ps, statement) -> {
+            ps.setLong(1, statement.cardId);
+            ps.setObject(2, periodStart);
+            ps.setBigDecimal(3, statement.opening);
+            ps.setBigDecimal(4, statement.closing);
+            ps.setBigDecimal(5, statement.debits);
+            ps.setBigDecimal(6, statement.credits);
+            ps.setInt(7, statement.count);
+            ps.setTimestamp(8, Timestamp.valueOf(now));
+        });
+
+        List<Object[]> lines = new ArrayList<>(batchSize);
+        try (Stream<TransactionRepository.Movement> movements =
+                     transactionRepository.streamCompletedForCardRange(fromId, toId, start, end)) {
+            movements.forEach(movement -> {
+                CardStatement from = statements.get(movement.getFromCardId());
+                if (from != null) {
+                    lines.add(from.line(periodStart, movement, "DEBIT", movement.getToCardId()));
+                }
+                CardStatement to = statements.get(movement.getToCardId());
+                if (to != null) {
+                    lines.add(to.line(periodStart, movement, "CREDIT", movement.getFromCardId()));
+                }
+                if (lines.size() >= batchSize) {
+                    jdbcTemplate.batchUpdate(INSERT_LINE, lines);
+                    lines.clear();
+                }
+            });
+        }
+        if (!lines.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_LINE, lines);
+        }
+
+        jdbcTemplate.update("INSERT INTO statement_run_chunks (run_id, chunk_start, chunk_end, cards, completed_at) "
+                + "VALUES (?, ?, ?, ?, ?)", runId, fromId, toId, statements.size(), LocalDateTime.now());
+        return statements.size();
+    }
+
+    // closing = current balance minus everything that moved after the month,
+    // opening = closing minus what moved during it
+    static Map<Long, CardStatement> buildStatements(List<CardRepository.CardBalance> cards,
+                                                    List<TransactionRepository.CardMovements> outgoing,
+                                                    List<TransactionRepository.CardMovements> incoming) {
+        Map<Long, CardStatement> statements = new LinkedHashMap<>();
+        for (CardRepository.CardBalance card : cards) {
+            statements.put(card.getId(), new CardStatement(card.getId(), card.getBalance()));
+        }
+        for (TransactionRepository.CardMovements movements : outgoing) {
+            CardStatement statement = statements.get(movements.getCardId());
+            if (statement != null) {
+                statement.debits = statement.debits.add(movements.getAmountInRange());
+                statement.count += movements.getCountInRange().intValue();
+                statement.closing = statement.closing.add(movements.getAmountAfter());
+            }
+        }
+        for (TransactionRepository.CardMovements movements : incoming) {
+            CardStatement statement = statements.get(movements.getCardId());
+            if (statement != null) {
+                statement.credits = statement.credits.add(movements.getAmountInRange());
+                statement.count += movements.getCountInRange().intValue();
+                statement.closing = statement.closing.subtract(movements.getAmountAfter());
+            }
+        }
+        for (CardStatement statement : statements.values()) {
+            statement.opening = statement.closing.subtract(statement.credits).add(statement.debits);
+            statement.running = statement.opening;
+        }
+        return statements;
+    }
+
+    private Run startRun(YearMonth period) {
+        LocalDate periodStart = period.atDay(1);
+        List<Run> existing = jdbcTemplate.query(
+                "SELECT id, status, chunk_size, min_card_id, max_card_id FROM statement_runs WHERE period_start = ?",
+                (rs, i) -> new Run(rs.getLong("id"), rs.getString("status"), rs.getLong("chunk_size"),
+                        rs.getLong("min_card_id"), rs.getLong("max_card_id")),
+                periodStart);
+
+        if (!existing.isEmpty()) {
+            Run run = existing.get(0);
+            if ("COMPLETED".equals(run.status())) {
+                return null;
+            }
+            jdbcTemplate.update("UPDATE statement_runs SET status = 'RUNNING' WHERE id = ?", run.id());
+            return run;
+        }
+
+        // chunk boundaries are fixed when the run starts, so a resumed run sees the same chunks
+        CardRepository.CardIdRange range = cardRepository.findIdRange();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO statement_runs (period_start, status, chunk_size, min_card_id, max_card_id, started_at) "
+                            + "VALUES (?, 'RUNNING', ?, ?, ?, ?)", new String[]{"id"});
+            ps.setObject(1, periodStart);
+            ps.setLong(2, chunkSize);
+            ps.setLong(3, range.getMinId());
+            ps.setLong(4, range.getMaxId());
+            ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            return ps;
+        }, keyHolder);
+        return new Run(keyHolder.getKey().longValue(), "RUNNING", chunkSize, range.getMinId(), range.getMaxId());
+    }
+
+    private List<long[]> pendingChunks(Run run) {
+        Set<Long> done = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT chunk_start FROM statement_run_chunks WHERE run_id = ?", Long.class, run.id()));
+        List<long[]> chunks = new ArrayList<>();
+        for (long start = run.minCardId(); start <= run.maxCardId(); start += run.chunkSize()) {
+            if (!done.contains(start)) {
+                chunks.add(new long[]{start, Math.min(start + run.chunkSize() - 1, run.maxCardId())});
+            }
+        }
+        return chunks;
+    }
+
+    private record Run(long id, String status, long chunkSize, long minCardId, long maxCardId) {
+
+        long chunkCount() {
+            return maxCardId < minCardId ? 0 : (maxCardId - minCardId) / chunkSize + 1;
+        }
+    }
+
+    static class CardStatement {
+        final long cardId;
+        BigDecimal opening;
+        BigDecimal closing;
+        BigDecimal debits = BigDecimal.ZERO;
+        BigDecimal credits = BigDecimal.ZERO;
+        int count;
+        BigDecimal running;
+
+        CardStatement(long cardId, BigDecimal balance) {
+            this.cardId = cardId;
+            this.closing = balance;
+        }
+
+        // movements arrive in time order, so the running balance is the balance after this line
+        Object[] line(LocalDate periodStart, TransactionRepository.Movement movement, String direction,
+                      Long counterpartyCardId) {
+            running = "DEBIT".equals(direction)
+                    ? running.subtract(movement.getAmount())
+                    : running.add(movement.getAmount());
+            return new Object[]{cardId, periodStart, movement.getId(), movement.getCreatedAt(), direction,
+                    movement.getAmount(), counterpartyCardId, movement.getDescription(), running};
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransactionArchiveSegment;
+import com.example.bankcards.repository.TransactionArchiveSegmentRepository;
+import com.example.bankcards.util.ArchivedTransaction;
+import com.example.bankcards.util.CardNumberAttributeConverter;
+import com.example.bankcards.util.TransactionSegmentReader;
+import com.example.bankcards.util.TransactionSegmentWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+// Moves whole months of transactions older than the retention period out of the database
+// into immutable segment files (one per card id range, see TransactionSegmentWriter) and
+// serves them back for card history. A month is written to disk first and only then, in
+// one transaction, registered in transaction_archive_segments and removed from the table.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionArchiveService {
+
+    // every transaction once per card it touches, sorted the way segments are written
+    private static final String MONTH_QUERY =
+            "SELECT t.from_card_id AS card_id, t.id, t.from_card_id, t.to_card_id, "
+                    + "fc.card_number AS from_card_number, tc.card_number AS to_card_number, "
+                    + "t.amount, t.status, t.description, t.created_at, t.processed_at "
+                    + "FROM transactions t JOIN cards fc ON fc.id = t.from_card_id JOIN cards tc ON tc.id = t.to_card_id "
+                    + "WHERE t.created_at >= ? AND t.created_at < ? "
+                    + "UNION ALL "
+                    + "SELECT t.to_card_id AS card_id, t.id, t.from_card_id, t.to_card_id, "
+                    + "fc.card_number AS from_card_number, tc.card_number AS to_card_number, "
+                    + "t.amount, t.status, t.description, t.created_at, t.processed_at "
+                    + "FROM transactions t JOIN cards fc ON fc.id = t.from_card_id JOIN cards tc ON tc.id = t.to_card_id "
+                    + "WHERE t.created_at >= ? AND t.created_at < ? "
+                    + "ORDER BY card_id, created_at DESC, id DESC";
+
+    private static final String ROLL_OPENING_BALANCES =
+            "UPDATE cards c SET opening_balance = c.opening_balance + m.net "
+                    + "FROM (SELECT card_id, SUM(net) AS net FROM ("
+                    + "SELECT to_card_id AS card_id, amount AS net FROM transactions "
+                    + "WHERE status = 'COMPLETED' AND created_at >= ? AND created_at < ? "
+                    + "UNION ALL "
+                    + "SELECT from_card_id AS card_id, -amount AS net FROM transactions "
+                    + "WHERE status = 'COMPLETED' AND created_at >= ? AND created_at < ?"
+                    + ") x GROUP BY card_id) m "
+                    + "WHERE c.id = m.card_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final DatabasePlatform databasePlatform;
+    private final TransactionArchiveSegmentRepository segmentRepository;
+    private final CardNumberAttributeConverter cardNumberConverter;
+    private final JobRunner jobRunner;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.archive.directory:./archive}")
+    private String directory;
+
+    @Value("${app.archive.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${app.archive.card-range-size:10000}")
+    private long cardRangeSize;
+
+    @Value("${app.archive.block-records:128}")
+    private int blockRecords;
+
+    @Value("${app.archive.fetch-size:1000}")
+    private int fetchSize;
+
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+
+        jobRunner.run("transaction-archive", context -> {
+            YearMonth month;
+            while ((month = nextMonthToArchive()) != null) {
+                try {
+                    context.checkpoint(month.toString(), archiveMonth(month));
+                } catch (Exception e) {
+                    throw new IllegalStateException("Failed to archive transactions of " + month + ": " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    public List<Transaction> findCardTransactions(Long cardId, LocalDateTime from, LocalDateTime to) {
+        List<TransactionArchiveSegment> segments = segmentRepository.findCardSegments(cardId, from, to);
+        List<Transaction> result = new ArrayList<>();
+        for (TransactionArchiveSegment segment : segments) {
+            List<ArchivedTransaction> records;
+            try {
+                records = TransactionSegmentReader.readCard(Path.of(directory).resolve(segment.getFileName()), cardId);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read archive segment " + segment.getFileName(), e);
+            }
+            for (ArchivedTransaction record : records) {
+                if (!record.createdAt().isBefore(from) && record.createdAt().isBefore(to)) {
+                    result.add(toTransaction(record));
+                }
+            }
+        }
+        return result;
+    }
+
+    // oldest month that ended before the retention cutoff and still has rows in the table
+    private YearMonth nextMonthToArchive() {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT min(created_at) FROM transactions", Timestamp.class);
+        if (oldest == null) {
+            return null;
+        }
+        YearMonth month = YearMonth.from(oldest.toLocalDateTime());
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        return month.plusMonths(1).atDay(1).isAfter(cutoff) ? null : month;
+    }
+
+    private long archiveMonth(YearMonth month) throws IOException {
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+        log.info("Archiving transactions of {}", month);
+
+        Path monthDirectory = Path.of(directory, month.toString());
+        Files.createDirectories(monthDirectory);
+        MonthWriter writer = new MonthWriter(month, start, end, System.currentTimeMillis());
+
+        try {
+            // PostgreSQL only streams with a fetch size inside a transaction
+            TransactionTemplate read = new TransactionTemplate(transactionManager);
+            read.setReadOnly(true);
+            read.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(MONTH_QUERY,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, Timestamp.valueOf(start));
+                statement.setTimestamp(2, Timestamp.valueOf(end));
+                statement.setTimestamp(3, Timestamp.valueOf(start));
+                statement.setTimestamp(4, Timestamp.valueOf(end));
+                return statement;
+            }, writer));
+            writer.finish();
+
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Long rows = jdbcTemplate.queryForObject(
+                        "SELECT count(*) FROM transactions WHERE created_at >= ? AND created_at < ?",
+                        Long.class, start, end);
+                if (rows == null || rows * 2 != writer.records) {
+                    throw new IllegalStateException("Transactions of " + month + " changed while archiving");
+                }
+                segmentRepository.saveAll(writer.segments);
+                removeMonth(month, start, end);
+            });
+        } catch (RuntimeException | IOException e) {
+            writer.abort();
+            throw e;
+        }
+
+        log.info("Archived {} transactions of {} into {} segments", writer.records / 2, month, writer.segments.size());
+        return writer.records / 2;
+    }
+
+    // a month with its own partition is dropped instead of deleted row by row. What the month
+    // moved is folded into cards.opening_balance first, so balances still reconcile
+    private void removeMonth(YearMonth month, LocalDateTime start, LocalDateTime end) {
+        jdbcTemplate.update(ROLL_OPENING_BALANCES, start, end, start, end);
+
+        String partition = TransactionPartitionMaintainer.partitionName(month);
+        Boolean partitionExists = jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+        if (Boolean.TRUE.equals(partitionExists)) {
+            jdbcTemplate.update("DELETE FROM transactions_default WHERE created_at >= ? AND created_at < ?", start, end);
+            jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+        } else {
+            jdbcTemplate.update("DELETE FROM transactions WHERE created_at >= ? AND created_at < ?", start, end);
+        }
+    }
+
+    private Transaction toTransaction(ArchivedTransaction record) {
+        return Transaction.builder()
+                .id(record.id())
+                .fromCard(Card.builder()
+                        .id(record.fromCardId())
+                        .cardNumber(cardNumberConverter.convertToEntityAttribute(record.fromCardNumber()))
+                        .build())
+                .toCard(Card.builder()
+                        .id(record.toCardId())
+                        .cardNumber(cardNumberConverter.convertToEntityAttribute(record.toCardNumber()))
+                        .build())
+                .amount(record.amount())
+                .status(Transaction.TransactionStatus.valueOf(record.status()))
+                .description(record.description())
+                .createdAt(record.createdAt())
+                .processedAt(record.processedAt())
+                .build();
+    }
+
+    // splits the sorted month stream into one segment file per card id range
+    private class MonthWriter implements RowCallbackHandler {
+
+        private final YearMonth month;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final long runId;
+        private final List<TransactionArchiveSegment> segments = new ArrayList<>();
+        private final List<Path> files = new ArrayList<>();
+
+        private TransactionSegmentWriter current;
+        private long currentRange = -1;
+        private long records;
+
+        MonthWriter(YearMonth month, LocalDateTime start, LocalDateTime end, long runId) {
+            this.month = month;
+            this.start = start;
+            this.end = end;
+            this.runId = runId;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long cardId = rs.getLong("card_id");
+            Timestamp processedAt = rs.getTimestamp("processed_at");
+            ArchivedTransaction record = new ArchivedTransaction(
+                    cardId,
+                    rs.getLong("id"),
+                    rs.getLong("from_card_id"),
+                    rs.getLong("to_card_id"),
+                    rs.getString("from_card_number"),
+                    rs.getString("to_card_number"),
+                    rs.getBigDecimal("amount"),
+                    rs.getString("status"),
+                    rs.getString("description"),
+                    rs.getTimestamp("created_at").toLocalDateTime(),
+                    processedAt != null ? processedAt.toLocalDateTime() : null
+            );
+            try {
+                long range = cardId / cardRangeSize;
+                if (range != currentRange) {
+                    closeCurrent();
+                    open(range);
+                }
+                current.append(record);
+                records++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            closeCurrent();
+        }
+
+        void abort() {
+            try {
+                if (current != null) {
+                    current.close();
+                }
+            } catch (IOException ignored) {
+                // the file is deleted below anyway
+            }
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Failed to delete archive file {}: {}", file, e.getMessage());
+                }
+            }
+        }
+
+        private void open(long range) throws IOException {
+            long cardIdFrom = range * cardRangeSize;
+            long cardIdTo = cardIdFrom + cardRangeSize - 1;
+            String fileName = month + "/cards-" + cardIdFrom + "-" + cardIdTo + "." + runId + ".seg";
+            Path file = Path.of(directory).resolve(fileName);
+            files.add(file);
+            current = new TransactionSegmentWriter(file, blockRecords);
+            currentRange = range;
+            segments.add(TransactionArchiveSegment.builder()
+                    .periodStart(start)
+                    .periodEnd(end)
+                    .cardIdFrom(cardIdFrom)
+                    .cardIdTo(cardIdTo)
+                    .fileName(fileName)
+                    .build());
+        }
+
+        private void closeCurrent() throws IOException {
+            if (current == null) {
+                return;
+            }
+            current.close();
+            TransactionArchiveSegment segment = segments.get(segments.size() - 1);
+            segment.setRecordCount(current.getRecordCount());
+            segment.setSizeBytes(current.getSize());
+            segment.setChecksum(current.getChecksum());
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+
+// Keeps monthly partitions of the transactions table created ahead of time, so new rows
+// never land in transactions_default (see changeset 007).
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionPartitionMaintainer {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final JobRunner jobRunner;
+
+    @Value("${app.transactions.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.transactions.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        ensurePartitions();
+    }
+
+    @Scheduled(cron = "${app.transactions.partitions.cron:0 0 3 * * *}")
+    public void ensurePartitions() {
+        if (!enabled || !databasePlatform.isPostgres() || !isPartitioned()) {
+            return;
+        }
+
+        YearMonth current = YearMonth.now();
+        jobRunner.run("transaction-partitions", context -> {
+            for (int i = 0; i <= monthsAhead; i++) {
+                createPartition(current.plusMonths(i));
+            }
+        });
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "transactions_" + month.format(PARTITION_SUFFIX);
+    }
+
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF transactions "
+                    + "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        } catch (DataAccessException e) {
+            // usually rows for this month already sit in transactions_default
+            log.error("Failed to create partition {}: {}", name, e.getMessage());
+        }
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid "
+                        + "WHERE c.relname = 'transactions'", Integer.class);
+        return count != null && count > 0;
+    }
+}
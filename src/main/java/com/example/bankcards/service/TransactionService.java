@@ -1,7 +1,9 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadYourWritesGuard;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.BusinessException;
 import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.exception.InsufficientFundsException;
@@ -12,12 +14,22 @@ import com.example.bankcards.repository.TransactionRepository;
 import com.example.bankcards.util.CardMasker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
@@ -26,6 +38,26 @@ public class TransactionService {
 
     private final TransactionRepository transactionRepository;
     private final CardRepository cardRepository;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final UserBalanceCache userBalanceCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final TransactionArchiveService transactionArchiveService;
+    private final CardSummaryService cardSummaryService;
+    private final OutboxService outboxService;
+    private final CardEventStream cardEventStream;
+    private final BalanceStripeService balanceStripeService;
+    private final SpendingLimitService spendingLimitService;
+    private final FraudScoringService fraudScoringService;
+
+    @Value("${app.transactions.history-window-days:90}")
+    private int historyWindowDays;
+
+    @Value("${app.transactions.holds.ttl-minutes:30}")
+    private long holdTtlMinutes;
+
+    // open holds are only looked up in partitions this recent, must stay well above the TTL
+    @Value("${app.transactions.holds.lookback-days:7}")
+    private int holdLookbackDays;
 
     @Transactional
     public Transaction createTransaction(Transaction transaction) {
@@ -36,18 +68,56 @@ public class TransactionService {
 
         validateTransaction(transaction);
 
-        if (!transaction.getFromCard().getUser().getId().equals(transaction.getToCard().getUser().getId())) {
-            throw new InvalidTransactionException("Transaction between cards of different users is not allowed");
+        lockCards(transaction);
+
+        checkFundsAndStatus(transaction);
+        spendingLimitService.check(transaction.getFromCard(), transaction.getAmount());
+        fraudScoringService.screen(transaction.getFromCard(), transaction.getAmount());
+        spendingLimitService.record(transaction.getFromCard(), transaction.getAmount());
+
+        try {
+            return complete(transaction);
+
+        } catch (Exception e) {
+            log.error("Error processing transaction: {}", e.getMessage());
+            transaction.setStatus(Transaction.TransactionStatus.FAILED);
+            Transaction failedTransaction = transactionRepository.save(transaction);
+            outboxService.transferProcessed(failedTransaction);
+            return failedTransaction;
         }
+    }
 
-        if (transaction.getFromCard().getBalance().compareTo(transaction.getAmount()) < 0) {
-            throw new InsufficientFundsException(
-                    transaction.getAmount(),
-                    transaction.getFromCard().getBalance()
-            );
+    // Used by the transfer queue, which locks the cards of a whole batch up front and commits
+    // many transfers at once. A rejected transfer must not roll back the rest of the batch.
+    @Transactional(propagation = Propagation.MANDATORY, noRollbackFor = BusinessException.class)
+    public Transaction applyLocked(Transaction transaction) {
+        validateTransaction(transaction);
+        checkFundsAndStatus(transaction);
+        spendingLimitService.check(transaction.getFromCard(), transaction.getAmount());
+        fraudScoringService.screen(transaction.getFromCard(), transaction.getAmount());
+        spendingLimitService.record(transaction.getFromCard(), transaction.getAmount());
+        return complete(transaction);
+    }
+
+    // First phase of a two-phase transfer: only the source card is locked and the amount is
+    // held on it, nothing moves until capture. An uncaptured hold is released after holdTtlMinutes.
+    @Transactional
+    public Transaction authorizeTransaction(Transaction transaction) {
+        log.info("Authorizing transaction from card {} to card {} amount: {}",
+                CardMasker.maskCardNumber(transaction.getFromCard().getCardNumber()),
+                CardMasker.maskCardNumber(transaction.getToCard().getCardNumber()),
+                transaction.getAmount());
+
+        validateTransaction(transaction);
+
+        Card fromCard = cardRepository.lockForUpdate(transaction.getFromCard());
+        transaction.setFromCard(fromCard);
+
+        if (fromCard.getAvailableBalance().compareTo(transaction.getAmount()) < 0) {
+            throw new InsufficientFundsException(transaction.getAmount(), fromCard.getAvailableBalance());
         }
 
-        if (transaction.getFromCard().getStatus() != Card.CardStatus.ACTIVE) {
+        if (fromCard.getStatus() != Card.CardStatus.ACTIVE) {
             throw new CardBlockedException("Source card is not active");
         }
 
@@ -55,50 +125,288 @@ public class TransactionService {
             throw new CardBlockedException("Destination card is not active");
         }
 
-        try {
-            transaction.getFromCard().setBalance(
-                    transaction.getFromCard().getBalance().subtract(transaction.getAmount())
-            );
-            transaction.getToCard().setBalance(
-                    transaction.getToCard().getBalance().add(transaction.getAmount())
-            );
+        // a hold counts against the limits as soon as it is placed
+        spendingLimitService.check(fromCard, transaction.getAmount());
+        fraudScoringService.screen(fromCard, transaction.getAmount());
+        spendingLimitService.record(fromCard, transaction.getAmount());
 
-            cardRepository.save(transaction.getFromCard());
-            cardRepository.save(transaction.getToCard());
+        fromCard.setHeldAmount(fromCard.getHeldAmount().add(transaction.getAmount()));
+        cardRepository.save(fromCard);
 
-            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
-            transaction.setProcessedAt(LocalDateTime.now());
+        transaction.setStatus(Transaction.TransactionStatus.PENDING);
+        transaction.setHoldExpiresAt(LocalDateTime.now().plusMinutes(holdTtlMinutes));
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        log.info("Transaction authorized with id: {}", savedTransaction.getId());
+        outboxService.transferProcessed(savedTransaction);
 
-            Transaction savedTransaction = transactionRepository.save(transaction);
-            log.info("Transaction completed successfully with id: {}", savedTransaction.getId());
+        readYourWritesGuard.recordWrite(fromCard.getUser().getId());
+        cardsChanged(fromCard);
+        return savedTransaction;
+    }
 
-            return savedTransaction;
+    // Second phase: moves the held amount. A transfer whose cards are no longer active is
+    // FAILED instead, its hold is released either way.
+    @Transactional
+    public Transaction captureTransaction(Long id) {
+        log.info("Capturing transaction: {}", id);
 
-        } catch (Exception e) {
-            log.error("Error processing transaction: {}", e.getMessage());
+        Transaction transaction = lockPending(id);
+        lockCards(transaction);
+        Card fromCard = transaction.getFromCard();
+        Card toCard = transaction.getToCard();
+        BigDecimal amount = transaction.getAmount();
+
+        fromCard.setHeldAmount(fromCard.getHeldAmount().subtract(amount));
+        ensureSpendable(fromCard, amount);
+        boolean striped = false;
+        if (fromCard.getStatus() != Card.CardStatus.ACTIVE || toCard.getStatus() != Card.CardStatus.ACTIVE
+                || fromCard.getBalance().compareTo(amount) < 0) {
+            log.warn("Transaction {} cannot be captured, releasing the hold", id);
             transaction.setStatus(Transaction.TransactionStatus.FAILED);
-            return transactionRepository.save(transaction);
+            spendingLimitService.released(fromCard);
+        } else {
+            fromCard.setBalance(fromCard.getBalance().subtract(amount));
+            striped = credit(toCard, fromCard, amount);
+            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        }
+        transaction.setProcessedAt(LocalDateTime.now());
+        transaction.setHoldExpiresAt(null);
+
+        cardRepository.save(fromCard);
+        if (!striped) {
+            cardRepository.save(toCard);
+        }
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        if (savedTransaction.getStatus() == Transaction.TransactionStatus.COMPLETED) {
+            cardSummaryService.recordTransaction(savedTransaction);
+        }
+        outboxService.transferProcessed(savedTransaction);
+
+        readYourWritesGuard.recordWrite(fromCard.getUser().getId());
+        userBalanceCache.cardChanged(fromCard);
+        if (!striped) {
+            userBalanceCache.cardChanged(toCard);
+        }
+        cacheInvalidationBus.cardChanged(fromCard);
+        cacheInvalidationBus.cardChanged(toCard);
+        cardEventStream.transactionCompleted(savedTransaction);
+        log.info("Transaction {} captured with status {}", id, savedTransaction.getStatus());
+        return savedTransaction;
+    }
+
+    @Transactional
+    public Transaction cancelTransaction(Long id) {
+        log.info("Cancelling transaction: {}", id);
+
+        Transaction transaction = lockPending(id);
+        Card fromCard = cardRepository.lockForUpdate(transaction.getFromCard());
+        transaction.setFromCard(fromCard);
+        release(transaction, fromCard, LocalDateTime.now());
+
+        cardRepository.save(fromCard);
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        outboxService.transferProcessed(savedTransaction);
+
+        readYourWritesGuard.recordWrite(fromCard.getUser().getId());
+        cardsChanged(fromCard);
+        return savedTransaction;
+    }
+
+    // Cancels up to batchSize holds that expired before now, in one transaction. Holds locked by a
+    // concurrent capture or cancel are skipped; card rows are locked in id order, like transfers do.
+    @Transactional
+    public int releaseExpiredHolds(LocalDateTime now, int batchSize) {
+        List<Transaction> expired = transactionRepository.findExpiredHolds(now, now.minusDays(holdLookbackDays),
+                PageRequest.of(0, batchSize));
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Card> cards = new TreeMap<>();
+        for (Transaction transaction : expired) {
+            cards.putIfAbsent(transaction.getFromCard().getId(), transaction.getFromCard());
+        }
+        cards.replaceAll((cardId, card) -> cardRepository.lockForUpdate(card));
+
+        for (Transaction transaction : expired) {
+            release(transaction, cards.get(transaction.getFromCard().getId()), now);
+            outboxService.transferProcessed(transaction);
         }
+        cardRepository.saveAll(cards.values());
+        transactionRepository.saveAll(expired);
+
+        cardsChanged(cards.values().toArray(new Card[0]));
+        return expired.size();
     }
 
+    @Transactional(readOnly = true)
     public List<Transaction> getUserTransactions(Long userId) {
-        log.info("Getting transactions for user: {}", userId);
-        return transactionRepository.findByFromCardUserIdOrToCardUserId(userId, userId);
+        return getUserTransactions(userId, null, null);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Transaction> getUserTransactions(Long userId, LocalDate from, LocalDate to) {
+        LocalDateTime[] range = resolveRange(from, to);
+        log.info("Getting transactions for user: {} from {} to {}", userId, range[0], range[1]);
+        return transactionRepository.findUserTransactions(userId, range[0], range[1]);
     }
 
+    @Transactional(readOnly = true)
     public List<Transaction> getCardTransactions(Long cardId) {
-        log.info("Getting transactions for card: {}", cardId);
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardNotFoundException(cardId));
-        return transactionRepository.findByFromCardOrToCard(card, card);
+        return getCardTransactions(cardId, null, null);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Transaction> getCardTransactions(Long cardId, LocalDate from, LocalDate to) {
+        LocalDateTime[] range = resolveRange(from, to);
+        log.info("Getting transactions for card: {} from {} to {}", cardId, range[0], range[1]);
+        if (!cardRepository.existsById(cardId)) {
+            throw new CardNotFoundException(cardId);
+        }
+        List<Transaction> recent = transactionRepository.findCardTransactions(cardId, range[0], range[1]);
+        List<Transaction> archived = transactionArchiveService.findCardTransactions(cardId, range[0], range[1]);
+        if (archived.isEmpty()) {
+            return recent;
+        }
+
+        // a month that is being archived can briefly be both in the table and on disk
+        Map<Long, Transaction> merged = new LinkedHashMap<>();
+        recent.forEach(transaction -> merged.put(transaction.getId(), transaction));
+        archived.forEach(transaction -> merged.putIfAbsent(transaction.getId(), transaction));
+        List<Transaction> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(Transaction::getCreatedAt).reversed());
+        return result;
     }
 
+    @Transactional(readOnly = true)
     public Transaction getTransactionById(Long id) {
         log.info("Getting transaction by id: {}", id);
-        return transactionRepository.findById(id)
+        // most lookups are for recent transfers, only a miss scans every partition
+        LocalDateTime recentFrom = LocalDate.now().minusDays(historyWindowDays).atStartOfDay();
+        return transactionRepository.findByIdAndCreatedAtGreaterThanEqual(id, recentFrom)
+                .or(() -> transactionRepository.findById(id))
                 .orElseThrow(() -> new TransactionNotFoundException(id));
     }
 
+    private static void checkFundsAndStatus(Transaction transaction) {
+        // money held by open authorizations cannot be spent twice
+        if (transaction.getFromCard().getAvailableBalance().compareTo(transaction.getAmount()) < 0) {
+            throw new InsufficientFundsException(
+                    transaction.getAmount(),
+                    transaction.getFromCard().getAvailableBalance()
+            );
+        }
+
+        if (transaction.getFromCard().getStatus() != Card.CardStatus.ACTIVE) {
+            throw new CardBlockedException("Source card is not active");
+        }
+
+        if (transaction.getToCard().getStatus() != Card.CardStatus.ACTIVE) {
+            throw new CardBlockedException("Destination card is not active");
+        }
+    }
+
+    // the source card is locked and both cards are checked
+    private Transaction complete(Transaction transaction) {
+        ensureSpendable(transaction.getFromCard(), transaction.getAmount());
+        transaction.getFromCard().setBalance(
+                transaction.getFromCard().getBalance().subtract(transaction.getAmount())
+        );
+        boolean striped = credit(transaction.getToCard(), transaction.getFromCard(), transaction.getAmount());
+
+        cardRepository.save(transaction.getFromCard());
+        if (!striped) {
+            cardRepository.save(transaction.getToCard());
+        }
+
+        transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        transaction.setProcessedAt(LocalDateTime.now());
+
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        log.info("Transaction completed successfully with id: {}", savedTransaction.getId());
+        cardSummaryService.recordTransaction(savedTransaction);
+        outboxService.transferProcessed(savedTransaction);
+
+        readYourWritesGuard.recordWrite(transaction.getFromCard().getUser().getId());
+        userBalanceCache.cardChanged(transaction.getFromCard());
+        if (!striped) {
+            userBalanceCache.cardChanged(transaction.getToCard());
+        }
+        cacheInvalidationBus.cardChanged(transaction.getFromCard());
+        cacheInvalidationBus.cardChanged(transaction.getToCard());
+        cardEventStream.transactionCompleted(savedTransaction);
+
+        return savedTransaction;
+    }
+
+    // the transfer row is locked before its cards, in every path that finalizes a hold
+    private Transaction lockPending(Long id) {
+        Optional<Transaction> pending = transactionRepository.findByIdForUpdate(id,
+                LocalDateTime.now().minusDays(holdLookbackDays));
+        if (pending.isEmpty()) {
+            // older than any open hold, so it is either settled or does not exist
+            Transaction old = transactionRepository.findById(id)
+                    .orElseThrow(() -> new TransactionNotFoundException(id));
+            throw new InvalidTransactionException("Transaction is not pending: " + old.getStatus());
+        }
+        Transaction transaction = pending.get();
+        if (transaction.getStatus() != Transaction.TransactionStatus.PENDING) {
+            throw new InvalidTransactionException("Transaction is not pending: " + transaction.getStatus());
+        }
+        return transaction;
+    }
+
+    private void release(Transaction transaction, Card fromCard, LocalDateTime now) {
+        fromCard.setHeldAmount(fromCard.getHeldAmount().subtract(transaction.getAmount()));
+        spendingLimitService.released(fromCard);
+        transaction.setStatus(Transaction.TransactionStatus.CANCELLED);
+        transaction.setProcessedAt(now);
+        transaction.setHoldExpiresAt(null);
+    }
+
+    private void cardsChanged(Card... cards) {
+        for (Card card : cards) {
+            userBalanceCache.cardChanged(card);
+            cacheInvalidationBus.cardChanged(card);
+            cardEventStream.cardChanged(card);
+        }
+    }
+
+    // true when the amount went to a stripe of the card, which then must not be saved
+    private boolean credit(Card toCard, Card fromCard, BigDecimal amount) {
+        if (toCard.isStriped()) {
+            balanceStripeService.credit(toCard, fromCard.getId(), amount);
+            return true;
+        }
+        toCard.setBalance(toCard.getBalance().add(amount));
+        return false;
+    }
+
+    // debits come out of balance, which keeps covering the holds; credits parked on the
+    // stripes are moved into it only when it falls short. The card is locked.
+    private void ensureSpendable(Card card, BigDecimal amount) {
+        if (card.getStripedBalance().signum() > 0
+                && card.getBalance().subtract(card.getHeldAmount()).compareTo(amount) < 0) {
+            balanceStripeService.consolidate(card);
+        }
+    }
+
+    // locks both rows in card id order so concurrent transfers cannot deadlock,
+    // and re-reads balances and statuses from the primary under the lock.
+    // A striped destination is credited through a stripe row, its card row is left unlocked.
+    private void lockCards(Transaction transaction) {
+        if (transaction.getToCard().isStriped()) {
+            transaction.setFromCard(cardRepository.lockForUpdate(transaction.getFromCard()));
+            return;
+        }
+        boolean fromFirst = transaction.getFromCard().getId() < transaction.getToCard().getId();
+        Card first = cardRepository.lockForUpdate(fromFirst ? transaction.getFromCard() : transaction.getToCard());
+        Card second = cardRepository.lockForUpdate(fromFirst ? transaction.getToCard() : transaction.getFromCard());
+
+        transaction.setFromCard(fromFirst ? first : second);
+        transaction.setToCard(fromFirst ? second : first);
+    }
+
     private void validateTransaction(Transaction transaction) {
         if (transaction.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new InvalidTransactionException("Transaction amount must be positive");
@@ -110,11 +418,31 @@ public class TransactionService {
 
         if (transaction.getFromCard().getUser().getId().equals(transaction.getToCard().getUser().getId())) {
             log.info("Internal transfer between user's own cards");
+        } else {
+            throw new InvalidTransactionException("Transaction between cards of different users is not allowed");
         }
     }
 
+    @Transactional(readOnly = true)
     public List<Transaction> getAllTransactions() {
-        log.info("Getting all transactions");
-        return transactionRepository.findAll();
+        return getAllTransactions(null, null);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Transaction> getAllTransactions(LocalDate from, LocalDate to) {
+        LocalDateTime[] range = resolveRange(from, to);
+        log.info("Getting all transactions from {} to {}", range[0], range[1]);
+        return transactionRepository.findByCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAtDesc(
+                range[0], range[1]);
+    }
+
+    // inclusive dates to a half-open [from, to) range, by default the last historyWindowDays days
+    private LocalDateTime[] resolveRange(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to.plusDays(1) : LocalDate.now().plusDays(1);
+        LocalDate start = from != null ? from : end.minusDays(historyWindowDays);
+        if (!start.isBefore(end)) {
+            throw new InvalidTransactionException("'from' must not be after 'to'");
+        }
+        return new LocalDateTime[]{start.atStartOfDay(), end.atStartOfDay()};
     }
 }
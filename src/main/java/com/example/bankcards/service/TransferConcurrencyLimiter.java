@@ -0,0 +1,96 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.util.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class TransferConcurrencyLimiter {
+
+    private final AdaptiveConcurrencyLimiter userLimiter;
+    private final AdaptiveConcurrencyLimiter adminLimiter;
+
+    public TransferConcurrencyLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${app.limiter.transfer.user.initial-limit:20}") int userInitialLimit,
+            @Value("${app.limiter.transfer.user.max-limit:200}") int userMaxLimit,
+            @Value("${app.limiter.transfer.admin.initial-limit:5}") int adminInitialLimit,
+            @Value("${app.limiter.transfer.admin.max-limit:20}") int adminMaxLimit,
+            @Value("${app.limiter.transfer.min-limit:2}") int minLimit,
+            @Value("${app.limiter.transfer.tolerance:1.5}") double tolerance) {
+        this.userLimiter = new AdaptiveConcurrencyLimiter(userInitialLimit, minLimit, userMaxLimit, tolerance);
+        this.adminLimiter = new AdaptiveConcurrencyLimiter(adminInitialLimit, minLimit, adminMaxLimit, tolerance);
+
+        registerMetrics(meterRegistry, "user", userLimiter);
+        registerMetrics(meterRegistry, "admin", adminLimiter);
+    }
+
+    public Permit acquire(User.Role role) {
+        AdaptiveConcurrencyLimiter limiter = role == User.Role.ADMIN ? adminLimiter : userLimiter;
+        if (!limiter.tryAcquire()) {
+            log.warn("Transfer rejected for {} traffic: limit {} reached", role, limiter.getLimit());
+            throw new ServiceOverloadedException("Transfer service is overloaded, please retry later");
+        }
+        return new Permit(limiter);
+    }
+
+    private static void registerMetrics(MeterRegistry meterRegistry, String traffic, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("bankcards.transfer.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("traffic", traffic)
+                .register(meterRegistry);
+        Gauge.builder("bankcards.transfer.limiter.inflight", limiter, AdaptiveConcurrencyLimiter::getInflight)
+                .tag("traffic", traffic)
+                .register(meterRegistry);
+        FunctionCounter.builder("bankcards.transfer.limiter.rejections", limiter, AdaptiveConcurrencyLimiter::getRejectedCount)
+                .tag("traffic", traffic)
+                .register(meterRegistry);
+    }
+
+    public static class Permit implements AutoCloseable {
+
+        private final AdaptiveConcurrencyLimiter limiter;
+        private boolean released;
+
+        private Permit(AdaptiveConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        public <T> T measure(Supplier<T> action) {
+            long start = System.nanoTime();
+            try {
+                T result = action.get();
+                release(() -> limiter.onSuccess(System.nanoTime() - start));
+                return result;
+            } catch (BusinessException e) {
+                // rejected by validation, says nothing about database latency
+                release(limiter::onIgnore);
+                throw e;
+            } catch (RuntimeException e) {
+                release(limiter::onDropped);
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            release(limiter::onIgnore);
+        }
+
+        private void release(Runnable action) {
+            if (!released) {
+                released = true;
+                action.run();
+            }
+        }
+    }
+}
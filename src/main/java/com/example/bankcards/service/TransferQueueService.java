@@ -0,0 +1,48 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferRequest;
+import com.example.bankcards.exception.TransferRequestNotFoundException;
+import com.example.bankcards.repository.TransferRequestRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Accepts transfers into the transfer_requests table; TransferQueueWorker applies them.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransferQueueService {
+
+    private final TransferRequestRepository transferRequestRepository;
+
+    @Value("${app.transfers.async.enabled:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // cards are already checked to belong to the user, funds and statuses are checked when applied
+    @Transactional
+    public TransferRequest enqueue(Transaction transaction) {
+        TransferRequest request = transferRequestRepository.save(TransferRequest.builder()
+                .userId(transaction.getFromCard().getUser().getId())
+                .fromCardId(transaction.getFromCard().getId())
+                .toCardId(transaction.getToCard().getId())
+                .amount(transaction.getAmount())
+                .description(transaction.getDescription())
+                .build());
+        log.info("Transfer request {} queued", request.getId());
+        return request;
+    }
+
+    // read from the primary, a replica may not have the row yet
+    @Transactional
+    public TransferRequest getRequest(Long id) {
+        return transferRequestRepository.findById(id)
+                .orElseThrow(() -> new TransferRequestNotFoundException(id));
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Applies queued transfer requests in micro-batches. A worker claims up to batchSize requests
+// with FOR UPDATE SKIP LOCKED, locks all of their cards at once in id order, applies the
+// transfers one after another and commits them together with the request statuses. A rejected
+// transfer only fails its own request; anything else rolls the batch back, which is then
+// retried one request per transaction so a single bad row cannot hold up the queue.
+@Component
+@Slf4j
+public class TransferQueueWorker {
+
+    private static final String SELECT_BATCH =
+            "SELECT id, user_id, from_card_id, to_card_id, amount, description, created_at FROM transfer_requests "
+                    + "WHERE status = 'QUEUED' ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String SELECT_ONE =
+            "SELECT id, user_id, from_card_id, to_card_id, amount, description, created_at FROM transfer_requests "
+                    + "WHERE id = ? AND status = 'QUEUED' FOR UPDATE SKIP LOCKED";
+
+    private static final String MARK_PROCESSED =
+            "UPDATE transfer_requests SET status = ?, transaction_id = ?, error = ?, processed_at = ? WHERE id = ?";
+
+    private static final String MARK_FAILED =
+            "UPDATE transfer_requests SET status = 'FAILED', error = ?, processed_at = ? WHERE id = ? AND status = 'QUEUED'";
+
+    private static final RowMapper<QueuedTransfer> ROW_MAPPER = (rs, rowNum) -> new QueuedTransfer(
+            rs.getLong("id"),
+            rs.getLong("user_id"),
+            rs.getLong("from_card_id"),
+            rs.getLong("to_card_id"),
+            rs.getBigDecimal("amount"),
+            rs.getString("description"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final CardRepository cardRepository;
+    private final TransactionService transactionService;
+    private final JobRunner jobRunner;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final long pollMillis;
+    private final int retentionHours;
+
+    private final DistributionSummary batchSizes;
+    private final Timer batchTimer;
+    private final Timer waitTimer;
+    private final Counter completed;
+    private final Counter failed;
+    private final AtomicLong depth = new AtomicLong();
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public TransferQueueWorker(JdbcTemplate jdbcTemplate,
+                               DatabasePlatform databasePlatform,
+                               CardRepository cardRepository,
+                               TransactionService transactionService,
+                               JobRunner jobRunner,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.transfers.async.enabled:false}") boolean enabled,
+                               @Value("${app.transfers.async.workers:2}") int workers,
+                               @Value("${app.transfers.async.batch-size:100}") int batchSize,
+                               @Value("${app.transfers.async.poll-ms:20}") long pollMillis,
+                               @Value("${app.transfers.async.retention-hours:72}") int retentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+        this.cardRepository = cardRepository;
+        this.transactionService = transactionService;
+        this.jobRunner = jobRunner;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.retentionHours = retentionHours;
+
+        this.batchSizes = DistributionSummary.builder("bankcards.transfers.queue.batch.size")
+                .description("Transfers committed per database transaction")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("bankcards.transfers.queue.batch.duration")
+                .register(meterRegistry);
+        // time from acceptance of a request to its commit
+        this.waitTimer = Timer.builder("bankcards.transfers.queue.wait")
+                .register(meterRegistry);
+        this.completed = Counter.builder("bankcards.transfers.queue.processed")
+                .tag("status", "COMPLETED")
+                .register(meterRegistry);
+        this.failed = Counter.builder("bankcards.transfers.queue.processed")
+                .tag("status", "FAILED")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.transfers.queue.depth", depth, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        running = true;
+        for (int i = 1; i <= workers; i++) {
+            Thread thread = new Thread(this::work, "transfer-queue-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        log.info("Started {} transfer queue workers", workers);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.transfers.async.depth-interval-ms:5000}")
+    public void refreshDepth() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        Long queued = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transfer_requests WHERE status = 'QUEUED'", Long.class);
+        depth.set(queued != null ? queued : 0);
+    }
+
+    @Scheduled(cron = "${app.transfers.async.cleanup.cron:0 15 * * * *}")
+    public void cleanup() {
+        if (!enabled || !databasePlatform.isPostgres()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        jobRunner.run("transfer-requests-cleanup", context ->
+                context.addRows(jdbcTemplate.update("DELETE FROM transfer_requests WHERE processed_at < ?", cutoff)));
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                if (processBatch() < batchSize) {
+                    Thread.sleep(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Transfer queue worker failed: {}", e.getMessage());
+                pause();
+            }
+        }
+    }
+
+    // returns the number of requests taken off the queue, 0 when it is empty
+    int processBatch() {
+        List<QueuedTransfer> claimed = new ArrayList<>();
+        try {
+            return apply(SELECT_BATCH, batchSize, claimed);
+        } catch (RuntimeException e) {
+            if (claimed.isEmpty()) {
+                throw e;
+            }
+            if (claimed.size() == 1) {
+                markFailed(claimed, e);
+                return claimed.size();
+            }
+            // the rollback released the rows; find the one that breaks the batch
+            log.warn("Transfer batch {}-{} rolled back, retrying one by one: {}", claimed.get(0).id(),
+                    claimed.get(claimed.size() - 1).id(), e.getMessage());
+            for (QueuedTransfer request : claimed) {
+                List<QueuedTransfer> single = new ArrayList<>();
+                try {
+                    apply(SELECT_ONE, request.id(), single);
+                } catch (RuntimeException singleFailure) {
+                    markFailed(single, singleFailure);
+                }
+            }
+            return claimed.size();
+        }
+    }
+
+    private int apply(String query, Object argument, List<QueuedTransfer> claimed) {
+        Integer count = transactionTemplate.execute(status -> {
+            claimed.addAll(jdbcTemplate.query(query, ROW_MAPPER, argument));
+            if (claimed.isEmpty()) {
+                return 0;
+            }
+
+            long started = System.nanoTime();
+            TreeSet<Long> cardIds = new TreeSet<>();
+            for (QueuedTransfer request : claimed) {
+                cardIds.add(request.fromCardId());
+                cardIds.add(request.toCardId());
+            }
+            Map<Long, Card> cards = cardRepository.lockAllForUpdate(cardIds).stream()
+                    .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+            LocalDateTime now = LocalDateTime.now();
+            List<Outcome> outcomes = new ArrayList<>(claimed.size());
+            for (QueuedTransfer request : claimed) {
+                outcomes.add(applyOne(request, cards));
+            }
+            jdbcTemplate.batchUpdate(MARK_PROCESSED, outcomes, outcomes.size(), (ps, outcome) -> {
+                ps.setString(1, outcome.transactionId() != null ? "COMPLETED" : "FAILED");
+                ps.setObject(2, outcome.transactionId());
+                ps.setString(3, outcome.error());
+                ps.setTimestamp(4, Timestamp.valueOf(now));
+                ps.setLong(5, outcome.requestId());
+            });
+
+            batchTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            batchSizes.record(claimed.size());
+            for (QueuedTransfer request : claimed) {
+                waitTimer.record(Duration.between(request.createdAt(), now));
+            }
+            for (Outcome outcome : outcomes) {
+                (outcome.transactionId() != null ? completed : failed).increment();
+            }
+            return claimed.size();
+        });
+        return count != null ? count : 0;
+    }
+
+    private Outcome applyOne(QueuedTransfer request, Map<Long, Card> cards) {
+        Card fromCard = cards.get(request.fromCardId());
+        Card toCard = cards.get(request.toCardId());
+        if (fromCard == null || toCard == null) {
+            return new Outcome(request.id(), null, "Card not found");
+        }
+        // ownership was checked on acceptance, but a card may have changed hands since
+        if (!fromCard.getUser().getId().equals(request.userId())) {
+            return new Outcome(request.id(), null, "Access denied to source card");
+        }
+        try {
+            Transaction transaction = transactionService.applyLocked(Transaction.builder()
+                    .fromCard(fromCard)
+                    .toCard(toCard)
+                    .amount(request.amount())
+                    .description(request.description())
+                    .build());
+            return new Outcome(request.id(), transaction.getId(), null);
+        } catch (BusinessException e) {
+            return new Outcome(request.id(), null, truncate(e.getMessage()));
+        }
+    }
+
+    private void markFailed(List<QueuedTransfer> requests, RuntimeException e) {
+        for (QueuedTransfer request : requests) {
+            log.error("Transfer request {} failed: {}", request.id(), e.getMessage());
+            jdbcTemplate.update(MARK_FAILED, truncate("Processing failed: " + e.getMessage()),
+                    LocalDateTime.now(), request.id());
+            failed.increment();
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(Math.max(pollMillis, 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    record QueuedTransfer(long id, long userId, long fromCardId, long toCardId, BigDecimal amount,
+                          String description, LocalDateTime createdAt) {
+    }
+
+    private record Outcome(long requestId, Long transactionId, String error) {
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserBalanceResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.CardMasker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Per-user snapshots behind GET /api/cards/balance. Card writes made through the services
+// are applied to a cached snapshot after commit, the TTL only bounds how long a write that
+// bypassed the services can stay invisible. In verify mode every hit is also compared
+// with the database and divergence is logged and counted.
+@Component
+@Slf4j
+public class UserBalanceCache implements InvalidatableCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final boolean verify;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+
+    // access-ordered, guarded by itself
+    private final Map<Long, Entry> entries;
+
+    public UserBalanceCache(MeterRegistry meterRegistry,
+                            @Value("${app.cache.balance.max-entries:10000}") int maxEntries,
+                            @Value("${app.cache.balance.ttl-ms:60000}") long ttlMillis,
+                            @Value("${app.cache.balance.verify:false}") boolean verify) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.verify = verify;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > UserBalanceCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        Gauge.builder("bankcards.balance.cache.size", this, UserBalanceCache::size)
+                .register(meterRegistry);
+        FunctionCounter.builder("bankcards.balance.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("bankcards.balance.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("bankcards.balance.cache.evictions", evictions, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("bankcards.balance.cache.mismatches", mismatches, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    public UserBalanceResponse get(Long userId, Supplier<List<Card>> loader) {
+        Map<Long, CardEntry> cached = null;
+        long version;
+        synchronized (entries) {
+            Entry entry = entries.computeIfAbsent(userId, id -> new Entry());
+            if (entry.cards != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+                hits.incrementAndGet();
+                if (!verify) {
+                    return toResponse(entry.cards);
+                }
+                cached = entry.cards;
+            } else {
+                misses.incrementAndGet();
+            }
+            version = entry.version;
+        }
+
+        Map<Long, CardEntry> loaded = new LinkedHashMap<>();
+        for (Card card : loader.get()) {
+            loaded.put(card.getId(), CardEntry.of(card));
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            // a write committed while we were reading, our copy may already be stale
+            if (entry != null && entry.version == version) {
+                if (cached != null && !sameBalances(cached, loaded)) {
+                    mismatches.incrementAndGet();
+                    log.warn("Balance cache for user {} diverged from the database", userId);
+                }
+                entry.cards = loaded;
+                entry.loadedAt = System.nanoTime();
+            }
+        }
+        return toResponse(loaded);
+    }
+
+    public void cardChanged(Card card) {
+        Long userId = card.getUser().getId();
+        Long cardId = card.getId();
+        // built after commit, when the flush has bumped the version
+        afterCommit(() -> apply(userId, cardId, CardEntry.of(card)));
+    }
+
+    public void cardRemoved(Long userId, Long cardId) {
+        afterCommit(() -> apply(userId, cardId, null));
+    }
+
+    // for writes made in SQL, where the affected users are not known
+    public void invalidateAll() {
+        afterCommit(this::evictAll);
+    }
+
+    @Override
+    public void evict(Region region, long userId) {
+        if (region != Region.BALANCE) {
+            return;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                entry.version++;
+                entry.cards = null;
+            }
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                entry.version++;
+                entry.cards = null;
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getMismatchCount() {
+        return mismatches.get();
+    }
+
+    private void apply(Long userId, Long cardId, CardEntry update) {
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                return;
+            }
+            entry.version++;
+            if (entry.cards == null) {
+                return;
+            }
+
+            CardEntry current = entry.cards.get(cardId);
+            if (update != null && current != null && update.isOlderThan(current)) {
+                // commits of two transfers on the same card finished out of order
+                return;
+            }
+
+            Map<Long, CardEntry> cards = new LinkedHashMap<>(entry.cards);
+            if (update == null) {
+                cards.remove(cardId);
+            } else {
+                cards.put(cardId, update);
+            }
+            entry.cards = cards;
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static boolean sameBalances(Map<Long, CardEntry> cached, Map<Long, CardEntry> loaded) {
+        if (!cached.keySet().equals(loaded.keySet())) {
+            return false;
+        }
+        for (Map.Entry<Long, CardEntry> e : cached.entrySet()) {
+            UserBalanceResponse.CardBalance a = e.getValue().balance;
+            UserBalanceResponse.CardBalance b = loaded.get(e.getKey()).balance;
+            if (a.getBalance().compareTo(b.getBalance()) != 0
+                    || a.getAvailableBalance().compareTo(b.getAvailableBalance()) != 0
+                    || !Objects.equals(a.getStatus(), b.getStatus())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static UserBalanceResponse toResponse(Map<Long, CardEntry> cards) {
+        List<UserBalanceResponse.CardBalance> balances = cards.values().stream()
+                .map(entry -> entry.balance)
+                .toList();
+        BigDecimal total = balances.stream()
+                .map(UserBalanceResponse.CardBalance::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return new UserBalanceResponse(total, balances);
+    }
+
+    private static class Entry {
+        private Map<Long, CardEntry> cards;
+        private long loadedAt;
+        private long version;
+    }
+
+    private record CardEntry(UserBalanceResponse.CardBalance balance, Long version) {
+
+        static CardEntry of(Card card) {
+            return new CardEntry(new UserBalanceResponse.CardBalance(
+                    card.getId(),
+                    CardMasker.maskCardNumber(card.getCardNumber()),
+                    card.getTotalBalance(),
+                    card.getAvailableBalance(),
+                    card.getStatus().name()
+            ), card.getVersion());
+        }
+
+        boolean isOlderThan(CardEntry other) {
+            return version != null && other.version != null && version < other.version;
+        }
+    }
+}
@@ -20,6 +20,7 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CacheInvalidationBus cacheInvalidationBus;
 
     @Transactional
     public User createUser(User user) {
@@ -36,22 +37,26 @@ public class UserService {
         return savedUser;
     }
 
+    @Transactional(readOnly = true)
     public boolean existsByUsername(String username) {
         return userRepository.existsByUsername(username);
     }
 
+    @Transactional(readOnly = true)
     public User findByUsername(String username) {
         log.info("Finding user by username: {}", username);
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
     }
 
+    @Transactional(readOnly = true)
     public User findById(Long id) {
         log.info("Finding user by id: {}", id);
         return userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
     }
 
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         log.info("Getting all users");
         return userRepository.findAll();
@@ -69,6 +74,7 @@ public class UserService {
         }
 
         User savedUser = userRepository.save(existingUser);
+        cacheInvalidationBus.userChanged(savedUser.getId());
         log.info("User updated successfully: {}", savedUser.getUsername());
 
         return savedUser;
@@ -83,9 +89,11 @@ public class UserService {
         }
 
         userRepository.deleteById(id);
+        cacheInvalidationBus.userChanged(id);
         log.info("User deleted successfully: {}", id);
     }
 
+    @Transactional(readOnly = true)
     public List<User> getUsersByRole(User.Role role) {
         log.info("Getting users by role: {}", role);
         return userRepository.findAll().stream()
@@ -0,0 +1,30 @@
+package com.example.bankcards.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// a burst of transfers from one card within 10 minutes
+@Component
+@Order(3)
+public class VelocityRule implements FraudRule {
+
+    private final int points;
+    private final int maxTransfers;
+
+    public VelocityRule(@Value("${app.fraud.rules.velocity.points:40}") int points,
+                        @Value("${app.fraud.rules.velocity.max-transfers:5}") int maxTransfers) {
+        this.points = points;
+        this.maxTransfers = maxTransfers;
+    }
+
+    @Override
+    public String name() {
+        return "velocity";
+    }
+
+    @Override
+    public int score(Transfer transfer, FraudFeatures features) {
+        return features.recentTransfers(transfer.timeMillis()) >= maxTransfers ? points : 0;
+    }
+}
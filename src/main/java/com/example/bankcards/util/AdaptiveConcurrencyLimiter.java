@@ -0,0 +1,111 @@
+package com.example.bankcards.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Gradient-style concurrency limit: the limit follows the ratio between the long-term
+// (baseline) latency and the latest sample, so it shrinks as soon as the database slows
+// down and grows back by roughly sqrt(limit) while latency stays near the baseline.
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int LONG_WINDOW = 100;
+    private static final int SLOWDOWN_WINDOW = 10_000;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile double limit;
+    private double longRttNanos;
+    private int slowSamples;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limiter bounds: min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void onSuccess(long rttNanos) {
+        int inflightAtCompletion = inflight.getAndDecrement();
+        if (rttNanos <= 0) {
+            return;
+        }
+        synchronized (this) {
+            if (longRttNanos == 0) {
+                longRttNanos = rttNanos;
+            } else {
+                slowSamples = rttNanos > tolerance * longRttNanos ? slowSamples + 1 : 0;
+                // the baseline holds during a slowdown, even a slow creep would call the slow latency
+                // normal and let the limit grow back while the database still struggles; only a
+                // slowdown lasting SLOWDOWN_WINDOW samples in a row is taken as the new normal
+                if (slowSamples == 0 || slowSamples >= SLOWDOWN_WINDOW) {
+                    longRttNanos = longRttNanos * (LONG_WINDOW - 1) / LONG_WINDOW + (double) rttNanos / LONG_WINDOW;
+                }
+            }
+            // let the baseline recover quickly once a latency spike is over
+            if (longRttNanos / rttNanos > 2) {
+                longRttNanos *= 0.95;
+            }
+
+            double currentLimit = limit;
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / rttNanos));
+            if (gradient >= 1.0 && inflightAtCompletion < currentLimit / 2) {
+                // traffic does not use the current limit, so there is nothing to learn from it
+                return;
+            }
+
+            double newLimit = currentLimit * gradient + Math.sqrt(currentLimit);
+            newLimit = currentLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            limit = clamp(newLimit);
+        }
+    }
+
+    public void onDropped() {
+        inflight.decrementAndGet();
+        synchronized (this) {
+            limit = clamp(limit * BACKOFF_RATIO);
+        }
+    }
+
+    public void onIgnore() {
+        inflight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
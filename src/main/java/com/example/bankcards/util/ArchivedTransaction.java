@@ -0,0 +1,21 @@
+package com.example.bankcards.util;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One archived transaction as stored in a segment file. Every transaction is written
+// twice, keyed by its source and by its destination card, so a card lookup is a single
+// range scan. Card numbers stay encrypted exactly as they are in the cards table.
+public record ArchivedTransaction(
+        long cardId,
+        long id,
+        long fromCardId,
+        long toCardId,
+        String fromCardNumber,
+        String toCardNumber,
+        BigDecimal amount,
+        String status,
+        String description,
+        LocalDateTime createdAt,
+        LocalDateTime processedAt) {
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads CSV one record at a time, so memory does not grow with the input: comma-separated
+// fields, double quotes around a field allow commas and line breaks in it, "" inside quotes
+// is a quote. Lines end with LF or CRLF. Records longer than maxRecordLength are rejected.
+public class CsvReader implements Closeable {
+
+    private static final int END = -1;
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private int peeked = NONE;
+    private long line = 1;
+    private long recordLine;
+
+    public CsvReader(Reader reader, int maxRecordLength) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 64 * 1024);
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    // the fields of the next record, null at the end of the input
+    public List<String> next() throws IOException {
+        int c = read();
+        // blank lines between records are skipped
+        while (c == '\r' || c == '\n') {
+            if (c == '\n') {
+                line++;
+            }
+            c = read();
+        }
+        if (c == END) {
+            return null;
+        }
+        recordLine = line;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int length = 0;
+        boolean quoted = false;
+        while (true) {
+            if (++length > maxRecordLength) {
+                throw new IOException("Record at line " + recordLine + " is longer than " + maxRecordLength + " characters");
+            }
+            if (quoted) {
+                if (c == END) {
+                    throw new IOException("Unclosed quote in record at line " + recordLine);
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(following);
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == END) {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n') {
+                        unread(following);
+                    }
+                }
+                if (c != END) {
+                    line++;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    // line of the input where the last record started, from 1
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (peeked != NONE) {
+            int c = peeked;
+            peeked = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        peeked = c;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.bankcards.util;
+
+// Luhn (mod 10) check digits of card numbers
+public final class Luhn {
+
+    private Luhn() {
+    }
+
+    // the digit to append to digits so that the whole number passes the check
+    public static int checkDigit(CharSequence digits) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            sum += weighted(digits.charAt(i) - '0', doubled);
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    public static boolean isValid(CharSequence number) {
+        if (number == null || number.length() < 2) {
+            return false;
+        }
+        int sum = 0;
+        boolean doubled = false;
+        for (int i = number.length() - 1; i >= 0; i--) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            sum += weighted(c - '0', doubled);
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+
+    private static int weighted(int digit, boolean doubled) {
+        if (!doubled) {
+            return digit;
+        }
+        int value = digit * 2;
+        return value > 9 ? value - 9 : value;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.util;
+
+import java.time.LocalDateTime;
+
+// An outbox row as handed to a sink; payload is the JSON written by OutboxService.
+public record OutboxMessage(long id,
+                            String aggregateType,
+                            long aggregateId,
+                            String eventType,
+                            String payload,
+                            LocalDateTime createdAt) {
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.util;
+
+import java.util.Arrays;
+
+// Sum over the last buckets * bucketMillis milliseconds, kept in a ring of fixed buckets, so
+// the window slides by whole buckets. A bucket left over from an earlier lap of the ring is
+// reset when it is written and ignored when it is read. Not thread-safe.
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final long[] sums;
+    private final long[] epochs;
+
+    public SlidingWindowCounter(int buckets, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.sums = new long[buckets];
+        this.epochs = new long[buckets];
+        Arrays.fill(epochs, Long.MIN_VALUE);
+    }
+
+    public void add(long timeMillis, long value) {
+        long epoch = Math.floorDiv(timeMillis, bucketMillis);
+        int slot = (int) Math.floorMod(epoch, (long) sums.length);
+        if (epochs[slot] != epoch) {
+            if (epochs[slot] > epoch) {
+                // older than anything the ring still holds
+                return;
+            }
+            epochs[slot] = epoch;
+            sums[slot] = 0;
+        }
+        sums[slot] += value;
+    }
+
+    public long sum(long nowMillis) {
+        long current = Math.floorDiv(nowMillis, bucketMillis);
+        long oldest = current - sums.length + 1;
+        long total = 0;
+        for (int i = 0; i < sums.length; i++) {
+            if (epochs[i] >= oldest && epochs[i] <= current) {
+                total += sums[i];
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.bankcards.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.example.bankcards.util.TransactionSegmentWriter.FOOTER_BYTES;
+import static com.example.bankcards.util.TransactionSegmentWriter.INDEX_ENTRY_BYTES;
+import static com.example.bankcards.util.TransactionSegmentWriter.MAGIC;
+
+// Reads segment files written by TransactionSegmentWriter through a read-only memory
+// mapping, so only the index and the blocks of the requested card are paged in.
+public class TransactionSegmentReader {
+
+    public static List<ArchivedTransaction> readCard(Path file, long cardId) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int footer = buffer.limit() - FOOTER_BYTES;
+        if (footer < 0 || buffer.getInt(footer + Long.BYTES + Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a transaction segment: " + file);
+        }
+        long indexOffset = buffer.getLong(footer);
+        int blockCount = buffer.getInt(footer + Long.BYTES);
+
+        // first block whose last card id is not below the requested one
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(entry(indexOffset, mid) + Long.BYTES) < cardId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        List<ArchivedTransaction> result = new ArrayList<>();
+        Inflater inflater = new Inflater();
+        try {
+            for (int i = low; i < blockCount; i++) {
+                int entry = entry(indexOffset, i);
+                if (buffer.getLong(entry) > cardId) {
+                    break;
+                }
+                int blockOffset = (int) buffer.getLong(entry + 2 * Long.BYTES);
+                int compressedLength = buffer.getInt(entry + 3 * Long.BYTES);
+                int rawLength = buffer.getInt(entry + 3 * Long.BYTES + Integer.BYTES);
+                int recordCount = buffer.getInt(entry + 3 * Long.BYTES + 2 * Integer.BYTES);
+
+                byte[] raw = inflate(inflater, buffer.slice(blockOffset, compressedLength), rawLength);
+                readBlock(raw, recordCount, cardId, result);
+            }
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private static int entry(long indexOffset, int i) {
+        return (int) (indexOffset + (long) i * INDEX_ENTRY_BYTES);
+    }
+
+    private static byte[] inflate(Inflater inflater, java.nio.ByteBuffer compressed, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                read += inflater.inflate(raw, read, rawLength - read);
+            }
+            if (read != rawLength) {
+                throw new IOException("Corrupted segment block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted segment block", e);
+        }
+        return raw;
+    }
+
+    private static void readBlock(byte[] raw, int recordCount, long cardId,
+                                  List<ArchivedTransaction> result) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        for (int i = 0; i < recordCount; i++) {
+            long recordCardId = in.readLong();
+            ArchivedTransaction record = new ArchivedTransaction(
+                    recordCardId,
+                    in.readLong(),
+                    in.readLong(),
+                    in.readLong(),
+                    readNullable(in),
+                    readNullable(in),
+                    new BigDecimal(in.readUTF()),
+                    in.readUTF(),
+                    readNullable(in),
+                    readTimestamp(in),
+                    in.readBoolean() ? readTimestamp(in) : null
+            );
+            if (recordCardId == cardId) {
+                result.add(record);
+            } else if (recordCardId > cardId) {
+                return;
+            }
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static LocalDateTime readTimestamp(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bankcards.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Writes an immutable segment file: records sorted by card id, packed into blocks that are
+// deflated independently, followed by a sparse index (one entry per block) and a footer.
+//
+//   [block 0][block 1]...[index: blockCount x INDEX_ENTRY_BYTES][footer: indexOffset, blockCount, MAGIC]
+//
+// The reader maps the file, binary-searches the index and inflates only the blocks that
+// can contain the requested card.
+public class TransactionSegmentWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x42435347;
+    static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    // firstCardId, lastCardId, offset, compressedLength, rawLength, recordCount
+    static final int INDEX_ENTRY_BYTES = 3 * Long.BYTES + 3 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final int blockRecords;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 checksum = new CRC32();
+    private final List<IndexEntry> index = new ArrayList<>();
+
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private final DataOutputStream block = new DataOutputStream(blockBytes);
+    private int blockRecordCount;
+    private long blockFirstCardId;
+    private long lastCardId = Long.MIN_VALUE;
+
+    private long offset;
+    private long recordCount;
+    private boolean closed;
+
+    public TransactionSegmentWriter(Path file, int blockRecords) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.blockRecords = blockRecords;
+    }
+
+    public void append(ArchivedTransaction record) throws IOException {
+        if (record.cardId() < lastCardId) {
+            throw new IllegalArgumentException("Records must be sorted by card id");
+        }
+        if (blockRecordCount == 0) {
+            blockFirstCardId = record.cardId();
+        }
+        lastCardId = record.cardId();
+
+        block.writeLong(record.cardId());
+        block.writeLong(record.id());
+        block.writeLong(record.fromCardId());
+        block.writeLong(record.toCardId());
+        writeNullable(record.fromCardNumber());
+        writeNullable(record.toCardNumber());
+        block.writeUTF(record.amount().toPlainString());
+        block.writeUTF(record.status());
+        writeNullable(record.description());
+        writeTimestamp(record.createdAt());
+        block.writeBoolean(record.processedAt() != null);
+        if (record.processedAt() != null) {
+            writeTimestamp(record.processedAt());
+        }
+
+        recordCount++;
+        if (++blockRecordCount == blockRecords) {
+            flushBlock();
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // CRC32 of everything written, valid after close()
+    public long getChecksum() {
+        return checksum.getValue();
+    }
+
+    public long getSize() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+
+            long indexOffset = offset;
+            ByteBuffer indexBuffer = ByteBuffer.allocate(index.size() * INDEX_ENTRY_BYTES + FOOTER_BYTES);
+            for (IndexEntry entry : index) {
+                indexBuffer.putLong(entry.firstCardId)
+                        .putLong(entry.lastCardId)
+                        .putLong(entry.offset)
+                        .putInt(entry.compressedLength)
+                        .putInt(entry.rawLength)
+                        .putInt(entry.recordCount);
+            }
+            indexBuffer.putLong(indexOffset).putInt(index.size()).putInt(MAGIC);
+            write(indexBuffer.flip());
+            channel.force(true);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockRecordCount == 0) {
+            return;
+        }
+        block.flush();
+        byte[] raw = blockBytes.toByteArray();
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.write(chunk, 0, n);
+        }
+
+        byte[] bytes = compressed.toByteArray();
+        index.add(new IndexEntry(blockFirstCardId, lastCardId, offset, bytes.length, raw.length, blockRecordCount));
+        write(ByteBuffer.wrap(bytes));
+
+        blockBytes.reset();
+        blockRecordCount = 0;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer);
+        }
+    }
+
+    private void writeNullable(String value) throws IOException {
+        block.writeBoolean(value != null);
+        if (value != null) {
+            block.writeUTF(value);
+        }
+    }
+
+    private void writeTimestamp(LocalDateTime value) throws IOException {
+        block.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        block.writeInt(value.getNano());
+    }
+
+    private record IndexEntry(long firstCardId, long lastCardId, long offset,
+                              int compressedLength, int rawLength, int recordCount) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.service.AmountSpikeRule;
+import com.example.bankcards.service.FraudEngine;
+import com.example.bankcards.service.FraudRule;
+import com.example.bankcards.service.RecentlyUnblockedRule;
+import com.example.bankcards.service.RoundAmountRule;
+import com.example.bankcards.service.VelocityRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Latency of one fraud assessment with the default rules against warm per-card features.
+// SampleTime reports percentiles, the budget is 1 ms at p99. Run with main() from the test classpath.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FraudEngineBenchmark {
+
+    private static final int TRANSFERS = 1 << 14;
+
+    @Param({"1000", "100000"})
+    public int cards;
+
+    private FraudEngine engine;
+    private FraudRule.Transfer[] transfers;
+
+    @Setup
+    public void setUp() {
+        List<FraudRule> rules = List.of(
+                new RecentlyUnblockedRule(30, 24),
+                new RoundAmountRule(15, 1000),
+                new VelocityRule(40, 5),
+                new AmountSpikeRule(50, 5, 5.0));
+        engine = new FraudEngine(rules, 40, 80, TimeUnit.MILLISECONDS.toNanos(1), cards);
+
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (long cardId = 1; cardId <= cards; cardId++) {
+            for (int i = 0; i < 20; i++) {
+                engine.record(new FraudRule.Transfer(cardId, 500 + random.nextInt(50_000),
+                        now - TimeUnit.HOURS.toMillis(20 - i), 0));
+            }
+        }
+        transfers = new FraudRule.Transfer[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            long cardId = 1 + random.nextInt(cards);
+            long unblockedAt = random.nextInt(100) == 0 ? now - TimeUnit.HOURS.toMillis(1) : 0;
+            transfers[i] = new FraudRule.Transfer(cardId, 500 + random.nextInt(200_000), now, unblockedAt);
+        }
+    }
+
+    @Benchmark
+    public FraudEngine.Assessment assess() {
+        return engine.assess(next());
+    }
+
+    // the live path: every allowed transfer is learned from after commit
+    @Benchmark
+    @Threads(4)
+    public FraudEngine.Assessment assessAndRecordContended() {
+        FraudRule.Transfer transfer = next();
+        FraudEngine.Assessment assessment = engine.assess(transfer);
+        if (assessment.decision() != FraudEngine.Decision.DENY) {
+            engine.record(transfer);
+        }
+        return assessment;
+    }
+
+    private FraudRule.Transfer next() {
+        return transfers[ThreadLocalRandom.current().nextInt(TRANSFERS)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FraudEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bankcards.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdminBulkheadFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdminBulkheadFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new AdminBulkheadFilter(new ObjectMapper(), meterRegistry, 1, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DataSourceRouteContext.clear();
+    }
+
+    @Test
+    void doFilter_ShouldRejectRequestBeyondMaxConcurrent() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // the only permit is held by a request still running on another thread
+            Future<?> running = executor.submit(() -> {
+                filter.doFilter(adminRequest(), new MockHttpServletResponse(), (request, response) -> {
+                    entered.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                return null;
+            });
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            AtomicBoolean passed = new AtomicBoolean();
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(adminRequest(), response, (req, res) -> passed.set(true));
+
+            assertFalse(passed.get());
+            assertEquals(503, response.getStatus());
+            assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+            assertTrue(response.getContentAsString().contains("Too many concurrent admin requests"));
+            assertEquals(1.0, meterRegistry.get("bankcards.bulkhead.rejections").functionCounter().count());
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        // the permit is back once the running request is done
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(adminRequest(), response, (req, res) -> { });
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void doFilter_ShouldRouteAdminRequestsToAdminPoolAndClearAfterwards() throws Exception {
+        AtomicReference<DataSourceRoute> route = new AtomicReference<>();
+
+        filter.doFilter(adminRequest(), new MockHttpServletResponse(),
+                (request, response) -> route.set(DataSourceRouteContext.get()));
+
+        assertEquals(DataSourceRoute.ADMIN, route.get());
+        assertNull(DataSourceRouteContext.get());
+
+        // a failing request must not leave its route on the pooled thread either
+        FilterChain failing = (request, response) -> {
+            throw new IllegalStateException("boom");
+        };
+        assertThrows(IllegalStateException.class,
+                () -> filter.doFilter(adminRequest(), new MockHttpServletResponse(), failing));
+        assertNull(DataSourceRouteContext.get());
+    }
+
+    @Test
+    void doFilter_ShouldLeaveOtherRequestsOnDefaultRoute() throws Exception {
+        AtomicReference<DataSourceRoute> route = new AtomicReference<>(DataSourceRoute.ADMIN);
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/cards"), new MockHttpServletResponse(),
+                (request, response) -> route.set(DataSourceRouteContext.get()));
+
+        assertNull(route.get());
+    }
+
+    private static MockHttpServletRequest adminRequest() {
+        return new MockHttpServletRequest("GET", "/api/admin/cards");
+    }
+}
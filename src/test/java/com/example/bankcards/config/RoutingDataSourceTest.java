@@ -0,0 +1,147 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.JwtUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+class RoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private DataSource admin;
+    private ReadYourWritesGuard guard;
+    private DataSource dataSource;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        primary = mockDataSource();
+        replica = mockDataSource();
+        admin = mockDataSource();
+        guard = new ReadYourWritesGuard(mock(ObjectProvider.class), 60_000, 1000);
+
+        // wired as in DataSourceConfig
+        RoutingDataSource routingDataSource = new RoutingDataSource(guard);
+        routingDataSource.setTargetDataSources(Map.of(DataSourceRoute.PRIMARY, primary, DataSourceRoute.REPLICA, replica,
+                DataSourceRoute.ADMIN, admin));
+        routingDataSource.setDefaultTargetDataSource(primary);
+        routingDataSource.afterPropertiesSet();
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setTargetDataSource(routingDataSource);
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        proxy.afterPropertiesSet();
+        dataSource = proxy;
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        DataSourceRouteContext.clear();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUseReplica() throws Exception {
+        authenticate(1L);
+
+        runStatement(true);
+
+        verify(replica).getConnection();
+        verify(primary, never()).getConnection();
+    }
+
+    @Test
+    void writeTransaction_ShouldUsePrimary() throws Exception {
+        authenticate(1L);
+
+        runStatement(false);
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUsePrimaryForUserPinnedAfterCommit() throws Exception {
+        authenticate(1L);
+        TransactionTemplate write = new TransactionTemplate(transactionManager);
+        write.executeWithoutResult(status -> {
+            statement();
+            guard.recordWrite(1L);
+        });
+        clearInvocations(primary, replica);
+
+        runStatement(true);
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+
+        // other users still read from the replica
+        authenticate(2L);
+        runStatement(true);
+        verify(replica).getConnection();
+    }
+
+    @Test
+    void adminRoute_ShouldUseAdminPoolForReadsAndWrites() throws Exception {
+        authenticate(1L);
+        DataSourceRouteContext.set(DataSourceRoute.ADMIN);
+
+        runStatement(true);
+        runStatement(false);
+
+        verify(admin, times(2)).getConnection();
+        verify(primary, never()).getConnection();
+        verify(replica, never()).getConnection();
+
+        // once the admin request is done the thread is routed as usual again
+        DataSourceRouteContext.clear();
+        runStatement(false);
+        verify(primary).getConnection();
+    }
+
+    private void runStatement(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        template.executeWithoutResult(status -> statement());
+    }
+
+    // the lazy proxy only picks a target when the first statement is prepared
+    private void statement() {
+        try {
+            DataSourceUtils.getConnection(dataSource).prepareStatement("SELECT 1");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void authenticate(Long userId) {
+        JwtUser principal = new JwtUser(User.builder().id(userId).username("user" + userId).role(User.Role.USER).build());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    private static DataSource mockDataSource() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
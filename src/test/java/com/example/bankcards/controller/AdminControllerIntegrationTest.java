@@ -2,6 +2,10 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AdminCardCreateRequest;
 import com.example.bankcards.dto.AdminAuthRegisterRequest;
+import com.example.bankcards.dto.CardIssuanceRequest;
+import com.example.bankcards.dto.FraudReplayReport;
+import com.example.bankcards.dto.ImportReport;
+import com.example.bankcards.dto.ReconciliationReport;
 import com.example.bankcards.dto.UserCreateRequest;
 import com.example.bankcards.dto.UserUpdateRequest;
 import com.example.bankcards.entity.Card;
@@ -10,8 +14,14 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.JwtUtil;
 import com.example.bankcards.util.CardMasker;
+import com.example.bankcards.service.BalanceReconciliationService;
+import com.example.bankcards.service.BalanceStripeService;
+import com.example.bankcards.service.BulkCardStatusService;
 import com.example.bankcards.service.CardBlockRequestService;
+import com.example.bankcards.service.CardIssuanceService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.FraudReplayService;
+import com.example.bankcards.service.PortfolioImportService;
 import com.example.bankcards.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,10 +42,13 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -61,6 +74,24 @@ class AdminControllerIntegrationTest {
     @MockitoBean
     private UserRepository userRepository;
 
+    @MockitoBean
+    private BalanceReconciliationService balanceReconciliationService;
+
+    @MockitoBean
+    private BalanceStripeService balanceStripeService;
+
+    @MockitoBean
+    private FraudReplayService fraudReplayService;
+
+    @MockitoBean
+    private CardIssuanceService cardIssuanceService;
+
+    @MockitoBean
+    private PortfolioImportService portfolioImportService;
+
+    @MockitoBean
+    private BulkCardStatusService bulkCardStatusService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -447,6 +478,163 @@ class AdminControllerIntegrationTest {
                 .andExpect(jsonPath("$.status").value("ACTIVE"));
     }
 
+    @Test
+    void setCardStripes_ShouldReturnCardWithStripedBalance() throws Exception {
+        Card stripedCard = Card.builder()
+                .id(1L)
+                .cardNumber("1234567890123456")
+                .owner("Test Owner")
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Card.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(100))
+                .stripedBalance(BigDecimal.valueOf(25))
+                .balanceStripes(8)
+                .user(testUser)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+
+        when(balanceStripeService.setStripes(1L, 8)).thenReturn(stripedCard);
+
+        mockMvc.perform(put("/api/admin/cards/1/stripes")
+                        .param("count", "8")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(125));
+    }
+
+    @Test
+    void setCardLimits_ShouldReturnCardWithLimits() throws Exception {
+        Card limitedCard = Card.builder()
+                .id(1L)
+                .cardNumber("1234567890123456")
+                .owner("Test Owner")
+                .expiryDate(LocalDate.now().plusYears(1))
+                .status(Card.CardStatus.ACTIVE)
+                .balance(BigDecimal.valueOf(100))
+                .dailyLimit(new BigDecimal("500.00"))
+                .maxTransfersPerHour(10)
+                .user(testUser)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+
+        when(cardService.updateLimits(eq(1L), any(), isNull(), eq(10))).thenReturn(limitedCard);
+
+        mockMvc.perform(put("/api/admin/cards/1/limits")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"dailyLimit\": 500.00, \"maxTransfersPerHour\": 10}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dailyLimit").value(500.00))
+                .andExpect(jsonPath("$.monthlyLimit").doesNotExist())
+                .andExpect(jsonPath("$.maxTransfersPerHour").value(10));
+    }
+
+    @Test
+    void setCardLimits_ShouldRejectNonPositiveLimit() throws Exception {
+        mockMvc.perform(put("/api/admin/cards/1/limits")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"dailyLimit\": 0}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void issueCards_ShouldReturnIssuedCount() throws Exception {
+        when(cardIssuanceService.issue(eq(1L), eq("400000"), eq(500), eq("Test Owner"), any(LocalDate.class),
+                any(BigDecimal.class))).thenReturn(new CardIssuanceService.Result(500, 1, 120));
+        String requestBody = objectMapper.writeValueAsString(new CardIssuanceRequest(
+                1L, "400000", 500, "Test Owner", LocalDate.now().plusYears(3), null));
+
+        mockMvc.perform(post("/api/admin/cards/bulk")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.issued").value(500))
+                .andExpect(jsonPath("$.regenerated").value(1));
+    }
+
+    @Test
+    void issueCards_ShouldRejectInvalidBin() throws Exception {
+        String requestBody = objectMapper.writeValueAsString(new CardIssuanceRequest(
+                1L, "40AB", 10, "Test Owner", LocalDate.now().plusYears(3), null));
+
+        mockMvc.perform(post("/api/admin/cards/bulk")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importPortfolio_ShouldReturnReport() throws Exception {
+        when(portfolioImportService.importCsv(any())).thenReturn(new ImportReport(3, 1, 2, 1, false,
+                List.of(new ImportReport.RowError(4, "Card number must be exactly 16 digits")), 15));
+
+        mockMvc.perform(post("/api/admin/import")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken)
+                        .contentType("text/csv")
+                        .content("username,password,card_number,owner,expiry_date,balance\n"
+                                + "partner1,secret1,4000000000000002,Partner One,2030-01-31,10.00\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardsCreated").value(2))
+                .andExpect(jsonPath("$.failedRows").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(4));
+    }
+
+    @Test
+    void importPortfolio_ShouldBeForbiddenForUser() throws Exception {
+        mockMvc.perform(post("/api/admin/import")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + userJwtToken)
+                        .contentType("text/csv")
+                        .content("partner1,secret1,4000000000000002,Partner One,2030-01-31,10.00\n"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void blockCards_ShouldReturnCounts() throws Exception {
+        when(bulkCardStatusService.block(new BulkCardStatusService.Selection(null, null, "400000"), 1L))
+                .thenReturn(new BulkCardStatusService.Result(1200, 1150, 3, 850));
+
+        mockMvc.perform(put("/api/admin/cards/bulk/block")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bin\": \"400000\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(1200))
+                .andExpect(jsonPath("$.updated").value(1150))
+                .andExpect(jsonPath("$.requestsApproved").value(3));
+    }
+
+    @Test
+    void approveCardBlockRequests_ShouldReturnBadRequestWithoutSelection() throws Exception {
+        when(bulkCardStatusService.approveRequests(any(BulkCardStatusService.Selection.class), eq(1L)))
+                .thenThrow(new IllegalArgumentException("Select cards by ids, user or BIN"));
+
+        mockMvc.perform(put("/api/admin/card-block-requests/bulk/approve")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void replayFraudRules_ShouldReturnReport() throws Exception {
+        when(fraudReplayService.replay(LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 7)))
+                .thenReturn(new FraudReplayReport(120, 110, 8, 2, Map.of("amount-spike", 9L), 4, 40, 35));
+
+        mockMvc.perform(post("/api/admin/fraud/replay")
+                        .param("from", "2026-03-01")
+                        .param("to", "2026-03-07")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transfers").value(120))
+                .andExpect(jsonPath("$.denied").value(2))
+                .andExpect(jsonPath("$.ruleHits['amount-spike']").value(9));
+    }
+
     @Test
     void deleteCard_ShouldDeleteCardSuccessfullyForAdmin() throws Exception {
         mockMvc.perform(delete("/api/admin/cards/1")
@@ -657,4 +845,36 @@ class AdminControllerIntegrationTest {
                         .content(invalidRequest))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void getReconciliationReport_ShouldReturnLastReport() throws Exception {
+        ReconciliationReport report = new ReconciliationReport("COMPLETED", "2025-03-01T04:30", "2025-03-01T04:31",
+                60000L, 2L, 1L, false, List.of(new ReconciliationReport.Mismatch(7L,
+                new BigDecimal("100.00"), new BigDecimal("90.00"), new BigDecimal("10.00"))));
+        when(balanceReconciliationService.getLastReport()).thenReturn(Optional.of(report));
+
+        mockMvc.perform(get("/api/admin/reconciliation")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mismatchCount").value(1))
+                .andExpect(jsonPath("$.mismatches[0].cardId").value(7));
+    }
+
+    @Test
+    void getReconciliationReport_ShouldReturnNotFoundBeforeFirstRun() throws Exception {
+        when(balanceReconciliationService.getLastReport()).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/admin/reconciliation")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void startReconciliation_ShouldReturnConflictWhenRunning() throws Exception {
+        when(balanceReconciliationService.startReconcile()).thenReturn(false);
+
+        mockMvc.perform(post("/api/admin/reconciliation")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminJwtToken))
+                .andExpect(status().isConflict());
+    }
 }
@@ -1,6 +1,9 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardBlockRequestDto;
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSummaryResponse;
+import com.example.bankcards.dto.UserBalanceResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardBlockRequest;
 import com.example.bankcards.entity.User;
@@ -8,8 +11,10 @@ import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.CardBlockRequestService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSummaryService;
 import com.example.bankcards.security.JwtUtil;
 import com.example.bankcards.util.CardMasker;
+import com.example.bankcards.util.EntityTags;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -34,9 +39,12 @@ import java.util.Arrays;
 import java.util.Optional;
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -55,6 +63,9 @@ class CardControllerIntegrationTest {
     @MockitoBean
     private CardBlockRequestService cardBlockRequestService;
 
+    @MockitoBean
+    private CardSummaryService cardSummaryService;
+
     @MockitoBean
     private UserRepository userRepository;
 
@@ -99,8 +110,8 @@ class CardControllerIntegrationTest {
 
     @Test
     void getUserCards_ShouldReturnPaginatedUserCards() throws Exception {
-        List<Card> cards = Arrays.asList(testCard);
-        Page<Card> cardPage = new PageImpl<>(cards, PageRequest.of(0, 20), 1);
+        List<CardResponse> cards = Arrays.asList(new CardResponse(testCard));
+        Page<CardResponse> cardPage = new PageImpl<>(cards, PageRequest.of(0, 20), 1);
         when(cardService.getUserCardsPaginated(anyLong(), anyInt(), anyInt(), anyString(), anyString())).thenReturn(cardPage);
         String maskedCardNumber = CardMasker.maskCardNumber(testCard.getCardNumber());
 
@@ -127,6 +138,31 @@ class CardControllerIntegrationTest {
                 .andExpect(jsonPath("$.cardNumber").value(maskedCardNumber));
     }
 
+    @Test
+    void getCard_ShouldReturnETagForOwner() throws Exception {
+        when(cardService.getCardVersion(1L, 1L)).thenReturn(Optional.of(3L));
+        when(cardService.getCardById(1L)).thenReturn(testCard);
+        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
+
+        mockMvc.perform(get("/api/cards/1")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, EntityTags.of("card", 1L, 3L)));
+    }
+
+    @Test
+    void getCard_ShouldReturnNotModifiedWithoutLoadingCard() throws Exception {
+        when(cardService.getCardVersion(1L, 1L)).thenReturn(Optional.of(3L));
+
+        mockMvc.perform(get("/api/cards/1")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                        .header(HttpHeaders.IF_NONE_MATCH, EntityTags.of("card", 1L, 3L)))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(cardService, never()).getCardById(anyLong());
+    }
+
     @Test
     void getCard_ShouldReturnForbiddenWhenNotOwned() throws Exception {
         when(cardService.getCardById(1L)).thenReturn(testCard);
@@ -179,12 +215,24 @@ class CardControllerIntegrationTest {
                 .andExpect(jsonPath("$.error").value("Access denied"));
     }
 
+    @Test
+    void getUserBalance_ShouldReturnNotModifiedWhenCardsUnchanged() throws Exception {
+        when(cardService.getUserCardsVersion(1L)).thenReturn("1:1:4");
+
+        mockMvc.perform(get("/api/cards/balance")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                        .header(HttpHeaders.IF_NONE_MATCH, EntityTags.of("balance", "1:1:4")))
+                .andExpect(status().isNotModified());
+
+        verify(cardService, never()).getUserBalance(anyLong());
+    }
+
     @Test
     void getUserBalance_ShouldReturnUserBalance() throws Exception {
-        BigDecimal totalBalance = BigDecimal.valueOf(100);
-        List<Card> userCards = Arrays.asList(testCard);
-        when(cardService.getUserTotalBalance(1L)).thenReturn(totalBalance);
-        when(cardService.getUserCards(1L)).thenReturn(userCards);
+        UserBalanceResponse balance = new UserBalanceResponse(BigDecimal.valueOf(100), List.of(
+                new UserBalanceResponse.CardBalance(1L, CardMasker.maskCardNumber(testCard.getCardNumber()),
+                        BigDecimal.ZERO, BigDecimal.ZERO, "ACTIVE")));
+        when(cardService.getUserBalance(1L)).thenReturn(balance);
 
         mockMvc.perform(get("/api/cards/balance")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
@@ -195,4 +243,43 @@ class CardControllerIntegrationTest {
                 .andExpect(jsonPath("$.cardBalances[0].balance").value(0))
                 .andExpect(jsonPath("$.cardBalances[0].status").value("ACTIVE"));
     }
+
+    @Test
+    void getCardSummary_ShouldReturnSummaryForOwnedCard() throws Exception {
+        CardSummaryResponse summary = new CardSummaryResponse(1L, "2025-03-01", "2025-03-31",
+                BigDecimal.valueOf(50), BigDecimal.valueOf(25), 4, BigDecimal.valueOf(975), List.of(
+                new CardSummaryResponse.DaySummary("2025-03-05", BigDecimal.valueOf(50), BigDecimal.valueOf(25),
+                        4, BigDecimal.valueOf(975))));
+        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
+        when(cardSummaryService.getCardSummary(1L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)))
+                .thenReturn(summary);
+
+        mockMvc.perform(get("/api/cards/1/summary")
+                        .param("from", "2025-03-01")
+                        .param("to", "2025-03-31")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardId").value(1))
+                .andExpect(jsonPath("$.totalDebits").value(50))
+                .andExpect(jsonPath("$.transactionCount").value(4))
+                .andExpect(jsonPath("$.days[0].date").value("2025-03-05"));
+    }
+
+    @Test
+    void getCardSummary_ShouldReturnForbiddenWhenCardNotOwned() throws Exception {
+        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(false);
+
+        mockMvc.perform(get("/api/cards/1/summary")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(status().isForbidden());
+
+        verify(cardSummaryService, never()).getCardSummary(anyLong(), any(), any());
+    }
+
+    @Test
+    void streamUpdates_ShouldOpenEventStream() throws Exception {
+        mockMvc.perform(get("/api/cards/stream")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(request().asyncStarted());
+    }
 }
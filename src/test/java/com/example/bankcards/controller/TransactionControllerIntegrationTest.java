@@ -3,12 +3,14 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.TransactionCreateRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.TransferRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.JwtUtil;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.service.TransferQueueService;
 import com.example.bankcards.util.CardMasker;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,6 +33,8 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -49,6 +53,9 @@ class TransactionControllerIntegrationTest {
     @MockitoBean
     private CardService cardService;
 
+    @MockitoBean
+    private TransferQueueService transferQueueService;
+
     @MockitoBean
     private UserRepository userRepository;
 
@@ -189,7 +196,7 @@ class TransactionControllerIntegrationTest {
     @Test
     void getUserTransactions_ShouldReturnUserTransactions() throws Exception {
         List<Transaction> transactions = Arrays.asList(testTransaction);
-        when(transactionService.getUserTransactions(1L)).thenReturn(transactions);
+        when(transactionService.getUserTransactions(1L, null, null)).thenReturn(transactions);
 
         mockMvc.perform(get("/api/transactions")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
@@ -199,11 +206,25 @@ class TransactionControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].amount").value(100));
     }
 
+    @Test
+    void getUserTransactions_ShouldPassDateRange() throws Exception {
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 1, 31);
+        when(transactionService.getUserTransactions(1L, from, to)).thenReturn(List.of(testTransaction));
+
+        mockMvc.perform(get("/api/transactions")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-01-31")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1));
+    }
+
     @Test
     void getCardTransactions_ShouldReturnCardTransactions() throws Exception {
         List<Transaction> transactions = Arrays.asList(testTransaction);
         when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
-        when(transactionService.getCardTransactions(1L)).thenReturn(transactions);
+        when(transactionService.getCardTransactions(1L, null, null)).thenReturn(transactions);
 
         mockMvc.perform(get("/api/transactions/card/1")
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
@@ -282,4 +303,91 @@ class TransactionControllerIntegrationTest {
                         .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
                 .andExpect(status().isForbidden());
     }
+
+    @Test
+    void authorizeTransaction_ShouldReturnPendingTransaction() throws Exception {
+        when(cardService.getCardByNumber("1234567890123456")).thenReturn(Optional.of(fromCard));
+        when(cardService.getCardByNumber("9876543210987654")).thenReturn(Optional.of(toCard));
+        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
+        when(cardService.isCardOwnedByUser(2L, 1L)).thenReturn(true);
+        testTransaction.setStatus(Transaction.TransactionStatus.PENDING);
+        testTransaction.setProcessedAt(null);
+        testTransaction.setHoldExpiresAt(LocalDateTime.now().plusMinutes(30));
+        when(transactionService.authorizeTransaction(any(Transaction.class))).thenReturn(testTransaction);
+
+        String requestBody = objectMapper.writeValueAsString(new TransactionCreateRequest(
+                "1234567890123456", "9876543210987654", BigDecimal.valueOf(100), "Test transaction"
+        ));
+
+        mockMvc.perform(post("/api/transactions/authorize")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.holdExpiresAt").exists());
+    }
+
+    @Test
+    void captureTransaction_ShouldSettleOwnTransaction() throws Exception {
+        when(transactionService.getTransactionById(1L)).thenReturn(testTransaction);
+        when(transactionService.captureTransaction(1L)).thenReturn(testTransaction);
+
+        mockMvc.perform(post("/api/transactions/1/capture")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    void cancelTransaction_ShouldRejectForeignTransaction() throws Exception {
+        User otherUser = User.builder().id(2L).username("other").role(User.Role.USER).build();
+        fromCard.setUser(otherUser);
+        when(transactionService.getTransactionById(1L)).thenReturn(testTransaction);
+
+        mockMvc.perform(post("/api/transactions/1/cancel")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(status().isForbidden());
+
+        verify(transactionService, never()).cancelTransaction(1L);
+    }
+
+    @Test
+    void queueTransaction_ShouldAcceptTransferIntoQueue() throws Exception {
+        when(transferQueueService.isEnabled()).thenReturn(true);
+        when(cardService.getCardByNumber("1234567890123456")).thenReturn(Optional.of(fromCard));
+        when(cardService.getCardByNumber("9876543210987654")).thenReturn(Optional.of(toCard));
+        when(cardService.isCardOwnedByUser(1L, 1L)).thenReturn(true);
+        when(cardService.isCardOwnedByUser(2L, 1L)).thenReturn(true);
+        when(transferQueueService.enqueue(any(Transaction.class))).thenReturn(TransferRequest.builder()
+                .id(7L).userId(1L).fromCardId(1L).toCardId(2L).amount(BigDecimal.valueOf(100))
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        String requestBody = objectMapper.writeValueAsString(new TransactionCreateRequest(
+                "1234567890123456", "9876543210987654", BigDecimal.valueOf(100), "Test transaction"
+        ));
+
+        mockMvc.perform(post("/api/transactions/async")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/api/transactions/requests/7"))
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+
+        verify(transactionService, never()).createTransaction(any(Transaction.class));
+    }
+
+    @Test
+    void getTransferRequest_ShouldRejectForeignRequest() throws Exception {
+        when(transferQueueService.getRequest(7L)).thenReturn(TransferRequest.builder()
+                .id(7L).userId(2L).fromCardId(3L).toCardId(4L).amount(BigDecimal.valueOf(100))
+                .build());
+
+        mockMvc.perform(get("/api/transactions/requests/7")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtToken))
+                .andExpect(status().isForbidden());
+    }
 }
@@ -0,0 +1,129 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.dto.ReconciliationReport;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BalanceReconciliationServiceTest {
+
+    private CardRepository cardRepository;
+    private JdbcTemplate jdbcTemplate;
+    private JobRunner jobRunner;
+    private BalanceReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository = mock(CardRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        jobRunner = mock(JobRunner.class);
+        service = new BalanceReconciliationService(cardRepository, jdbcTemplate,
+                mock(PlatformTransactionManager.class), mock(DatabasePlatform.class), jobRunner,
+                new SimpleMeterRegistry(), true, 10, 2, 10);
+    }
+
+    @Test
+    void checkChunk_ShouldCompareBalanceWithOpeningPlusNetMovements() throws Exception {
+        // card 1: 100 + 50 in - 30 out = 120, matches; card 2: 0 + 10 in = 10, but holds 15
+        rows(" to_card_id", List.of(new Object[]{1L, new BigDecimal("50.00")}, new Object[]{2L, new BigDecimal("10.00")}));
+        rows(" from_card_id", List.<Object[]>of(new Object[]{1L, new BigDecimal("30.00")}));
+        rows("FROM cards", List.of(
+                new Object[]{1L, new BigDecimal("120.00"), new BigDecimal("100.00")},
+                new Object[]{2L, new BigDecimal("15.00"), new BigDecimal("0.00")}));
+
+        BalanceReconciliationService.ChunkResult result = service.checkChunk(1, 10);
+
+        assertEquals(2, result.cards);
+        assertEquals(1, result.mismatchCount);
+        ReconciliationReport.Mismatch mismatch = result.mismatches.get(0);
+        assertEquals(2L, mismatch.getCardId());
+        assertEquals(new BigDecimal("10.00"), mismatch.getExpectedBalance());
+        assertEquals(new BigDecimal("5.00"), mismatch.getDifference());
+    }
+
+    @Test
+    void merge_ShouldCapReportedMismatches() {
+        BalanceReconciliationService.ChunkResult left = new BalanceReconciliationService.ChunkResult();
+        BalanceReconciliationService.ChunkResult right = new BalanceReconciliationService.ChunkResult();
+        left.addMismatch(1L, 100, 0, 2);
+        right.addMismatch(2L, 100, 0, 2);
+        right.addMismatch(3L, 100, 0, 2);
+
+        left.merge(right, 2);
+
+        assertEquals(3, left.mismatchCount);
+        assertEquals(2, left.mismatches.size());
+    }
+
+    @Test
+    void reconcile_ShouldReportEmptyTable() {
+        when(cardRepository.findIdRange()).thenReturn(new CardRepository.CardIdRange() {
+            @Override
+            public Long getMinId() {
+                return null;
+            }
+
+            @Override
+            public Long getMaxId() {
+                return null;
+            }
+        });
+
+        ReconciliationReport report = service.reconcile();
+
+        assertEquals("COMPLETED", report.getStatus());
+        assertEquals(0, report.getCardsChecked());
+        assertTrue(service.getLastReport().isPresent());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void startReconcile_ShouldAcceptOnlyOneRunAtATime() throws Exception {
+        CountDownLatch jobStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jobRunner.run(eq("balance-reconciliation"), any())).thenAnswer(invocation -> {
+            jobStarted.countDown();
+            release.await();
+            return true;
+        });
+
+        assertTrue(service.startReconcile());
+        assertFalse(service.startReconcile());
+        assertNull(service.reconcile());
+
+        assertTrue(jobStarted.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        verify(jobRunner, timeout(5000).times(1)).run(eq("balance-reconciliation"), any());
+    }
+
+    private void rows(String sqlPart, List<Object[]> rows) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn((Long) row[0]);
+                when(rs.getBigDecimal(2)).thenReturn((BigDecimal) row[1]);
+                if (row.length > 2) {
+                    when(rs.getBigDecimal(3)).thenReturn((BigDecimal) row[2]);
+                }
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains(sqlPart), any(RowCallbackHandler.class), any(Object[].class));
+    }
+}
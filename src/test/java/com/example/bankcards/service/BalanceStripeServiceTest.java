@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BalanceStripeServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserBalanceCache userBalanceCache;
+    private BalanceStripeService service;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        userBalanceCache = mock(UserBalanceCache.class);
+        service = new BalanceStripeService(jdbcTemplate, mock(CardRepository.class), mock(EntityCacheInvalidator.class),
+                userBalanceCache, mock(CacheInvalidationBus.class), new SimpleMeterRegistry(), 64);
+
+        card = Card.builder()
+                .id(5L)
+                .balance(new BigDecimal("10.00"))
+                .balanceStripes(4)
+                .user(User.builder().id(1L).build())
+                .build();
+    }
+
+    @Test
+    void stripeFor_ShouldSpreadSourceCardsOverAllStripes() {
+        Set<Integer> used = new HashSet<>();
+        for (long sourceCardId = 1; sourceCardId <= 64; sourceCardId++) {
+            int stripe = BalanceStripeService.stripeFor(sourceCardId, 8);
+            assertTrue(stripe >= 0 && stripe < 8);
+            used.add(stripe);
+        }
+        assertEquals(8, used.size());
+    }
+
+    @Test
+    void credit_ShouldAddToOneStripeAndEvictBalance() {
+        int stripe = BalanceStripeService.stripeFor(7L, 4);
+        when(jdbcTemplate.update(startsWith("UPDATE card_balance_stripes SET amount = amount +"),
+                any(BigDecimal.class), eq(5L), eq(stripe))).thenReturn(1);
+
+        service.credit(card, 7L, new BigDecimal("2.50"));
+
+        assertEquals(new BigDecimal("10.00"), card.getBalance());
+        assertEquals(new BigDecimal("12.50"), card.getTotalBalance());
+        verify(userBalanceCache).evict(InvalidatableCache.Region.BALANCE, 1L);
+    }
+
+    @Test
+    void credit_ShouldFailWhenStripeRowIsMissing() {
+        assertThrows(CardNotFoundException.class, () -> service.credit(card, 7L, BigDecimal.ONE));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consolidate_ShouldMoveLockedStripesIntoBalance() {
+        List<BalanceStripeService.Stripe> stripes = List.of(
+                new BalanceStripeService.Stripe(0, new BigDecimal("3.00")),
+                new BalanceStripeService.Stripe(2, new BigDecimal("4.50")));
+        when(jdbcTemplate.query(contains("FOR UPDATE"), any(RowMapper.class), eq(5L))).thenReturn(stripes);
+        card.setStripedBalance(new BigDecimal("7.50"));
+
+        assertEquals(new BigDecimal("7.50"), service.consolidate(card));
+
+        assertEquals(new BigDecimal("17.50"), card.getBalance());
+        assertEquals(0, card.getStripedBalance().signum());
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE card_balance_stripes SET amount = amount -"), eq(stripes),
+                eq(2), any(ParameterizedPreparedStatementSetter.class));
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.CardNumberAttributeConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BulkCardStatusServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private CardNumberAttributeConverter cardNumberConverter;
+    private OutboxService outboxService;
+    private CardEventStream cardEventStream;
+    private UserBalanceCache userBalanceCache;
+    private CacheInvalidationBus cacheInvalidationBus;
+    private BulkCardStatusService service;
+
+    // rows returned by queries starting with the key
+    private final Map<String, List<Object[]>> rows = new HashMap<>();
+    private final List<String> statements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        cardNumberConverter = mock(CardNumberAttributeConverter.class);
+        outboxService = mock(OutboxService.class);
+        cardEventStream = mock(CardEventStream.class);
+        userBalanceCache = mock(UserBalanceCache.class);
+        cacheInvalidationBus = mock(CacheInvalidationBus.class);
+        DatabasePlatform databasePlatform = mock(DatabasePlatform.class);
+
+        doAnswer(invocation -> {
+            String sql = sql(invocation.getArgument(0));
+            statements.add(sql);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<String, List<Object[]>> entry : rows.entrySet()) {
+                if (sql.startsWith(entry.getKey())) {
+                    for (Object[] row : entry.getValue()) {
+                        handler.processRow(resultSet(row));
+                    }
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class))).thenAnswer(invocation -> {
+            statements.add(sql(invocation.getArgument(0)));
+            return 1;
+        });
+
+        service = new BulkCardStatusService(jdbcTemplate, databasePlatform, cardNumberConverter, outboxService,
+                cardEventStream, mock(EntityManagerFactory.class, RETURNS_DEEP_STUBS), userBalanceCache,
+                cacheInvalidationBus, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 1000, 5);
+    }
+
+    @Test
+    void block_ShouldUpdateLockedCardsAndApprovePendingRequests() {
+        // card 3 is blocked or expired already
+        rows.put("SELECT id, user_id FROM cards WHERE status = 'ACTIVE'",
+                List.of(new Object[]{1L, 10L}, new Object[]{2L, 11L}));
+
+        BulkCardStatusService.Result result = service.block(
+                new BulkCardStatusService.Selection(List.of(3L, 1L, 2L, 1L), null, null), 99L);
+
+        assertEquals(3, result.matched());
+        assertEquals(2, result.updated());
+        assertEquals(1, result.requestsApproved());
+        assertTrue(statements.contains(
+                "UPDATE cards SET status = 'BLOCKED', version = version + 1, updated_at = ? WHERE id IN (?, ?)"));
+        assertTrue(statements.stream().anyMatch(sql -> sql.startsWith("UPDATE card_block_requests")
+                && sql.endsWith("card_id IN (?, ?, ?)")));
+        verify(outboxService).cardsStatusChanged(Map.of(1L, 10L, 2L, 11L), Card.CardStatus.BLOCKED, "ADMIN");
+        verify(cardEventStream).cardsStatusChanged(Map.of(1L, 10L, 2L, 11L), Card.CardStatus.BLOCKED);
+        verify(userBalanceCache).invalidateAll();
+        verify(cacheInvalidationBus).invalidateAll();
+    }
+
+    @Test
+    void unblock_ShouldMatchBinByDecryptedNumber() {
+        when(cardNumberConverter.convertToEntityAttribute("enc-1")).thenReturn("4000001111111111");
+        when(cardNumberConverter.convertToEntityAttribute("enc-2")).thenReturn("5100002222222222");
+        rows.put("SELECT id, card_number FROM cards", List.of(new Object[]{1L, "enc-1"}, new Object[]{2L, "enc-2"}));
+        rows.put("SELECT id, user_id FROM cards WHERE status = 'BLOCKED'", List.<Object[]>of(new Object[]{1L, 10L}));
+
+        BulkCardStatusService.Result result = service.unblock(
+                new BulkCardStatusService.Selection(null, null, "400000"));
+
+        assertEquals(1, result.matched());
+        assertEquals(1, result.updated());
+        assertTrue(statements.contains(
+                "SELECT id, user_id FROM cards WHERE status = 'BLOCKED' AND expiry_date >= ? AND id IN (?) ORDER BY id FOR UPDATE"));
+        verify(outboxService).cardsStatusChanged(Map.of(1L, 10L), Card.CardStatus.ACTIVE, "ADMIN");
+        verify(cardEventStream).cardsStatusChanged(Map.of(1L, 10L), Card.CardStatus.ACTIVE);
+    }
+
+    @Test
+    void approveRequests_ShouldBlockCardsOfPendingRequests() {
+        rows.put("SELECT card_id FROM card_block_requests", List.<Object[]>of(new Object[]{5L}));
+        rows.put("SELECT id, user_id FROM cards WHERE status = 'ACTIVE'", List.<Object[]>of(new Object[]{5L, 20L}));
+
+        BulkCardStatusService.Result result = service.approveRequests(
+                new BulkCardStatusService.Selection(List.of(7L, 8L), null, null), 99L);
+
+        assertEquals(2, result.matched());
+        assertEquals(1, result.updated());
+        assertEquals(1, result.requestsApproved());
+        assertTrue(statements.get(0).startsWith("SELECT card_id FROM card_block_requests WHERE status = 'PENDING' AND id IN"));
+        verify(outboxService).cardsStatusChanged(Map.of(5L, 20L), Card.CardStatus.BLOCKED, "BLOCK_REQUEST");
+    }
+
+    @Test
+    void block_ShouldRejectMissingMixedOrOversizedSelection() {
+        assertThrows(IllegalArgumentException.class, () ->
+                service.block(new BulkCardStatusService.Selection(List.of(), null, null), 99L));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.block(new BulkCardStatusService.Selection(List.of(1L), 10L, null), 99L));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.block(new BulkCardStatusService.Selection(List.of(1L, 2L, 3L, 4L, 5L, 6L), null, null), 99L));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.unblock(new BulkCardStatusService.Selection(null, null, "40AB")));
+        verifyNoInteractions(jdbcTemplate, outboxService, userBalanceCache);
+    }
+
+    private static String sql(PreparedStatementCreator creator) throws Exception {
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(mock(PreparedStatement.class));
+        creator.createPreparedStatement(connection);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        try {
+            verify(connection).prepareStatement(sql.capture());
+        } catch (AssertionError e) {
+            verify(connection).prepareStatement(sql.capture(), anyInt(), anyInt());
+        }
+        return sql.getValue();
+    }
+
+    private static ResultSet resultSet(Object[] row) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] instanceof Long value) {
+                when(rs.getLong(i + 1)).thenReturn(value);
+            } else {
+                when(rs.getString(i + 1)).thenReturn((String) row[i]);
+            }
+        }
+        return rs;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheInvalidationBusTest {
+
+    private InvalidatableCache cache;
+    private CacheInvalidationBus bus;
+
+    @BeforeEach
+    void setUp() {
+        cache = mock(InvalidatableCache.class);
+        bus = new CacheInvalidationBus(mock(JdbcTemplate.class), mock(DatabasePlatform.class),
+                new DataSourceProperties(), List.of(cache), new SimpleMeterRegistry(), true, 200, 3, 5000, 5000);
+    }
+
+    @Test
+    void collect_ShouldMergeKeysOfOtherNodes() {
+        Set<String> pending = new HashSet<>();
+
+        assertFalse(bus.collect("other|C5,B7", pending));
+        assertFalse(bus.collect("another|B7", pending));
+        bus.apply(pending, false);
+
+        assertEquals(Set.of("C5", "B7"), pending);
+        verify(cache).evict(InvalidatableCache.Region.CARD, 5L);
+        verify(cache).evict(InvalidatableCache.Region.BALANCE, 7L);
+        verify(cache, never()).evictAll();
+    }
+
+    @Test
+    void collect_ShouldIgnoreOwnWrites() {
+        Set<String> pending = new HashSet<>();
+
+        assertFalse(bus.collect(bus.getNode() + "|C5", pending));
+        assertFalse(bus.collect(bus.getNode() + "|*", pending));
+
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void apply_ShouldFlushOnRequestOrTooManyKeys() {
+        Set<String> pending = new HashSet<>();
+        assertTrue(bus.collect("other|*", pending));
+
+        bus.apply(Set.of("C1", "C2", "C3", "C4"), false);
+
+        verify(cache).evictAll();
+        verify(cache, never()).evict(any(), anyLong());
+    }
+
+    @Test
+    void apply_ShouldSkipMalformedKeys() {
+        bus.apply(Set.of("X1", "Cabc", "U3"), false);
+
+        verify(cache).evict(InvalidatableCache.Region.USER, 3L);
+        verifyNoMoreInteractions(cache);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadYourWritesGuard;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardBlockRequest;
 import com.example.bankcards.entity.User;
@@ -33,6 +34,21 @@ class CardBlockRequestServiceTest {
     @Mock
     private CardRepository cardRepository;
 
+    @Mock
+    private ReadYourWritesGuard readYourWritesGuard;
+
+    @Mock
+    private UserBalanceCache userBalanceCache;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private CardEventStream cardEventStream;
+
     @InjectMocks
     private CardBlockRequestService cardBlockRequestService;
 
@@ -165,6 +181,7 @@ class CardBlockRequestServiceTest {
         assertEquals(2L, result.getProcessedBy().getId());
         assertNotNull(result.getProcessedAt());
         verify(cardRepository).save(any(Card.class));
+        verify(outboxService).cardStatusChanged(any(Card.class), eq("BLOCK_REQUEST"));
         verify(cardBlockRequestRepository).save(any(CardBlockRequest.class));
     }
 
@@ -0,0 +1,107 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardEventStreamTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CardEventStream stream;
+
+    @AfterEach
+    void tearDown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void publish_ShouldSendToSubscribersOfTheUser() {
+        stream = create(8, 5, Runnable::run);
+        stream.subscribe(1L);
+        stream.subscribe(2L);
+
+        stream.cardRemoved(1L, 10L);
+
+        // one ready event per connection plus the one for user 1
+        assertEquals(3, meterRegistry.counter("bankcards.stream.events").count());
+    }
+
+    @Test
+    void transactionCompleted_ShouldNotifySenderAndRecipient() {
+        stream = create(8, 5, Runnable::run);
+        stream.subscribe(1L);
+        stream.subscribe(2L);
+
+        stream.transactionCompleted(Transaction.builder()
+                .id(7L)
+                .fromCard(card(10L, 1L))
+                .toCard(card(20L, 2L))
+                .amount(new BigDecimal("25.00"))
+                .status(Transaction.TransactionStatus.COMPLETED)
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        // two ready events, then a transaction and a balance event for each user
+        assertEquals(6, meterRegistry.counter("bankcards.stream.events").count());
+    }
+
+    @Test
+    void cardsStatusChanged_ShouldNotifyEachOwner() {
+        stream = create(8, 5, Runnable::run);
+        stream.subscribe(1L);
+        stream.subscribe(2L);
+
+        stream.cardsStatusChanged(Map.of(10L, 1L, 11L, 1L, 20L, 2L, 30L, 3L), Card.CardStatus.BLOCKED);
+
+        // two ready events and one per card of a connected user
+        assertEquals(5, meterRegistry.counter("bankcards.stream.events").count());
+    }
+
+    @Test
+    void publish_ShouldCloseConnectionThatFallsBehind() {
+        // a sender that never runs, so nothing leaves the buffer
+        stream = create(2, 5, task -> { });
+        stream.subscribe(1L);
+
+        stream.cardRemoved(1L, 10L);
+        assertEquals(1, stream.getConnectionCount());
+
+        stream.cardRemoved(1L, 11L);
+        assertEquals(0, stream.getConnectionCount());
+        assertEquals(1, meterRegistry.counter("bankcards.stream.dropped").count());
+    }
+
+    @Test
+    void subscribe_ShouldLimitConnectionsPerUser() {
+        stream = create(8, 1, Runnable::run);
+        stream.subscribe(1L);
+
+        assertThrows(ServiceOverloadedException.class, () -> stream.subscribe(1L));
+        assertEquals(1, stream.getConnectionCount());
+    }
+
+    private static Card card(Long id, Long userId) {
+        return Card.builder()
+                .id(id)
+                .cardNumber("400000000000" + id + "00")
+                .status(Card.CardStatus.ACTIVE)
+                .balance(new BigDecimal("100.00"))
+                .user(User.builder().id(userId).build())
+                .build();
+    }
+
+    private CardEventStream create(int bufferSize, int maxConnections, Executor sender) {
+        return new CardEventStream(meterRegistry, bufferSize, 60_000, 60_000, maxConnections, sender);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardExpiryServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 1);
+
+    private JdbcTemplate jdbcTemplate;
+    private DatabasePlatform databasePlatform;
+    private Cache cache;
+    private UserBalanceCache userBalanceCache;
+    private CacheInvalidationBus cacheInvalidationBus;
+    private JobRunner jobRunner;
+    private JobRunner.JobContext context;
+    private CardExpiryService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        databasePlatform = mock(DatabasePlatform.class);
+        cache = mock(Cache.class);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+        userBalanceCache = mock(UserBalanceCache.class);
+        cacheInvalidationBus = mock(CacheInvalidationBus.class);
+        jobRunner = mock(JobRunner.class);
+        context = mock(JobRunner.JobContext.class);
+        service = new CardExpiryService(jdbcTemplate, databasePlatform, entityManagerFactory, userBalanceCache,
+                cacheInvalidationBus, jobRunner, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), true, 10);
+    }
+
+    @Test
+    void sweep_ShouldUpdateInIdChunksAndEvictCaches() {
+        runJobs();
+        expiredRange(1, 25);
+        when(jdbcTemplate.update(startsWith("UPDATE cards"), any(Object[].class))).thenReturn(3, 2, 0);
+
+        assertEquals(5, service.sweep(TODAY));
+
+        verify(jdbcTemplate).update(startsWith("UPDATE cards"), any(), eq(1L), eq(10L), eq(TODAY));
+        verify(jdbcTemplate).update(startsWith("UPDATE cards"), any(), eq(11L), eq(20L), eq(TODAY));
+        verify(jdbcTemplate).update(startsWith("UPDATE cards"), any(), eq(21L), eq(25L), eq(TODAY));
+        verify(context).checkpoint("2025-03-01:25", 0);
+        verify(cache).evict(Card.class);
+        verify(userBalanceCache).invalidateAll();
+        verify(cacheInvalidationBus).invalidateAll();
+    }
+
+    @Test
+    void sweep_ShouldResumeAfterCheckpointOfSameDay() {
+        runJobs();
+        expiredRange(1, 25);
+        when(context.getResumeFrom()).thenReturn("2025-03-01:20");
+
+        service.sweep(TODAY);
+
+        verify(jdbcTemplate).update(startsWith("UPDATE cards"), any(), eq(21L), eq(25L), eq(TODAY));
+        verify(jdbcTemplate, times(1)).update(startsWith("UPDATE cards"), any(Object[].class));
+    }
+
+    @Test
+    void sweep_ShouldIgnoreCheckpointOfEarlierDay() {
+        runJobs();
+        expiredRange(1, 5);
+        when(context.getResumeFrom()).thenReturn("2025-02-28:20");
+
+        service.sweep(TODAY);
+
+        verify(jdbcTemplate).update(startsWith("UPDATE cards"), any(), eq(1L), eq(5L), eq(TODAY));
+    }
+
+    @Test
+    void sweep_ShouldSkipWhenRunningElsewhere() {
+        when(jobRunner.run(eq(CardExpiryService.JOB_NAME), any())).thenReturn(false);
+
+        assertEquals(-1, service.sweep(TODAY));
+
+        verifyNoInteractions(jdbcTemplate, cache, userBalanceCache);
+    }
+
+    @Test
+    void scheduledSweep_ShouldSkipOtherDatabases() {
+        when(databasePlatform.isPostgres()).thenReturn(false);
+
+        service.scheduledSweep();
+
+        verifyNoInteractions(jdbcTemplate, jobRunner);
+    }
+
+    private void runJobs() {
+        when(jobRunner.run(eq(CardExpiryService.JOB_NAME), any())).thenAnswer(invocation -> {
+            invocation.<JobRunner.Job>getArgument(1).run(context);
+            return true;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expiredRange(long min, long max) {
+        when(jdbcTemplate.queryForObject(contains("MIN(id)"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(new long[]{min, max});
+    }
+}
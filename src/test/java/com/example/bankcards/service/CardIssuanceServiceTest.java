@@ -0,0 +1,86 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardNumberAttributeConverter;
+import com.example.bankcards.util.Luhn;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardIssuanceServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserRepository userRepository;
+    private CardIssuanceService service;
+    private final List<List<String>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        userRepository = mock(UserRepository.class);
+        DatabasePlatform databasePlatform = mock(DatabasePlatform.class);
+        when(databasePlatform.isPostgres()).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(0L);
+
+        service = new CardIssuanceService(jdbcTemplate, databasePlatform, userRepository,
+                mock(CardNumberAttributeConverter.class), mock(UserBalanceCache.class),
+                mock(CacheInvalidationBus.class), mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 1000, 100, 10_000, 0.001);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void issue_ShouldInsertLuhnValidNumbersAndReplaceTakenOnes() {
+        // the second number of the first batch was issued elsewhere in the meantime
+        when(jdbcTemplate.batchUpdate(contains("ON CONFLICT"), anyCollection(), eq(100),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    batches.add(new ArrayList<>((Collection<String>) invocation.getArgument(1)));
+                    return batches.size() == 1 ? new int[][]{{1, 0, 1}} : new int[][]{{1}};
+                });
+
+        CardIssuanceService.Result result = service.issue(1L, "400000", 3, "Test Owner",
+                LocalDate.now().plusYears(3), BigDecimal.ZERO);
+
+        assertEquals(3, result.issued());
+        assertEquals(1, result.regenerated());
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(1).size());
+        List<String> numbers = new ArrayList<>(batches.get(0));
+        numbers.addAll(batches.get(1));
+        for (String number : numbers) {
+            assertEquals(16, number.length());
+            assertTrue(number.startsWith("400000"));
+            assertTrue(Luhn.isValid(number), number);
+        }
+        assertEquals(4, new HashSet<>(numbers).size());
+    }
+
+    @Test
+    void issue_ShouldRejectBadBinAndUnknownUser() {
+        assertThrows(IllegalArgumentException.class, () ->
+                service.issue(1L, "40AB", 3, "Test Owner", LocalDate.now().plusYears(3), BigDecimal.ZERO));
+        assertThrows(IllegalArgumentException.class, () ->
+                service.issue(1L, "400000", 1001, "Test Owner", LocalDate.now().plusYears(3), BigDecimal.ZERO));
+        assertThrows(UserNotFoundException.class, () ->
+                service.issue(2L, "400000", 3, "Test Owner", LocalDate.now().plusYears(3), BigDecimal.ZERO));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
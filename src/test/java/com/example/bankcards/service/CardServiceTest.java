@@ -16,10 +16,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +33,21 @@ class CardServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserBalanceCache userBalanceCache;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Mock
+    private RequestCoalescer requestCoalescer;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private CardEventStream cardEventStream;
+
     @InjectMocks
     private CardService cardService;
 
@@ -39,6 +56,9 @@ class CardServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(requestCoalescer.execute(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+
         testUser = User.builder()
                 .id(1L)
                 .username("testuser")
@@ -85,6 +105,9 @@ class CardServiceTest {
 
         assertEquals(Card.CardStatus.BLOCKED, result.getStatus());
         verify(cardRepository).save(testCard);
+        verify(userBalanceCache).cardChanged(testCard);
+        verify(cacheInvalidationBus).cardChanged(testCard);
+        verify(outboxService).cardStatusChanged(testCard, "ADMIN");
     }
 
     @Test
@@ -96,7 +119,9 @@ class CardServiceTest {
         Card result = cardService.unblockCard(1L);
 
         assertEquals(Card.CardStatus.ACTIVE, result.getStatus());
+        assertNotNull(result.getUnblockedAt());
         verify(cardRepository).save(testCard);
+        verify(userBalanceCache).cardChanged(testCard);
     }
 
     @Test
@@ -119,4 +144,17 @@ class CardServiceTest {
 
         assertFalse(result);
     }
+
+    @Test
+    void deleteCard_ShouldRemoveCardFromBalanceCache() {
+        testCard.setId(1L);
+        testCard.setUser(testUser);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+
+        cardService.deleteCard(1L);
+
+        verify(cardRepository).delete(testCard);
+        verify(userBalanceCache).cardRemoved(1L, 1L);
+        verify(cacheInvalidationBus).cardRemoved(1L, 1L);
+    }
 }
@@ -0,0 +1,237 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.dto.CardSummaryResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardDailySummary;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.InvalidTransactionException;
+import com.example.bankcards.repository.CardDailySummaryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardSummaryServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DatabasePlatform databasePlatform;
+
+    @Mock
+    private CardDailySummaryRepository summaryRepository;
+
+    @Mock
+    private JobRunner jobRunner;
+
+    @InjectMocks
+    private CardSummaryService cardSummaryService;
+
+    private Transaction transaction;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cardSummaryService, "historyWindowDays", 90);
+        ReflectionTestUtils.setField(cardSummaryService, "catchUpEnabled", true);
+        ReflectionTestUtils.setField(cardSummaryService, "catchUpDays", 2);
+        ReflectionTestUtils.setField(cardSummaryService, "holdLookbackDays", 7);
+
+        transaction = Transaction.builder()
+                .id(1L)
+                .fromCard(Card.builder().id(1L).balance(new BigDecimal("900.00")).build())
+                .toCard(Card.builder().id(2L).balance(new BigDecimal("600.00")).build())
+                .amount(new BigDecimal("100.00"))
+                .createdAt(LocalDateTime.of(2025, 3, 10, 12, 0))
+                .build();
+    }
+
+    @Test
+    void recordTransaction_ShouldInsertRowsForNewDay() {
+        cardSummaryService.recordTransaction(transaction);
+
+        LocalDate day = LocalDate.of(2025, 3, 10);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO card_daily_summary"),
+                eq(1L), eq(day), eq(new BigDecimal("100.00")), eq(BigDecimal.ZERO), eq(new BigDecimal("900.00")),
+                any(LocalDateTime.class));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO card_daily_summary"),
+                eq(2L), eq(day), eq(BigDecimal.ZERO), eq(new BigDecimal("100.00")), eq(new BigDecimal("600.00")),
+                any(LocalDateTime.class));
+    }
+
+    @Test
+    void recordTransaction_ShouldOnlyUpdateExistingRows() {
+        when(jdbcTemplate.update(startsWith("UPDATE card_daily_summary"), any(Object[].class))).thenReturn(1);
+
+        cardSummaryService.recordTransaction(transaction);
+
+        verify(jdbcTemplate, times(2)).update(startsWith("UPDATE card_daily_summary"), any(Object[].class));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT INTO card_daily_summary"), any(Object[].class));
+    }
+
+    @Test
+    void recordTransaction_ShouldCountCapturedHoldOnCaptureDay() {
+        transaction.setProcessedAt(LocalDateTime.of(2025, 3, 12, 9, 30));
+
+        cardSummaryService.recordTransaction(transaction);
+
+        LocalDate captureDay = LocalDate.of(2025, 3, 12);
+        verify(jdbcTemplate).update(startsWith("UPDATE card_daily_summary"),
+                eq(new BigDecimal("100.00")), eq(BigDecimal.ZERO), eq(new BigDecimal("900.00")),
+                any(LocalDateTime.class), eq(1L), eq(captureDay));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO card_daily_summary"),
+                eq(2L), eq(captureDay), eq(BigDecimal.ZERO), eq(new BigDecimal("100.00")), eq(new BigDecimal("600.00")),
+                any(LocalDateTime.class));
+    }
+
+    @Test
+    void recordTransaction_ShouldUpsertOnPostgres() {
+        when(databasePlatform.isPostgres()).thenReturn(true);
+
+        cardSummaryService.recordTransaction(transaction);
+
+        verify(jdbcTemplate, times(2)).update(contains("ON CONFLICT (card_id, summary_date) DO UPDATE"),
+                any(Object[].class));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE card_daily_summary"), any(Object[].class));
+    }
+
+    @Test
+    void getCardSummary_ShouldAddUpDays() {
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 31);
+        when(summaryRepository.findByCardIdAndSummaryDateBetweenOrderBySummaryDateAsc(1L, from, to)).thenReturn(List.of(
+                summary(LocalDate.of(2025, 3, 2), "10.00", "0.00", 1, "990.00"),
+                summary(LocalDate.of(2025, 3, 5), "40.00", "25.00", 3, "975.00")));
+
+        CardSummaryResponse result = cardSummaryService.getCardSummary(1L, from, to);
+
+        assertEquals(0, new BigDecimal("50.00").compareTo(result.getTotalDebits()));
+        assertEquals(0, new BigDecimal("25.00").compareTo(result.getTotalCredits()));
+        assertEquals(4, result.getTransactionCount());
+        assertEquals(new BigDecimal("975.00"), result.getClosingBalance());
+        assertEquals(2, result.getDays().size());
+        assertEquals("2025-03-05", result.getDays().get(1).getDate());
+    }
+
+    @Test
+    void getCardSummary_ShouldTakeClosingBalanceFromEarlierDay() {
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 31);
+        when(summaryRepository.findByCardIdAndSummaryDateBetweenOrderBySummaryDateAsc(1L, from, to)).thenReturn(List.of());
+        when(summaryRepository.findFirstByCardIdAndSummaryDateLessThanEqualOrderBySummaryDateDesc(1L, to))
+                .thenReturn(Optional.of(summary(LocalDate.of(2025, 2, 20), "5.00", "0.00", 1, "500.00")));
+
+        CardSummaryResponse result = cardSummaryService.getCardSummary(1L, from, to);
+
+        assertEquals(0, result.getTransactionCount());
+        assertEquals(new BigDecimal("500.00"), result.getClosingBalance());
+        assertTrue(result.getDays().isEmpty());
+    }
+
+    @Test
+    void getCardSummary_ShouldAddCreditsOfStripedCardToDaysNotRebuilt() throws Exception {
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 31);
+        CardDailySummary rebuilt = summary(LocalDate.of(2025, 3, 2), "10.00", "50.00", 3, "1040.00");
+        rebuilt.setUpdatedAt(LocalDateTime.of(2025, 3, 3, 0, 15));
+        CardDailySummary incremented = summary(LocalDate.of(2025, 3, 5), "40.00", "0.00", 1, "975.00");
+        incremented.setUpdatedAt(LocalDateTime.of(2025, 3, 5, 18, 0));
+        when(summaryRepository.findByCardIdAndSummaryDateBetweenOrderBySummaryDateAsc(1L, from, to))
+                .thenReturn(List.of(rebuilt, incremented));
+        when(jdbcTemplate.queryForList(contains("balance_stripes"), eq(Integer.class), eq(1L))).thenReturn(List.of(4));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(creditRow(LocalDate.of(2025, 3, 2), "50.00", 2));
+            handler.processRow(creditRow(LocalDate.of(2025, 3, 5), "30.00", 2));
+            handler.processRow(creditRow(LocalDate.of(2025, 3, 7), "15.00", 1));
+            return null;
+        }).when(jdbcTemplate).query(contains("to_card_id = ?"), any(RowCallbackHandler.class),
+                eq(1L), eq(from.atStartOfDay()), eq(LocalDate.of(2025, 4, 1).atStartOfDay()),
+                eq(from.atStartOfDay().minusDays(7)), eq(LocalDate.of(2025, 4, 1).atStartOfDay()));
+
+        CardSummaryResponse result = cardSummaryService.getCardSummary(1L, from, to);
+
+        // the rebuilt day has its credits already, the others get them from transactions
+        assertEquals(0, new BigDecimal("50.00").compareTo(result.getTotalDebits()));
+        assertEquals(0, new BigDecimal("95.00").compareTo(result.getTotalCredits()));
+        assertEquals(7, result.getTransactionCount());
+        assertEquals(3, result.getDays().size());
+        assertEquals(0, new BigDecimal("30.00").compareTo(result.getDays().get(1).getCredits()));
+        assertEquals("2025-03-07", result.getDays().get(2).getDate());
+        assertEquals(0, new BigDecimal("990.00").compareTo(result.getClosingBalance()));
+    }
+
+    @Test
+    void getCardSummary_ShouldRejectInvertedRange() {
+        assertThrows(InvalidTransactionException.class, () -> cardSummaryService.getCardSummary(1L,
+                LocalDate.of(2025, 3, 2), LocalDate.of(2025, 3, 1)));
+        verifyNoInteractions(summaryRepository);
+    }
+
+    @Test
+    void catchUp_ShouldRebuildClosedDaysOnPostgres() {
+        when(databasePlatform.isPostgres()).thenReturn(true);
+        when(jobRunner.run(eq("summary-catch-up"), any())).thenAnswer(invocation -> {
+            invocation.<JobRunner.Job>getArgument(1).run(mock(JobRunner.JobContext.class));
+            return true;
+        });
+
+        cardSummaryService.catchUp();
+
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        LocalDateTime start = today.minusDays(2);
+        verify(jdbcTemplate).update(contains("ON CONFLICT (card_id, summary_date)"), eq(7),
+                eq(start), eq(today), eq(start.minusDays(7)), eq(today),
+                eq(start), eq(today), eq(start.minusDays(7)), eq(today));
+    }
+
+    @Test
+    void catchUp_ShouldSkipOtherDatabases() {
+        when(databasePlatform.isPostgres()).thenReturn(false);
+
+        cardSummaryService.catchUp();
+
+        verifyNoInteractions(jdbcTemplate, jobRunner);
+    }
+
+    private static ResultSet creditRow(LocalDate day, String amount, int count) throws SQLException {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getDate(1)).thenReturn(Date.valueOf(day));
+        // not read for a rebuilt day
+        lenient().when(row.getBigDecimal(2)).thenReturn(new BigDecimal(amount));
+        lenient().when(row.getInt(3)).thenReturn(count);
+        return row;
+    }
+
+    private static CardDailySummary summary(LocalDate day, String debits, String credits, int count, String closing) {
+        return CardDailySummary.builder()
+                .cardId(1L)
+                .summaryDate(day)
+                .debits(new BigDecimal(debits))
+                .credits(new BigDecimal(credits))
+                .transactionCount(count)
+                .closingBalance(new BigDecimal(closing))
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBlockRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.FraudSuspectedException;
+import com.example.bankcards.repository.CardBlockRequestRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the block request is written in its own transaction, so it survives the rollback of the
+// transfer that was declined. Bean Validation is off so the generated schema does not cut
+// card_number down to @Size(16), the encrypted number is longer.
+@SpringBootTest(properties = {
+        "app.fraud.budget-micros=60000000",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none"
+})
+@ActiveProfiles("test")
+class FraudScoringServiceIntegrationTest {
+
+    @Autowired
+    private FraudScoringService fraudScoringService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardBlockRequestRepository cardBlockRequestRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void screen_ShouldKeepBlockRequestWhenTransferRollsBack() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        User user = userRepository.save(User.builder()
+                .username("fraud-it-user")
+                .password("password")
+                .build());
+        Card card = cardRepository.save(Card.builder()
+                .cardNumber("4000000000000101")
+                .owner("Fraud Test")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(new BigDecimal("1000.00"))
+                .unblockedAt(LocalDateTime.now().minusMinutes(10))
+                .user(user)
+                .build());
+
+        // history is learned from committed transfers only
+        for (int i = 0; i < 5; i++) {
+            transaction.executeWithoutResult(status ->
+                    fraudScoringService.screen(cardRepository.findById(card.getId()).orElseThrow(),
+                            new BigDecimal("10.00")));
+        }
+
+        assertThrows(FraudSuspectedException.class, () -> transaction.executeWithoutResult(status -> {
+            Card locked = cardRepository.findById(card.getId()).orElseThrow();
+            locked.setBalance(locked.getBalance().subtract(new BigDecimal("100.00")));
+            cardRepository.saveAndFlush(locked);
+            fraudScoringService.screen(locked, new BigDecimal("100.00"));
+        }));
+
+        assertEquals(0, new BigDecimal("1000.00").compareTo(
+                cardRepository.findById(card.getId()).orElseThrow().getBalance()));
+        List<CardBlockRequest> requests = cardBlockRequestRepository.findByCardId(card.getId());
+        assertEquals(1, requests.size());
+        assertEquals(CardBlockRequest.RequestStatus.PENDING, requests.get(0).getStatus());
+        assertTrue(requests.get(0).getReason().startsWith("Automatic: fraud score"));
+    }
+}
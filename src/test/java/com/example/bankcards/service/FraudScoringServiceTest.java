@@ -0,0 +1,109 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.FraudSuspectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FraudScoringServiceTest {
+
+    private static final long NOW = 1_773_100_000_000L;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final List<FraudRule> rules = List.of(
+            new RecentlyUnblockedRule(30, 24),
+            new RoundAmountRule(15, 1000),
+            new VelocityRule(40, 5),
+            new AmountSpikeRule(50, 5, 5.0));
+
+    private FraudEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new FraudEngine(rules, 40, 80, TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        // ten transfers around 20.00, one every two hours
+        for (int i = 0; i < 10; i++) {
+            engine.record(new FraudRule.Transfer(1L, 2000 + i * 10, NOW - (20 - 2 * i) * HOUR, 0));
+        }
+    }
+
+    @Test
+    void assess_ShouldAllowUsualTransfer() {
+        FraudEngine.Assessment assessment = engine.assess(new FraudRule.Transfer(1L, 2500, NOW, 0));
+
+        assertEquals(FraudEngine.Decision.ALLOW, assessment.decision());
+        assertEquals(0, assessment.score());
+        assertTrue(assessment.complete());
+    }
+
+    @Test
+    void assess_ShouldFlagAmountSpikeForReview() {
+        FraudEngine.Assessment assessment = engine.assess(new FraudRule.Transfer(1L, 50_050, NOW, 0));
+
+        assertEquals(FraudEngine.Decision.REVIEW, assessment.decision());
+        assertEquals(List.of("amount-spike"), assessment.rules());
+    }
+
+    @Test
+    void assess_ShouldDenySpikeRightAfterUnblock() {
+        FraudEngine.Assessment assessment = engine.assess(new FraudRule.Transfer(1L, 50_050, NOW, NOW - HOUR));
+
+        assertEquals(FraudEngine.Decision.DENY, assessment.decision());
+        assertEquals(80, assessment.score());
+    }
+
+    @Test
+    void assess_ShouldCountBurstOfTransfers() {
+        for (int i = 0; i < 5; i++) {
+            engine.record(new FraudRule.Transfer(2L, 1000, NOW - 60_000, 0));
+        }
+
+        FraudEngine.Assessment assessment = engine.assess(new FraudRule.Transfer(2L, 1000, NOW, 0));
+
+        assertEquals(FraudEngine.Decision.REVIEW, assessment.decision());
+        assertEquals(List.of("velocity"), assessment.rules());
+    }
+
+    @Test
+    void assess_ShouldStopWhenBudgetIsSpent() {
+        FraudEngine tight = new FraudEngine(rules, 40, 80, -1, 1000);
+
+        FraudEngine.Assessment assessment = tight.assess(new FraudRule.Transfer(1L, 200_000, NOW, NOW - HOUR));
+
+        // only the first rule ran
+        assertFalse(assessment.complete());
+        assertEquals(30, assessment.score());
+    }
+
+    @Test
+    void screen_ShouldDeclineAndRequestBlockOnDeny() {
+        CardBlockRequestService cardBlockRequestService = mock(CardBlockRequestService.class);
+        FraudScoringService service = new FraudScoringService(rules, cardBlockRequestService,
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), true, 40, 80,
+                TimeUnit.MINUTES.toMicros(1), 1000);
+        Card card = Card.builder()
+                .id(7L)
+                .user(User.builder().id(3L).build())
+                .unblockedAt(LocalDateTime.now().minusMinutes(10))
+                .build();
+        for (int i = 0; i < 5; i++) {
+            service.screen(card, new BigDecimal("10.00"));
+        }
+
+        assertThrows(FraudSuspectedException.class, () -> service.screen(card, new BigDecimal("100.00")));
+
+        verify(cardBlockRequestService).createBlockRequest(eq(7L), eq(3L), startsWith("Automatic: fraud score"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HoldExpiryServiceTest {
+
+    private TransactionService transactionService;
+    private JobRunner jobRunner;
+    private JobRunner.JobContext context;
+    private HoldExpiryService service;
+
+    @BeforeEach
+    void setUp() {
+        transactionService = mock(TransactionService.class);
+        jobRunner = mock(JobRunner.class);
+        context = mock(JobRunner.JobContext.class);
+        service = new HoldExpiryService(transactionService, mock(DatabasePlatform.class), jobRunner,
+                new SimpleMeterRegistry(), true, 2);
+    }
+
+    @Test
+    void sweep_ShouldReleaseBatchesUntilOneIsNotFull() {
+        LocalDateTime now = LocalDateTime.now();
+        when(jobRunner.run(eq(HoldExpiryService.JOB_NAME), any())).thenAnswer(invocation -> {
+            invocation.<JobRunner.Job>getArgument(1).run(context);
+            return true;
+        });
+        when(transactionService.releaseExpiredHolds(now, 2)).thenReturn(2, 2, 1);
+
+        assertEquals(5, service.sweep(now));
+        verify(transactionService, times(3)).releaseExpiredHolds(now, 2);
+        verify(context, times(2)).addRows(2);
+        verify(context).addRows(1);
+    }
+
+    @Test
+    void sweep_ShouldSkipWhenRunningElsewhere() {
+        when(jobRunner.run(eq(HoldExpiryService.JOB_NAME), any())).thenReturn(false);
+
+        assertEquals(-1, service.sweep(LocalDateTime.now()));
+        verifyNoInteractions(transactionService);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.JobRun;
+import com.example.bankcards.repository.JobRunRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JobRunnerTest {
+
+    private JobRunRepository jobRunRepository;
+    private JdbcTemplate jdbcTemplate;
+    private JobRunner jobRunner;
+    private final List<JobRun> saved = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jobRunRepository = mock(JobRunRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        DatabasePlatform databasePlatform = mock(DatabasePlatform.class);
+        when(databasePlatform.isPostgres()).thenReturn(false);
+        when(jobRunRepository.save(any(JobRun.class))).thenAnswer(invocation -> {
+            JobRun run = invocation.getArgument(0);
+            if (run.getId() == null) {
+                run.setId(100L + saved.size());
+            }
+            saved.add(run);
+            return run;
+        });
+        jobRunner = new JobRunner(jobRunRepository, jdbcTemplate, databasePlatform, new SimpleMeterRegistry(), 14);
+    }
+
+    @Test
+    void run_ShouldRecordCompletedRun() {
+        when(jobRunRepository.findFirstByJobNameOrderByIdDesc("job")).thenReturn(Optional.empty());
+
+        assertTrue(jobRunner.run("job", context -> {
+            context.addRows(3);
+            context.checkpoint("10", 2);
+        }));
+
+        JobRun run = saved.get(saved.size() - 1);
+        assertEquals(JobRun.RunStatus.COMPLETED, run.getStatus());
+        assertEquals(5L, run.getRowsProcessed());
+        assertEquals("10", run.getCheckpoint());
+        assertNotNull(run.getFinishedAt());
+        verify(jdbcTemplate).update(startsWith("UPDATE job_runs SET checkpoint"), eq("10"), eq(5L), eq(run.getId()));
+        assertFalse(jobRunner.isRunningHere("job"));
+    }
+
+    @Test
+    void run_ShouldDeleteOldRunsButKeepTheLatest() {
+        when(jobRunRepository.findFirstByJobNameOrderByIdDesc("job")).thenReturn(Optional.empty());
+
+        jobRunner.run("job", context -> context.addRows(1));
+
+        JobRun run = saved.get(saved.size() - 1);
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(jdbcTemplate).update(eq("DELETE FROM job_runs WHERE job_name = ? AND id < ? AND started_at < ?"),
+                eq("job"), eq(run.getId()), cutoff.capture());
+        assertTrue(cutoff.getValue().isBefore(LocalDateTime.now().minusDays(13)));
+    }
+
+    @Test
+    void run_ShouldRecordFailure() {
+        when(jobRunRepository.findFirstByJobNameOrderByIdDesc("job")).thenReturn(Optional.empty());
+
+        assertTrue(jobRunner.run("job", context -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        JobRun run = saved.get(saved.size() - 1);
+        assertEquals(JobRun.RunStatus.FAILED, run.getStatus());
+        assertEquals("boom", run.getError());
+    }
+
+    @Test
+    void run_ShouldResumeFromUnfinishedRunAndCloseIt() {
+        JobRun previous = JobRun.builder()
+                .id(7L)
+                .jobName("job")
+                .node("other")
+                .status(JobRun.RunStatus.RUNNING)
+                .startedAt(LocalDateTime.now().minusHours(1))
+                .checkpoint("42")
+                .build();
+        when(jobRunRepository.findFirstByJobNameOrderByIdDesc("job")).thenReturn(Optional.of(previous));
+        AtomicReference<String> resumeFrom = new AtomicReference<>();
+
+        jobRunner.run("job", context -> resumeFrom.set(context.getResumeFrom()));
+
+        assertEquals("42", resumeFrom.get());
+        assertEquals(JobRun.RunStatus.FAILED, previous.getStatus());
+        assertEquals("Interrupted", previous.getError());
+    }
+
+    @Test
+    void run_ShouldNotStartTheSameJobTwiceOnOneNode() {
+        when(jobRunRepository.findFirstByJobNameOrderByIdDesc("job")).thenReturn(Optional.empty());
+        AtomicReference<Boolean> nested = new AtomicReference<>();
+
+        jobRunner.run("job", context -> nested.set(jobRunner.run("job", inner -> fail("must not run"))));
+
+        assertFalse(nested.get());
+        ArgumentCaptor<JobRun> runs = ArgumentCaptor.forClass(JobRun.class);
+        verify(jobRunRepository, times(2)).save(runs.capture());
+    }
+}
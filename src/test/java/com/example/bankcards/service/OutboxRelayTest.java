@@ -0,0 +1,149 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.util.OutboxMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DatabasePlatform databasePlatform;
+    private OutboxSink sink;
+    private OutboxRelay relay;
+
+    private final List<OutboxMessage> batch = List.of(
+            new OutboxMessage(1L, "CARD", 5L, "CARD_BLOCKED", "{}", LocalDateTime.now().minusSeconds(2)),
+            new OutboxMessage(2L, "TRANSFER", 9L, "TRANSFER_COMPLETED", "{}", LocalDateTime.now().minusSeconds(1)));
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        databasePlatform = mock(DatabasePlatform.class);
+        sink = mock(OutboxSink.class);
+        relay = new OutboxRelay(jdbcTemplate, databasePlatform, sink, mock(JobRunner.class),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), true, 100, 10, 3, 72);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_ShouldDeliverAndMarkPublished() throws Exception {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(batch);
+
+        assertEquals(2, relay.relayBatch());
+
+        verify(sink).deliver(batch);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE outbox SET published_at"), eq(batch), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_ShouldDeliverEventsBeforeRejectedOneWhenBatchFails() throws Exception {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(batch);
+        when(jdbcTemplate.queryForObject(startsWith("UPDATE outbox SET attempts"), eq(Integer.class), any(Object[].class)))
+                .thenReturn(1);
+        doThrow(new IOException("bad payload")).when(sink).deliver(batch);
+        doThrow(new IOException("bad payload")).when(sink).deliver(List.of(batch.get(1)));
+
+        assertEquals(1, relay.relayBatch());
+
+        verify(sink).deliver(List.of(batch.get(0)));
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE outbox SET published_at"), eq(List.of(batch.get(0))), eq(1),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).queryForObject(startsWith("UPDATE outbox SET attempts"), eq(Integer.class),
+                eq("bad payload"), eq(3), any(), eq(2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_ShouldChargeHeadEventWhenLaterEventIsDelivered() throws Exception {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(batch);
+        when(jdbcTemplate.queryForObject(startsWith("UPDATE outbox SET attempts"), eq(Integer.class), any(Object[].class)))
+                .thenReturn(1);
+        doThrow(new IOException("timeout")).when(sink).deliver(batch);
+        doThrow(new IOException("timeout")).when(sink).deliver(List.of(batch.get(0)));
+
+        assertEquals(1, relay.relayBatch());
+
+        verify(sink).deliver(List.of(batch.get(1)));
+        verify(jdbcTemplate).queryForObject(startsWith("UPDATE outbox SET attempts"), eq(Integer.class),
+                eq("timeout"), eq(3), any(), eq(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_ShouldChargeEventTheSinkRejects() throws Exception {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(batch.get(0)));
+        when(jdbcTemplate.queryForObject(startsWith("UPDATE outbox SET attempts"), eq(Integer.class), any(Object[].class)))
+                .thenReturn(3);
+        doThrow(new OutboxSink.RejectedException("malformed payload", null)).when(sink).deliver(anyList());
+
+        assertEquals(0, relay.relayBatch());
+
+        verify(jdbcTemplate).queryForObject(startsWith("UPDATE outbox SET attempts"), eq(Integer.class),
+                eq("malformed payload"), eq(3), any(), eq(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_ShouldNotChargeEventsWhileSinkIsDown() throws Exception {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(batch);
+        doThrow(new IOException("connection refused")).when(sink).deliver(anyList());
+
+        // far more polls than max-attempts
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, relay.relayBatch());
+        }
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(batch.get(0)));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, relay.relayBatch());
+        }
+
+        // the batch, then its first two events one at a time
+        verify(sink, times(60 + 20)).deliver(anyList());
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("UPDATE outbox SET published_at"), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate, never()).queryForObject(startsWith("UPDATE outbox SET attempts"), eq(Integer.class),
+                any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_ShouldNotCallSinkForEmptyOutbox() throws Exception {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        assertEquals(0, relay.relayBatch());
+
+        verify(sink, never()).deliver(any());
+    }
+
+    @Test
+    void relay_ShouldSkipOtherDatabases() {
+        when(databasePlatform.isPostgres()).thenReturn(false);
+
+        relay.relay();
+
+        verifyNoInteractions(jdbcTemplate, sink);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ImportReport;
+import com.example.bankcards.util.CardNumberAttributeConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PortfolioImportServiceTest {
+
+    private static final String HEADER = "username,password,card_number,owner,expiry_date,balance\n";
+
+    private JdbcTemplate jdbcTemplate;
+    private PasswordEncoder passwordEncoder;
+    private CardNumberAttributeConverter converter;
+    private PortfolioImportService service;
+    private final Map<String, Long> userIds = new HashMap<>();
+    private final List<Integer> cardBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        passwordEncoder = mock(PasswordEncoder.class);
+        converter = mock(CardNumberAttributeConverter.class);
+        when(converter.convertToDatabaseColumn(anyString())).thenAnswer(invocation -> "enc-" + invocation.getArgument(0));
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        when(jdbcTemplate.queryForList(startsWith("SELECT username"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("taken"));
+        when(jdbcTemplate.queryForList(startsWith("SELECT card_number"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of());
+        // every created user gets the next id
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object username : usernames(invocation.getArguments())) {
+                userIds.putIfAbsent((String) username, userIds.size() + 1L);
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(userIds.get(username));
+                when(rs.getString(2)).thenReturn((String) username);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, username"), any(RowCallbackHandler.class), any(Object[].class));
+        service = newService(1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importCsv_ShouldSkipBadRowsAndImportTheRest() throws IOException {
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO cards"), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    cardBatches.add(((Collection<Object>) invocation.getArgument(1)).size());
+                    return new int[0][];
+                });
+
+        ImportReport report = service.importCsv(new StringReader(HEADER
+                + "alice,secret1,4000000000000002,Alice A,2030-01-31,10.50\n"
+                + "alice,,4000000000000010,Alice A,2031-01-31,0\n"
+                + "bob,short,4000000000000028,Bob B,2030-01-31,1\n"
+                + "bob,,4000000000000036,Bob B,2030-01-31,1\n"
+                + "taken,secret2,4000000000000044,Taken,2030-01-31,1\n"
+                + "carol,secret3,123,Carol,2030-01-31,1\n"
+                + "dave,secret4,4000000000000051,\"Dave, Jr\",2020-01-31,1.005\n"
+                + "erin,secret5,4000000000000069,\"Erin\",2020-01-31,7\n"));
+
+        assertEquals(8, report.getRows());
+        assertEquals(2, report.getUsersCreated());
+        assertEquals(3, report.getCardsCreated());
+        assertEquals(5, report.getFailedRows());
+        assertFalse(report.isTruncated());
+        assertEquals(List.of(4L, 5L, 6L, 7L, 8L), report.getErrors().stream().map(ImportReport.RowError::getLine).toList());
+        assertEquals("User from line 4 was not imported", report.getErrors().get(1).getMessage());
+        assertEquals("Username already exists", report.getErrors().get(2).getMessage());
+        assertEquals(List.of(3), cardBatches);
+        verify(passwordEncoder).encode("secret1");
+        verify(passwordEncoder).encode("secret5");
+        verify(passwordEncoder, never()).encode("");
+    }
+
+    @Test
+    void importCsv_ShouldCarryUserOverChunks() throws IOException {
+        service.shutdown();
+        service = newService(1);
+
+        ImportReport report = service.importCsv(new StringReader(
+                "alice,secret1,4000000000000002,Alice A,2030-01-31,10\n"
+                        + "alice,,4000000000000010,Alice A,2031-01-31,0\n"));
+
+        assertEquals(1, report.getUsersCreated());
+        assertEquals(2, report.getCardsCreated());
+        assertEquals(0, report.getFailedRows());
+        verify(passwordEncoder, times(1)).encode(anyString());
+    }
+
+    @Test
+    void importCsv_ShouldReportRowsOfFailedChunkAndContinue() throws IOException {
+        service.shutdown();
+        service = newService(1);
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO cards"), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenReturn(new int[0][]);
+
+        ImportReport report = service.importCsv(new StringReader(
+                "alice,secret1,4000000000000002,Alice A,2030-01-31,10\n"
+                        + "alice,,4000000000000010,Alice A,2031-01-31,0\n"
+                        + "bob,secret2,4000000000000028,Bob B,2030-01-31,1\n"));
+
+        assertEquals(1, report.getUsersCreated());
+        assertEquals(1, report.getCardsCreated());
+        assertEquals(2, report.getFailedRows());
+        assertTrue(report.getErrors().get(0).getMessage().startsWith("Not imported, the chunk failed"));
+        assertEquals("User from line 1 was not imported", report.getErrors().get(1).getMessage());
+    }
+
+    private PortfolioImportService newService(int chunkSize) {
+        return new PortfolioImportService(jdbcTemplate, passwordEncoder,
+                converter, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), chunkSize, 2, 100);
+    }
+
+    // varargs may reach the answer expanded or as one array
+    private static List<Object> usernames(Object[] arguments) {
+        List<Object> result = new ArrayList<>();
+        for (int i = 2; i < arguments.length; i++) {
+            if (arguments[i] instanceof Object[] values) {
+                result.addAll(List.of(values));
+            } else {
+                result.add(arguments[i]);
+            }
+        }
+        return result;
+    }
+}
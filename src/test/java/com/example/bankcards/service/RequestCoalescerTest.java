@@ -0,0 +1,138 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ReadYourWritesGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RequestCoalescerTest {
+
+    private static final int FOLLOWERS = 3;
+
+    @Mock
+    private ReadYourWritesGuard readYourWritesGuard;
+
+    private MeterRegistry meterRegistry;
+    private RequestCoalescer coalescer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new RequestCoalescer(readYourWritesGuard, meterRegistry);
+        executor = Executors.newFixedThreadPool(FOLLOWERS + 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void execute_ShouldShareOneCallBetweenConcurrentCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<String> leader = executor.submit(() -> coalescer.execute("balance", 1L, () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "result";
+        }));
+        waitUntil(() -> coalescer.getInflightCount() == 1);
+
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < FOLLOWERS; i++) {
+            followers.add(executor.submit(() -> coalescer.execute("balance", 1L, () -> {
+                calls.incrementAndGet();
+                return "other";
+            })));
+        }
+        waitUntil(() -> count("coalesced") == FOLLOWERS);
+        release.countDown();
+
+        assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, coalescer.getInflightCount());
+    }
+
+    @Test
+    void execute_ShouldPropagateFailureToFollowers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> coalescer.<String>execute("balance", 1L, () -> {
+            await(release);
+            throw new IllegalStateException("database down");
+        }));
+        waitUntil(() -> coalescer.getInflightCount() == 1);
+        Future<String> follower = executor.submit(() -> coalescer.execute("balance", 1L, () -> "other"));
+        waitUntil(() -> count("coalesced") == 1);
+        release.countDown();
+
+        Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+        assertInstanceOf(IllegalStateException.class, followerError.getCause());
+    }
+
+    @Test
+    void execute_ShouldNotShareCallsBetweenDifferentKeys() {
+        assertEquals("a", coalescer.execute("balance", 1L, () -> "a"));
+        assertEquals("b", coalescer.execute("balance", 2L, () -> "b"));
+        assertEquals(2, count("executed"));
+    }
+
+    @Test
+    void execute_ShouldBypassAfterOwnWrite() {
+        when(readYourWritesGuard.hasRecentWrite()).thenReturn(true);
+
+        assertEquals("fresh", coalescer.execute("balance", 1L, () -> "fresh"));
+        assertEquals(1, count("bypassed"));
+        assertEquals(0, count("executed"));
+    }
+
+    private double count(String result) {
+        return meterRegistry.find("bankcards.coalescer.calls").tag("result", result).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not reached in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
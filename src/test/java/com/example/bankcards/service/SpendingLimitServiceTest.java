@@ -0,0 +1,170 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.LimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SpendingLimitServiceTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-03-10T12:30:00Z"), ZoneOffset.UTC);
+
+    private JdbcTemplate jdbcTemplate;
+    private SpendingLimitService service;
+    private Card card;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = new SpendingLimitService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(DatabasePlatform.class), new SimpleMeterRegistry(), true, 1000, clock);
+
+        card = Card.builder()
+                .id(5L)
+                .balance(new BigDecimal("1000.00"))
+                .dailyLimit(new BigDecimal("100.00"))
+                .version(0L)
+                .build();
+
+        // one transfer of 40.00 a minute ago
+        ResultSet row = mock(ResultSet.class);
+        when(row.getTimestamp(1)).thenReturn(new Timestamp(clock.millis() - 60_000));
+        when(row.getBigDecimal(2)).thenReturn(new BigDecimal("40.00"));
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT created_at"), any(RowCallbackHandler.class), eq(5L), any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void check_ShouldSkipCardsWithoutLimits() {
+        card.setDailyLimit(null);
+
+        spend("5000.00");
+
+        verifyNoInteractions(jdbcTemplate);
+        assertEquals(1, card.getSpendSeq());
+    }
+
+    @Test
+    void check_ShouldRejectTransferOverDailyLimit() {
+        assertThrows(LimitExceededException.class, () -> service.check(card, new BigDecimal("60.01")));
+    }
+
+    @Test
+    void check_ShouldRejectTooManyTransfersPerHour() {
+        card.setDailyLimit(null);
+        card.setMaxTransfersPerHour(1);
+
+        assertThrows(LimitExceededException.class, () -> service.check(card, BigDecimal.ONE));
+    }
+
+    @Test
+    void check_ShouldCountCommittedTransfersWithoutReloading() {
+        TransactionSynchronizationManager.initSynchronization();
+        spend("30.00");
+        // the same transaction already spent 30.00
+        assertThrows(LimitExceededException.class, () -> service.check(card, new BigDecimal("40.00")));
+
+        assertEquals(1, card.getSpendSeq());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.getSynchronizations().forEach(sync ->
+                sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        spend("30.00");
+        assertThrows(LimitExceededException.class, () -> service.check(card, new BigDecimal("30.01")));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(5L), any());
+    }
+
+    @Test
+    void check_ShouldNotCountTransferRejectedAfterTheCheck() {
+        // a batch of the transfer queue: the first transfer passes the limits and is then
+        // denied by the fraud checks, the batch commits with the second one
+        TransactionSynchronizationManager.initSynchronization();
+        service.check(card, new BigDecimal("30.00"));
+        spend("60.00");
+
+        assertEquals(1, card.getSpendSeq());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.getSynchronizations().forEach(sync ->
+                sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // 40.00 from before and 60.00 of this batch, without the denied 30.00
+        assertThrows(LimitExceededException.class, () -> service.check(card, new BigDecimal("0.01")));
+        card.setDailyLimit(new BigDecimal("100.01"));
+        service.check(card, new BigDecimal("0.01"));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(5L), any());
+    }
+
+    @Test
+    void check_ShouldCountTransferMadeOutsideTransaction() {
+        spend("30.00");
+
+        assertThrows(LimitExceededException.class, () -> service.check(card, new BigDecimal("30.01")));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(5L), any());
+    }
+
+    @Test
+    void check_ShouldReloadWhenCardWasSpentElsewhere() {
+        spend("10.00");
+        card.setSpendSeq(3L);
+
+        spend("10.00");
+
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq(5L), any());
+    }
+
+    @Test
+    void check_ShouldKeepWindowWhenOnlyVersionChanged() {
+        spend("10.00");
+        // an incoming credit or an admin edit
+        card.setVersion(7L);
+
+        spend("10.00");
+
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(5L), any());
+    }
+
+    @Test
+    void released_ShouldMakeTheNextCheckReload() {
+        spend("10.00");
+
+        service.released(card);
+        spend("10.00");
+
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq(5L), any());
+    }
+
+    private void spend(String amount) {
+        service.check(card, new BigDecimal(amount));
+        service.record(card, new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+// Statement tables come from Liquibase only, the schema generated for the tests lacks them.
+// Every card is its own chunk, so a chunk that is read again fails the run it belongs to.
+@SpringBootTest(properties = {
+        "app.fraud.budget-micros=60000000",
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none"
+})
+@ActiveProfiles("test")
+class StatementServiceIntegrationTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DatabasePlatform databasePlatform;
+
+    @Autowired
+    private JobRunner jobRunner;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @BeforeEach
+    void createStatementTables() throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/migration/changes/010-create-statements-tables.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    @Test
+    void generate_ShouldResumeFailedRunWithoutRewritingFinishedChunks() {
+        User user = userRepository.save(User.builder()
+                .username("statement-it-user")
+                .password("password")
+                .build());
+        Card first = saveCard(user, "4000000000000201");
+        Card second = saveCard(user, "4000000000000202");
+        Card third = saveCard(user, "4000000000000203");
+        transfer(first, second, "10.00");
+        transfer(second, third, "5.00");
+        transfer(third, first, "1.00");
+        YearMonth period = YearMonth.now();
+
+        assertFalse(service(failingFor(third)).generate(period));
+
+        assertEquals(1, statementCount(first));
+        assertEquals(1, statementCount(second));
+        assertEquals(0, statementCount(third));
+        assertEquals("FAILED", jdbcTemplate.queryForObject(
+                "SELECT status FROM statement_runs WHERE period_start = ?", String.class, period.atDay(1)));
+
+        // the chunks of the first two cards are checkpointed, reading them again would fail
+        assertTrue(service(failingFor(first, second)).generate(period));
+
+        for (Card card : List.of(first, second, third)) {
+            assertEquals(1, statementCount(card));
+            assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM card_statement_lines "
+                    + "WHERE card_id = ? AND period_start = ?", Integer.class, card.getId(), period.atDay(1)));
+        }
+        assertEquals("COMPLETED", jdbcTemplate.queryForObject(
+                "SELECT status FROM statement_runs WHERE period_start = ?", String.class, period.atDay(1)));
+    }
+
+    private StatementService service(TransactionRepository transactions) {
+        return new StatementService(cardRepository, transactions, jdbcTemplate, transactionManager,
+                databasePlatform, jobRunner, new SimpleMeterRegistry(), true, 1, 1, 500);
+    }
+
+    private TransactionRepository failingFor(Card... cards) {
+        TransactionRepository transactions = mock(TransactionRepository.class, delegatesTo(transactionRepository));
+        for (Card card : cards) {
+            doThrow(new IllegalStateException("chunk of card " + card.getId() + " failed"))
+                    .when(transactions).streamCompletedForCardRange(eq(card.getId()), anyLong(), any(), any());
+        }
+        return transactions;
+    }
+
+    private Card saveCard(User user, String number) {
+        return cardRepository.save(Card.builder()
+                .cardNumber(number)
+                .owner("Statement Test")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(new BigDecimal("100.00"))
+                .user(user)
+                .build());
+    }
+
+    private void transfer(Card from, Card to, String amount) {
+        transactionRepository.save(Transaction.builder()
+                .fromCard(from)
+                .toCard(to)
+                .amount(new BigDecimal(amount))
+                .status(Transaction.TransactionStatus.COMPLETED)
+                .build());
+    }
+
+    private int statementCount(Card card) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM card_statements WHERE card_id = ?",
+                Integer.class, card.getId());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementServiceTest {
+
+    private static final LocalDate PERIOD_START = LocalDate.of(2025, 3, 1);
+
+    @Test
+    void buildStatements_ShouldDeriveOpeningAndClosingFromCurrentBalance() {
+        // card 1 now has 700: it spent 100 and got 50 in March, then spent 200 in April
+        Map<Long, StatementService.CardStatement> statements = StatementService.buildStatements(
+                List.of(balance(1L, "700.00"), balance(2L, "300.00")),
+                List.of(movements(1L, "100.00", 1, "200.00")),
+                List.of(movements(1L, "50.00", 1, "0.00"), movements(2L, "0.00", 0, "200.00")));
+
+        StatementService.CardStatement first = statements.get(1L);
+        assertEquals(0, new BigDecimal("900.00").compareTo(first.closing));
+        assertEquals(0, new BigDecimal("950.00").compareTo(first.opening));
+        assertEquals(0, new BigDecimal("100.00").compareTo(first.debits));
+        assertEquals(0, new BigDecimal("50.00").compareTo(first.credits));
+        assertEquals(2, first.count);
+
+        StatementService.CardStatement second = statements.get(2L);
+        assertEquals(0, new BigDecimal("100.00").compareTo(second.closing));
+        assertEquals(0, new BigDecimal("100.00").compareTo(second.opening));
+        assertEquals(0, second.count);
+    }
+
+    @Test
+    void buildStatements_ShouldIgnoreMovementsOfCardsOutsideChunk() {
+        Map<Long, StatementService.CardStatement> statements = StatementService.buildStatements(
+                List.of(balance(1L, "10.00")),
+                List.of(movements(5L, "100.00", 1, "0.00")),
+                List.of());
+
+        assertEquals(1, statements.size());
+        assertEquals(0, new BigDecimal("10.00").compareTo(statements.get(1L).opening));
+    }
+
+    @Test
+    void line_ShouldCarryRunningBalance() {
+        StatementService.CardStatement statement = StatementService.buildStatements(
+                List.of(balance(1L, "100.00")), List.of(), List.of()).get(1L);
+
+        Object[] debit = statement.line(PERIOD_START, movement(10L, "30.00"), "DEBIT", 2L);
+        Object[] credit = statement.line(PERIOD_START, movement(11L, "5.00"), "CREDIT", 3L);
+
+        assertEquals(10L, debit[2]);
+        assertEquals("DEBIT", debit[4]);
+        assertEquals(2L, debit[6]);
+        assertEquals(0, new BigDecimal("70.00").compareTo((BigDecimal) debit[8]));
+        assertEquals(0, new BigDecimal("75.00").compareTo((BigDecimal) credit[8]));
+    }
+
+    private static CardRepository.CardBalance balance(Long id, String balance) {
+        return new CardRepository.CardBalance() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public BigDecimal getBalance() {
+                return new BigDecimal(balance);
+            }
+        };
+    }
+
+    private static TransactionRepository.CardMovements movements(Long cardId, String inRange, long count, String after) {
+        return new TransactionRepository.CardMovements() {
+            @Override
+            public Long getCardId() {
+                return cardId;
+            }
+
+            @Override
+            public BigDecimal getAmountInRange() {
+                return new BigDecimal(inRange);
+            }
+
+            @Override
+            public Long getCountInRange() {
+                return count;
+            }
+
+            @Override
+            public BigDecimal getAmountAfter() {
+                return new BigDecimal(after);
+            }
+        };
+    }
+
+    private static TransactionRepository.Movement movement(Long id, String amount) {
+        return new TransactionRepository.Movement() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getFromCardId() {
+                return 1L;
+            }
+
+            @Override
+            public Long getToCardId() {
+                return 2L;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return new BigDecimal(amount);
+            }
+
+            @Override
+            public String getDescription() {
+                return null;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return PERIOD_START.atTime(12, 0);
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.bankcards.service;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Changeset 007 only runs on PostgreSQL: the schema is migrated up to 006, filled with
+// transactions of several months and then migrated to the end with the real changelog.
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionPartitionMigrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        DataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        update(dataSource, "classpath:db/migration/changelog-before-007.yaml");
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO users (username, password, role, created_at, updated_at) "
+                + "VALUES ('migration', 'x', 'USER', ?, ?)", now, now);
+        Long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'migration'", Long.class);
+        for (String number : List.of("enc-1", "enc-2")) {
+            jdbcTemplate.update("INSERT INTO cards (card_number, owner, expiry_date, status, balance, user_id, "
+                    + "created_at, updated_at) VALUES (?, 'OWNER', ?, 'ACTIVE', 100.00, ?, ?, ?)",
+                    number, now.toLocalDate().plusYears(2), userId, now, now);
+        }
+        List<Long> cards = jdbcTemplate.queryForList("SELECT id FROM cards ORDER BY id", Long.class);
+
+        insertTransaction(null, cards, LocalDateTime.of(2024, 1, 15, 10, 0));
+        insertTransaction(null, cards, LocalDateTime.of(2024, 3, 2, 10, 0));
+        // an id far ahead of the old sequence, the new one has to continue after it
+        insertTransaction(1000L, cards, now.minusHours(1));
+
+        update(dataSource, "classpath:db/migration/db.changelog-master.yaml");
+    }
+
+    @Test
+    void migration_ShouldPartitionTableAndKeepRows() {
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM pg_partitioned_table p "
+                + "JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname = 'transactions'", Integer.class));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT count(*) FROM transactions", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transactions_y2024m01 WHERE id = 1", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_class WHERE relname = 'transactions_unpartitioned'", Integer.class));
+    }
+
+    @Test
+    void migration_ShouldContinueIdsAfterHighestId() {
+        assertEquals("public.transactions_id_seq", jdbcTemplate.queryForObject(
+                "SELECT pg_get_serial_sequence('transactions', 'id')", String.class));
+
+        Long id = jdbcTemplate.queryForObject("INSERT INTO transactions (from_card_id, to_card_id, amount, status, "
+                + "created_at) SELECT min(id), max(id), 1.00, 'COMPLETED', now() FROM cards RETURNING id", Long.class);
+
+        assertEquals(1001L, id);
+    }
+
+    @Test
+    void migration_ShouldPruneToMonthPartition() {
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN SELECT id FROM transactions "
+                + "WHERE created_at >= '2024-03-01' AND created_at < '2024-04-01'", String.class));
+
+        assertTrue(plan.contains("transactions_y2024m03"), plan);
+        assertFalse(plan.contains("transactions_y2024m01"), plan);
+        assertFalse(plan.contains("transactions_default"), plan);
+    }
+
+    private static void insertTransaction(Long id, List<Long> cards, LocalDateTime createdAt) {
+        if (id == null) {
+            jdbcTemplate.update("INSERT INTO transactions (from_card_id, to_card_id, amount, status, created_at) "
+                    + "VALUES (?, ?, 10.00, 'COMPLETED', ?)", cards.get(0), cards.get(1), Timestamp.valueOf(createdAt));
+        } else {
+            jdbcTemplate.update("INSERT INTO transactions (id, from_card_id, to_card_id, amount, status, created_at) "
+                    + "VALUES (?, ?, ?, 10.00, 'COMPLETED', ?)", id, cards.get(0), cards.get(1),
+                    Timestamp.valueOf(createdAt));
+        }
+    }
+
+    private static void update(DataSource dataSource, String changeLog) throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog(changeLog);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+}
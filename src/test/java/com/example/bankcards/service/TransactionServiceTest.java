@@ -1,12 +1,15 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadYourWritesGuard;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardBlockedException;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.FraudSuspectedException;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.InvalidTransactionException;
+import com.example.bankcards.exception.LimitExceededException;
 import com.example.bankcards.exception.TransactionNotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransactionRepository;
@@ -16,6 +19,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -37,6 +41,36 @@ class TransactionServiceTest {
     @Mock
     private CardRepository cardRepository;
 
+    @Mock
+    private ReadYourWritesGuard readYourWritesGuard;
+
+    @Mock
+    private UserBalanceCache userBalanceCache;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Mock
+    private TransactionArchiveService transactionArchiveService;
+
+    @Mock
+    private CardSummaryService cardSummaryService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private CardEventStream cardEventStream;
+
+    @Mock
+    private BalanceStripeService balanceStripeService;
+
+    @Mock
+    private SpendingLimitService spendingLimitService;
+
+    @Mock
+    private FraudScoringService fraudScoringService;
+
     @InjectMocks
     private TransactionService transactionService;
 
@@ -47,6 +81,9 @@ class TransactionServiceTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(transactionService, "historyWindowDays", 90);
+        ReflectionTestUtils.setField(transactionService, "holdLookbackDays", 7);
+
         testUser = User.builder()
                 .id(1L)
                 .username("testuser")
@@ -83,6 +120,53 @@ class TransactionServiceTest {
                 .status(Transaction.TransactionStatus.PENDING)
                 .createdAt(LocalDateTime.now())
                 .build();
+
+        lenient().when(cardRepository.lockForUpdate(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void createTransaction_ShouldRejectTransferOverLimit() {
+        fromCard.setDailyLimit(BigDecimal.valueOf(50));
+        doThrow(new LimitExceededException("Daily limit exceeded"))
+                .when(spendingLimitService).check(fromCard, BigDecimal.valueOf(100));
+
+        assertThrows(LimitExceededException.class, () -> transactionService.createTransaction(testTransaction));
+
+        verify(cardRepository, never()).save(any(Card.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+        assertEquals(BigDecimal.valueOf(1000), fromCard.getBalance());
+    }
+
+    @Test
+    void createTransaction_ShouldCreditStripeWithoutLockingStripedCard() {
+        toCard.setBalanceStripes(4);
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(testTransaction);
+
+        transactionService.createTransaction(testTransaction);
+
+        verify(balanceStripeService).credit(toCard, 1L, BigDecimal.valueOf(100));
+        verify(cardRepository, never()).lockForUpdate(toCard);
+        verify(cardRepository, never()).save(toCard);
+        assertEquals(BigDecimal.valueOf(900), fromCard.getBalance());
+        assertEquals(BigDecimal.valueOf(500), toCard.getBalance());
+    }
+
+    @Test
+    void createTransaction_ShouldConsolidateStripesWhenBalanceFallsShort() {
+        fromCard.setBalance(BigDecimal.valueOf(50));
+        fromCard.setStripedBalance(BigDecimal.valueOf(100));
+        when(balanceStripeService.consolidate(fromCard)).thenAnswer(invocation -> {
+            fromCard.setBalance(BigDecimal.valueOf(150));
+            fromCard.setStripedBalance(BigDecimal.ZERO);
+            return BigDecimal.valueOf(100);
+        });
+        when(transactionRepository.save(any(Transaction.class))).thenReturn(testTransaction);
+
+        transactionService.createTransaction(testTransaction);
+
+        verify(balanceStripeService).consolidate(fromCard);
+        assertEquals(BigDecimal.valueOf(50), fromCard.getBalance());
+        assertEquals(BigDecimal.valueOf(600), toCard.getBalance());
     }
 
     @Test
@@ -97,6 +181,20 @@ class TransactionServiceTest {
         assertNotNull(result.getProcessedAt());
         verify(cardRepository, times(2)).save(any(Card.class));
         verify(transactionRepository).save(testTransaction);
+        verify(cardSummaryService).recordTransaction(testTransaction);
+        verify(outboxService).transferProcessed(testTransaction);
+    }
+
+    @Test
+    void applyLocked_ShouldNotRecordSpendOfTransferDeniedByFraudChecks() {
+        doThrow(new FraudSuspectedException("Transfer declined by fraud checks"))
+                .when(fraudScoringService).screen(fromCard, BigDecimal.valueOf(100));
+
+        assertThrows(FraudSuspectedException.class, () -> transactionService.applyLocked(testTransaction));
+
+        verify(spendingLimitService).check(fromCard, BigDecimal.valueOf(100));
+        verify(spendingLimitService, never()).record(any(Card.class), any(BigDecimal.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
     }
 
     @Test
@@ -107,6 +205,7 @@ class TransactionServiceTest {
                 transactionService.createTransaction(testTransaction));
         verify(cardRepository, never()).save(any(Card.class));
         verify(transactionRepository, never()).save(any(Transaction.class));
+        verifyNoInteractions(cardSummaryService);
     }
 
     @Test
@@ -145,10 +244,109 @@ class TransactionServiceTest {
         verify(transactionRepository, never()).save(any(Transaction.class));
     }
 
+    @Test
+    void createTransaction_ShouldNotSpendHeldFunds() {
+        fromCard.setHeldAmount(BigDecimal.valueOf(950));
+
+        assertThrows(InsufficientFundsException.class, () ->
+                transactionService.createTransaction(testTransaction));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void authorizeTransaction_ShouldHoldAmountWithoutMovingIt() {
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction result = transactionService.authorizeTransaction(testTransaction);
+
+        assertEquals(Transaction.TransactionStatus.PENDING, result.getStatus());
+        assertNotNull(result.getHoldExpiresAt());
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(fromCard.getBalance()));
+        assertEquals(0, BigDecimal.valueOf(900).compareTo(fromCard.getAvailableBalance()));
+        assertEquals(0, BigDecimal.valueOf(500).compareTo(toCard.getBalance()));
+        verify(cardRepository).lockForUpdate(fromCard);
+        verify(cardRepository, never()).lockForUpdate(toCard);
+        verify(outboxService).transferProcessed(testTransaction);
+        verifyNoInteractions(cardSummaryService);
+    }
+
+    @Test
+    void captureTransaction_ShouldMoveHeldAmount() {
+        fromCard.setHeldAmount(BigDecimal.valueOf(100));
+        when(transactionRepository.findByIdForUpdate(eq(1L), any())).thenReturn(Optional.of(testTransaction));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction result = transactionService.captureTransaction(1L);
+
+        assertEquals(Transaction.TransactionStatus.COMPLETED, result.getStatus());
+        assertNull(result.getHoldExpiresAt());
+        assertEquals(0, BigDecimal.ZERO.compareTo(fromCard.getHeldAmount()));
+        assertEquals(0, BigDecimal.valueOf(900).compareTo(fromCard.getBalance()));
+        assertEquals(0, BigDecimal.valueOf(600).compareTo(toCard.getBalance()));
+        verify(cardSummaryService).recordTransaction(testTransaction);
+    }
+
+    @Test
+    void captureTransaction_ShouldFailAndReleaseWhenDestinationBlocked() {
+        fromCard.setHeldAmount(BigDecimal.valueOf(100));
+        toCard.setStatus(Card.CardStatus.BLOCKED);
+        when(transactionRepository.findByIdForUpdate(eq(1L), any())).thenReturn(Optional.of(testTransaction));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction result = transactionService.captureTransaction(1L);
+
+        assertEquals(Transaction.TransactionStatus.FAILED, result.getStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(fromCard.getHeldAmount()));
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(fromCard.getBalance()));
+        verifyNoInteractions(cardSummaryService);
+    }
+
+    @Test
+    void cancelTransaction_ShouldRejectSettledTransaction() {
+        testTransaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        when(transactionRepository.findByIdForUpdate(eq(1L), any())).thenReturn(Optional.of(testTransaction));
+
+        assertThrows(InvalidTransactionException.class, () -> transactionService.cancelTransaction(1L));
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    @Test
+    void cancelTransaction_ShouldRejectTransactionOlderThanHoldLookback() {
+        testTransaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+        when(transactionRepository.findById(1L)).thenReturn(Optional.of(testTransaction));
+
+        assertThrows(InvalidTransactionException.class, () -> transactionService.cancelTransaction(1L));
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    @Test
+    void releaseExpiredHolds_ShouldCancelBatchAndReleaseHolds() {
+        fromCard.setHeldAmount(BigDecimal.valueOf(150));
+        Transaction second = Transaction.builder()
+                .id(2L)
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(BigDecimal.valueOf(50))
+                .status(Transaction.TransactionStatus.PENDING)
+                .build();
+        LocalDateTime now = LocalDateTime.now();
+        when(transactionRepository.findExpiredHolds(eq(now), eq(now.minusDays(7)), any())).thenReturn(List.of(testTransaction, second));
+
+        int released = transactionService.releaseExpiredHolds(now, 10);
+
+        assertEquals(2, released);
+        assertEquals(Transaction.TransactionStatus.CANCELLED, testTransaction.getStatus());
+        assertEquals(Transaction.TransactionStatus.CANCELLED, second.getStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(fromCard.getHeldAmount()));
+        verify(cardRepository, times(1)).lockForUpdate(fromCard);
+        verify(outboxService, times(2)).transferProcessed(any(Transaction.class));
+    }
+
     @Test
     void getUserTransactions_ShouldReturnUserTransactions() {
         List<Transaction> transactions = Arrays.asList(testTransaction);
-        when(transactionRepository.findByFromCardUserIdOrToCardUserId(1L, 1L)).thenReturn(transactions);
+        LocalDateTime to = LocalDate.now().plusDays(1).atStartOfDay();
+        when(transactionRepository.findUserTransactions(1L, to.minusDays(90), to)).thenReturn(transactions);
 
         List<Transaction> result = transactionService.getUserTransactions(1L);
 
@@ -156,11 +354,30 @@ class TransactionServiceTest {
         assertEquals(testTransaction.getId(), result.get(0).getId());
     }
 
+    @Test
+    void getUserTransactions_ShouldUseInclusiveDateRange() {
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 1, 31);
+
+        transactionService.getUserTransactions(1L, from, to);
+
+        verify(transactionRepository).findUserTransactions(1L,
+                LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 2, 1, 0, 0));
+    }
+
+    @Test
+    void getUserTransactions_ShouldRejectInvertedRange() {
+        assertThrows(InvalidTransactionException.class, () -> transactionService.getUserTransactions(1L,
+                LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+        verifyNoInteractions(transactionRepository);
+    }
+
     @Test
     void getCardTransactions_ShouldReturnCardTransactions() {
         List<Transaction> transactions = Arrays.asList(testTransaction);
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(transactionRepository.findByFromCardOrToCard(fromCard, fromCard)).thenReturn(transactions);
+        when(cardRepository.existsById(1L)).thenReturn(true);
+        when(transactionRepository.findCardTransactions(eq(1L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(transactions);
 
         List<Transaction> result = transactionService.getCardTransactions(1L);
 
@@ -168,9 +385,41 @@ class TransactionServiceTest {
         assertEquals(testTransaction.getId(), result.get(0).getId());
     }
 
+    @Test
+    void getCardTransactions_ShouldMergeArchivedTransactions() {
+        Transaction archived = Transaction.builder()
+                .id(2L)
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(BigDecimal.TEN)
+                .status(Transaction.TransactionStatus.COMPLETED)
+                .createdAt(testTransaction.getCreatedAt().minusMonths(4))
+                .build();
+        Transaction archivedCopy = Transaction.builder()
+                .id(testTransaction.getId())
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(testTransaction.getAmount())
+                .status(Transaction.TransactionStatus.COMPLETED)
+                .createdAt(testTransaction.getCreatedAt())
+                .build();
+        when(cardRepository.existsById(1L)).thenReturn(true);
+        when(transactionRepository.findCardTransactions(eq(1L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(List.of(testTransaction));
+        when(transactionArchiveService.findCardTransactions(eq(1L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(List.of(archived, archivedCopy));
+
+        List<Transaction> result = transactionService.getCardTransactions(1L,
+                LocalDate.now().minusYears(1), LocalDate.now());
+
+        assertEquals(2, result.size());
+        assertSame(testTransaction, result.get(0));
+        assertEquals(2L, result.get(1).getId());
+    }
+
     @Test
     void getCardTransactions_ShouldThrowExceptionWhenCardNotFound() {
-        when(cardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(cardRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(CardNotFoundException.class, () -> transactionService.getCardTransactions(1L));
     }
@@ -185,6 +434,17 @@ class TransactionServiceTest {
         assertEquals(testTransaction.getId(), result.getId());
     }
 
+    @Test
+    void getTransactionById_ShouldNotScanAllPartitionsForRecentTransaction() {
+        when(transactionRepository.findByIdAndCreatedAtGreaterThanEqual(eq(1L), any()))
+                .thenReturn(Optional.of(testTransaction));
+
+        Transaction result = transactionService.getTransactionById(1L);
+
+        assertEquals(testTransaction.getId(), result.getId());
+        verify(transactionRepository, never()).findById(anyLong());
+    }
+
     @Test
     void getTransactionById_ShouldThrowExceptionWhenNotFound() {
         when(transactionRepository.findById(1L)).thenReturn(Optional.empty());
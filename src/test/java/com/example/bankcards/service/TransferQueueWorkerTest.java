@@ -0,0 +1,113 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.DatabasePlatform;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransferQueueWorkerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private CardRepository cardRepository;
+    private TransactionService transactionService;
+    private TransferQueueWorker worker;
+
+    private final TransferQueueWorker.QueuedTransfer first = new TransferQueueWorker.QueuedTransfer(
+            1L, 1L, 10L, 20L, new BigDecimal("100.00"), null, LocalDateTime.now().minusSeconds(1));
+    private final TransferQueueWorker.QueuedTransfer second = new TransferQueueWorker.QueuedTransfer(
+            2L, 1L, 20L, 10L, new BigDecimal("13.00"), null, LocalDateTime.now());
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        cardRepository = mock(CardRepository.class);
+        transactionService = mock(TransactionService.class);
+        worker = new TransferQueueWorker(jdbcTemplate, mock(DatabasePlatform.class), cardRepository,
+                transactionService, mock(JobRunner.class), mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), true, 1, 100, 20, 72);
+
+        User user = User.builder().id(1L).username("user").build();
+        when(cardRepository.lockAllForUpdate(anyCollection())).thenReturn(List.of(
+                Card.builder().id(10L).user(user).build(),
+                Card.builder().id(20L).user(user).build()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processBatch_ShouldApplyAllTransfersInOneBatch() {
+        when(jdbcTemplate.query(contains("LIMIT ?"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(first, second));
+        when(transactionService.applyLocked(any(Transaction.class))).thenAnswer(inv -> {
+            Transaction transaction = inv.getArgument(0);
+            if (transaction.getAmount().compareTo(new BigDecimal("13.00")) == 0) {
+                throw new InsufficientFundsException(transaction.getAmount(), BigDecimal.ZERO);
+            }
+            transaction.setId(99L);
+            return transaction;
+        });
+
+        assertEquals(2, worker.processBatch());
+
+        verify(cardRepository, times(1)).lockAllForUpdate(anyCollection());
+        verify(transactionService, times(2)).applyLocked(any(Transaction.class));
+        // the rejected transfer is marked FAILED together with the completed one
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE transfer_requests SET status = ?"), anyList(), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE transfer_requests SET status = 'FAILED'"),
+                any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processBatch_ShouldRetryOneByOneWhenBatchRollsBack() {
+        when(jdbcTemplate.query(contains("LIMIT ?"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(first, second));
+        when(jdbcTemplate.query(contains("WHERE id = ?"), any(RowMapper.class), eq(1L)))
+                .thenReturn(List.of(first));
+        when(jdbcTemplate.query(contains("WHERE id = ?"), any(RowMapper.class), eq(2L)))
+                .thenReturn(List.of(second));
+        when(transactionService.applyLocked(any(Transaction.class))).thenAnswer(inv -> {
+            Transaction transaction = inv.getArgument(0);
+            if (transaction.getAmount().compareTo(new BigDecimal("13.00")) == 0) {
+                throw new IllegalStateException("constraint violation");
+            }
+            transaction.setId(99L);
+            return transaction;
+        });
+
+        assertEquals(2, worker.processBatch());
+
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE transfer_requests SET status = ?"), anyList(), eq(1),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).update(startsWith("UPDATE transfer_requests SET status = 'FAILED'"),
+                contains("constraint violation"), any(LocalDateTime.class), eq(2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processBatch_ShouldNotLockCardsForEmptyQueue() {
+        when(jdbcTemplate.query(contains("LIMIT ?"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        assertEquals(0, worker.processBatch());
+
+        verify(cardRepository, never()).lockAllForUpdate(anyCollection());
+    }
+}
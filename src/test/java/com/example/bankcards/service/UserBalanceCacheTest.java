@@ -0,0 +1,141 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserBalanceResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserBalanceCacheTest {
+
+    private User testUser;
+    private List<Card> dbCards;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        testUser = User.builder().id(1L).username("testuser").build();
+        dbCards = new ArrayList<>();
+        dbCards.add(card(1L, "100.00"));
+        dbCards.add(card(2L, "50.00"));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_ShouldLoadOnceAndServeFromCache() {
+        UserBalanceCache cache = new UserBalanceCache(new SimpleMeterRegistry(), 10, 60_000, false);
+
+        UserBalanceResponse first = cache.get(1L, this::load);
+        UserBalanceResponse second = cache.get(1L, this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(0, new BigDecimal("150.00").compareTo(second.getTotalBalance()));
+        assertEquals(first, second);
+        assertEquals("**** **** **** 0001", second.getCardBalances().get(0).getCardNumber());
+    }
+
+    @Test
+    void evict_ShouldReloadOnlyTheEvictedUser() {
+        UserBalanceCache cache = new UserBalanceCache(new SimpleMeterRegistry(), 10, 60_000, false);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        cache.evict(InvalidatableCache.Region.CARD, 1L);
+        cache.evict(InvalidatableCache.Region.BALANCE, 1L);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void cardChanged_ShouldWriteThroughWithoutReload() {
+        UserBalanceCache cache = new UserBalanceCache(new SimpleMeterRegistry(), 10, 60_000, true);
+        cache.get(1L, this::load);
+
+        dbCards.get(0).setBalance(new BigDecimal("70.00"));
+        dbCards.get(0).setVersion(1L);
+        dbCards.get(1).setBalance(new BigDecimal("80.00"));
+        dbCards.get(1).setVersion(1L);
+        cache.cardChanged(dbCards.get(0));
+        cache.cardChanged(dbCards.get(1));
+
+        UserBalanceResponse result = cache.get(1L, this::load);
+
+        assertEquals(0, new BigDecimal("150.00").compareTo(result.getTotalBalance()));
+        assertEquals(0, cache.getMismatchCount());
+    }
+
+    @Test
+    void cardRemoved_ShouldDropCardFromSnapshot() {
+        UserBalanceCache cache = new UserBalanceCache(new SimpleMeterRegistry(), 10, 60_000, true);
+        cache.get(1L, this::load);
+
+        dbCards.remove(1);
+        cache.cardRemoved(1L, 2L);
+
+        UserBalanceResponse result = cache.get(1L, this::load);
+
+        assertEquals(1, result.getCardBalances().size());
+        assertEquals(0, cache.getMismatchCount());
+    }
+
+    @Test
+    void verify_ShouldDetectWriteThatBypassedCache() {
+        UserBalanceCache cache = new UserBalanceCache(new SimpleMeterRegistry(), 10, 60_000, true);
+        cache.get(1L, this::load);
+
+        dbCards.get(0).setBalance(BigDecimal.ZERO);
+
+        UserBalanceResponse result = cache.get(1L, this::load);
+
+        assertEquals(1, cache.getMismatchCount());
+        assertEquals(0, new BigDecimal("50.00").compareTo(result.getTotalBalance()));
+    }
+
+    @Test
+    void get_ShouldEvictLeastRecentlyUsedUsers() {
+        UserBalanceCache cache = new UserBalanceCache(new SimpleMeterRegistry(), 2, 60_000, false);
+
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        cache.get(1L, this::load);
+        cache.get(3L, this::load);
+        cache.get(1L, this::load);
+
+        assertEquals(2, cache.size());
+        assertEquals(3, loads.get());
+    }
+
+    private List<Card> load() {
+        loads.incrementAndGet();
+        return dbCards.stream()
+                .map(card -> {
+                    Card copy = card(card.getId(), card.getBalance().toPlainString());
+                    copy.setVersion(card.getVersion());
+                    return copy;
+                })
+                .toList();
+    }
+
+    private Card card(Long id, String balance) {
+        return Card.builder()
+                .id(id)
+                .cardNumber(String.format("%016d", id))
+                .owner("Test Owner")
+                .expiryDate(LocalDate.now().plusYears(1))
+                .balance(new BigDecimal(balance))
+                .user(testUser)
+                .version(0L)
+                .build();
+    }
+}
@@ -30,6 +30,9 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
     @InjectMocks
     private UserService userService;
 
@@ -153,6 +156,7 @@ class UserServiceTest {
         userService.deleteUser(1L);
 
         verify(userRepository).deleteById(1L);
+        verify(cacheInvalidationBus).userChanged(1L);
     }
 
     @Test
@@ -0,0 +1,101 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long BASELINE_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void tryAcquire_ShouldRejectWhenLimitReached() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1.5);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInflight());
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.onIgnore();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void onSuccess_ShouldShrinkLimitWhenLatencyGrows() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 2, 100, 1.5);
+        for (int i = 0; i < 20; i++) {
+            saturateAndComplete(limiter, BASELINE_RTT);
+        }
+        int limitBeforeSlowdown = limiter.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            saturateAndComplete(limiter, BASELINE_RTT * 10);
+        }
+
+        assertTrue(limiter.getLimit() < limitBeforeSlowdown,
+                "limit should drop from " + limitBeforeSlowdown + " but was " + limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+    }
+
+    @Test
+    void onSuccess_ShouldKeepLimitDownWhileSlowdownLasts() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 2, 100, 1.5);
+        for (int i = 0; i < 20; i++) {
+            saturateAndComplete(limiter, BASELINE_RTT);
+        }
+        int limitBeforeSlowdown = limiter.getLimit();
+        for (int i = 0; i < 20; i++) {
+            saturateAndComplete(limiter, BASELINE_RTT * 10);
+        }
+        int limitAtSlowdown = limiter.getLimit();
+
+        // about 8,000 slow samples, still short of the slowdown window; a baseline that
+        // caught up with the slow latency would let the limit grow back
+        for (int i = 0; i < 2000; i++) {
+            saturateAndComplete(limiter, BASELINE_RTT * 10);
+            assertTrue(limiter.getLimit() <= limitAtSlowdown,
+                    "limit grew back to " + limiter.getLimit() + " after " + (i + 1) + " slow rounds");
+        }
+
+        assertTrue(limiter.getLimit() < limitBeforeSlowdown / 4,
+                "limit should stay far below " + limitBeforeSlowdown + " but was " + limiter.getLimit());
+    }
+
+    @Test
+    void onSuccess_ShouldGrowLimitWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 2, 100, 1.5);
+
+        for (int i = 0; i < 20; i++) {
+            saturateAndComplete(limiter, BASELINE_RTT);
+        }
+
+        assertTrue(limiter.getLimit() > 4);
+    }
+
+    @Test
+    void onDropped_ShouldBackOffButRespectMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(3, 2, 10, 1.5);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onDropped();
+        }
+
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+    }
+
+    private void saturateAndComplete(AdaptiveConcurrencyLimiter limiter, long rttNanos) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.onSuccess(rttNanos);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldFindEveryKeyPut() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long key = 4_000_000_000_000_000L; key < 4_000_000_000_010_000L; key++) {
+            filter.put(key);
+        }
+
+        for (long key = 4_000_000_000_000_000L; key < 4_000_000_000_010_000L; key++) {
+            assertTrue(filter.mightContain(key));
+        }
+        assertFalse(filter.isSaturated());
+    }
+
+    @Test
+    void mightContain_ShouldRarelyMatchAbsentKeys() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long key = 0; key < 10_000; key++) {
+            filter.put(key * 7919);
+        }
+
+        int falsePositives = 0;
+        for (long key = 1; key <= 10_000; key++) {
+            if (filter.mightContain(key * 7919 + 1)) {
+                falsePositives++;
+            }
+        }
+        // 1% expected, with room for chance
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void next_ShouldReadQuotedFieldsAndTrackLines() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "a,b,c\r\n\n\"x, y\",\"say \"\"hi\"\"\",\r\n\"multi\nline\",2,3"), 100);
+
+        assertEquals(List.of("a", "b", "c"), csv.next());
+        assertEquals(1, csv.getRecordLine());
+        assertEquals(List.of("x, y", "say \"hi\"", ""), csv.next());
+        assertEquals(3, csv.getRecordLine());
+        assertEquals(List.of("multi\nline", "2", "3"), csv.next());
+        assertEquals(4, csv.getRecordLine());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void next_ShouldRejectUnclosedQuoteAndLongRecords() throws IOException {
+        CsvReader unclosed = new CsvReader(new StringReader("a,\"b\n"), 100);
+        assertThrows(IOException.class, unclosed::next);
+
+        CsvReader tooLong = new CsvReader(new StringReader("short\n" + "x".repeat(20) + "\n"), 10);
+        assertEquals(List.of("short"), tooLong.next());
+        assertThrows(IOException.class, tooLong::next);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongHashMapTest {
+
+    @Test
+    void addTo_ShouldAccumulatePerKey() {
+        LongLongHashMap map = new LongLongHashMap(4);
+
+        map.addTo(1L, 100);
+        map.addTo(2L, -50);
+        map.addTo(1L, 25);
+
+        assertEquals(125, map.get(1L, 0));
+        assertEquals(-50, map.get(2L, 0));
+        assertEquals(-1, map.get(3L, -1));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void addTo_ShouldKeepAllKeysWhenGrowing() {
+        LongLongHashMap map = new LongLongHashMap(2);
+
+        for (long key = 0; key < 10_000; key++) {
+            map.addTo(key * 1024, key);
+        }
+
+        assertEquals(10_000, map.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(map.containsKey(key * 1024));
+            assertEquals(key, map.get(key * 1024, -1));
+        }
+    }
+
+    @Test
+    void clear_ShouldRemoveEverything() {
+        LongLongHashMap map = new LongLongHashMap(8);
+        map.addTo(0L, 1);
+        map.addTo(Long.MAX_VALUE, 2);
+
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(0L));
+        assertFalse(map.containsKey(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LuhnTest {
+
+    @Test
+    void checkDigit_ShouldCompleteKnownNumbers() {
+        assertEquals(3, Luhn.checkDigit("7992739871"));
+        assertEquals(2, Luhn.checkDigit("400000000000000"));
+    }
+
+    @Test
+    void isValid_ShouldAcceptOnlyCorrectCheckDigit() {
+        assertTrue(Luhn.isValid("4000000000000002"));
+        assertFalse(Luhn.isValid("4000000000000003"));
+        assertFalse(Luhn.isValid("40000000000000a2"));
+        assertFalse(Luhn.isValid("4"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void sum_ShouldCoverOnlyTheLastBuckets() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(24, HOUR);
+        long start = 1_000 * HOUR;
+
+        counter.add(start, 100);
+        counter.add(start + 5 * HOUR, 50);
+        counter.add(start + 5 * HOUR + 1, 25);
+
+        assertEquals(175, counter.sum(start + 23 * HOUR));
+        // the first bucket has slid out
+        assertEquals(75, counter.sum(start + 24 * HOUR));
+        assertEquals(0, counter.sum(start + 29 * HOUR));
+    }
+
+    @Test
+    void add_ShouldResetBucketReusedByLaterLap() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(4, HOUR);
+
+        counter.add(0, 10);
+        counter.add(4 * HOUR, 7);
+
+        assertEquals(7, counter.sum(4 * HOUR));
+    }
+
+    @Test
+    void add_ShouldIgnoreValuesOlderThanTheRing() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(4, HOUR);
+
+        counter.add(8 * HOUR, 3);
+        counter.add(0, 10);
+
+        assertEquals(3, counter.sum(8 * HOUR));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readCard_ShouldReturnOnlyRecordsOfRequestedCard() throws IOException {
+        Path file = directory.resolve("segment.seg");
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 15, 10, 30, 0, 123_456_789);
+
+        try (TransactionSegmentWriter writer = new TransactionSegmentWriter(file, 4)) {
+            long id = 1;
+            for (long cardId = 1; cardId <= 10; cardId++) {
+                for (int i = 0; i < 3; i++) {
+                    writer.append(record(cardId, id++, createdAt.minusHours(i)));
+                }
+            }
+            assertEquals(30, writer.getRecordCount());
+        }
+
+        List<ArchivedTransaction> records = TransactionSegmentReader.readCard(file, 5);
+
+        assertEquals(3, records.size());
+        assertTrue(records.stream().allMatch(record -> record.cardId() == 5));
+        assertEquals(List.of(13L, 14L, 15L), records.stream().map(ArchivedTransaction::id).toList());
+        assertEquals(createdAt, records.get(0).createdAt());
+        assertEquals(0, new BigDecimal("12.34").compareTo(records.get(0).amount()));
+        assertNull(records.get(0).description());
+        assertNull(records.get(1).processedAt());
+        assertEquals("encrypted-5", records.get(0).fromCardNumber());
+    }
+
+    @Test
+    void readCard_ShouldReturnEmptyListForUnknownCard() throws IOException {
+        Path file = directory.resolve("segment.seg");
+        try (TransactionSegmentWriter writer = new TransactionSegmentWriter(file, 2)) {
+            writer.append(record(1, 1, LocalDateTime.now()));
+            writer.append(record(3, 2, LocalDateTime.now()));
+        }
+
+        assertTrue(TransactionSegmentReader.readCard(file, 2).isEmpty());
+        assertTrue(TransactionSegmentReader.readCard(file, 4).isEmpty());
+    }
+
+    @Test
+    void append_ShouldRejectUnsortedRecords() throws IOException {
+        try (TransactionSegmentWriter writer = new TransactionSegmentWriter(directory.resolve("segment.seg"), 2)) {
+            writer.append(record(2, 1, LocalDateTime.now()));
+
+            assertThrows(IllegalArgumentException.class, () -> writer.append(record(1, 2, LocalDateTime.now())));
+        }
+    }
+
+    @Test
+    void readCard_ShouldRejectFileWithoutFooter() throws IOException {
+        Path file = Files.writeString(directory.resolve("broken.seg"), "not a segment at all");
+
+        assertThrows(IOException.class, () -> TransactionSegmentReader.readCard(file, 1));
+    }
+
+    private static ArchivedTransaction record(long cardId, long id, LocalDateTime createdAt) {
+        return new ArchivedTransaction(cardId, id, cardId, cardId + 100,
+                "encrypted-" + cardId, "encrypted-" + (cardId + 100),
+                new BigDecimal("12.34"), "COMPLETED",
+                id % 3 == 0 ? "Transfer " + id : null,
+                createdAt,
+                id % 2 == 0 ? null : createdAt.plusSeconds(1));
+    }
+}